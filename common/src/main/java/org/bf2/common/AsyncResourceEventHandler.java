@@ -0,0 +1,246 @@
+package org.bf2.common;
+
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.client.informers.ResourceEventHandler;
+import io.fabric8.kubernetes.client.informers.cache.Cache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.jboss.logging.Logger;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivers the events to the handler on its own thread, so that a slow handler does not delay the
+ * other handlers of the informer.
+ * <br>
+ * The pending events are held by object key.  A new event for an object that is already pending
+ * replaces it, so the handler sees the latest state once rather than each intermediate state.  An
+ * add followed by updates is delivered as an add, and a series of updates as a single update from the
+ * first old object.  An add followed by a delete is not delivered at all.  A delete followed by an add is
+ * delivered as both, as the added object may have a different uid.  The number of pending keys is
+ * bounded - when full the informer thread waits, which is counted and logged.
+ * <br>
+ * Create with {@link ResourceInformerFactory#asynchronous(String, ResourceEventHandler)}
+ */
+public class AsyncResourceEventHandler<T extends HasMetadata> implements ResourceEventHandler<T> {
+
+    private static Logger log = Logger.getLogger(AsyncResourceEventHandler.class);
+
+    enum Action {
+        ADD,
+        UPDATE,
+        DELETE
+    }
+
+    static class Event<T> {
+        final Action action;
+        final T oldObj;
+        final T obj;
+        final boolean deletedFinalStateUnknown;
+        // the time of the first of the coalesced events
+        final long enqueued;
+        // an event for the same key that could not be coalesced, to be delivered first
+        final Event<T> previous;
+
+        Event(Action action, T oldObj, T obj, boolean deletedFinalStateUnknown, long enqueued) {
+            this(action, oldObj, obj, deletedFinalStateUnknown, enqueued, null);
+        }
+
+        Event(Action action, T oldObj, T obj, boolean deletedFinalStateUnknown, long enqueued, Event<T> previous) {
+            this.action = action;
+            this.oldObj = oldObj;
+            this.obj = obj;
+            this.deletedFinalStateUnknown = deletedFinalStateUnknown;
+            this.enqueued = enqueued;
+            this.previous = previous;
+        }
+
+        /**
+         * @return the event to deliver in place of this and the next event, or null if there is nothing to deliver
+         */
+        Event<T> coalesce(Event<T> next) {
+            if (action == Action.DELETE && next.action != Action.DELETE) {
+                // the handler must see the delete of the old object
+                return new Event<>(next.action, next.oldObj, next.obj, next.deletedFinalStateUnknown, next.enqueued, this);
+            }
+            if (action == Action.ADD && next.action == Action.DELETE) {
+                // the handler never saw the add
+                return previous;
+            }
+            if (next.action == Action.UPDATE) {
+                if (action == Action.ADD) {
+                    return new Event<>(Action.ADD, null, next.obj, false, enqueued, previous);
+                }
+                return new Event<>(Action.UPDATE, oldObj, next.obj, false, enqueued, previous);
+            }
+            return new Event<>(next.action, next.oldObj, next.obj, next.deletedFinalStateUnknown, enqueued, previous);
+        }
+    }
+
+    private final String name;
+    private final ResourceEventHandler<T> handler;
+    private final int capacity;
+    private final LinkedHashMap<String, Event<T>> pending = new LinkedHashMap<>();
+    private final Thread thread;
+    private volatile boolean closed;
+
+    private Timer duration;
+    private Timer lag;
+    private Counter coalesced;
+    private Counter blocked;
+
+    AsyncResourceEventHandler(String name, ResourceEventHandler<T> handler, int capacity, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.handler = handler;
+        this.capacity = capacity;
+        if (meterRegistry != null) {
+            this.duration = Timer.builder("informer.handler.duration")
+                    .tag("handler", name)
+                    .description("The time taken by the handler to process an event")
+                    .register(meterRegistry);
+            this.lag = Timer.builder("informer.handler.lag")
+                    .tag("handler", name)
+                    .description("The time from an event being received to the handler processing it")
+                    .register(meterRegistry);
+            this.coalesced = Counter.builder("informer.handler.coalesced")
+                    .tag("handler", name)
+                    .description("The number of events replaced by a later event for the same object")
+                    .register(meterRegistry);
+            this.blocked = Counter.builder("informer.handler.blocked")
+                    .tag("handler", name)
+                    .description("The number of times the informer thread waited because too many objects were pending")
+                    .register(meterRegistry);
+            Gauge.builder("informer.handler.pending", this, AsyncResourceEventHandler::getPendingCount)
+                    .tag("handler", name)
+                    .description("The number of objects with an event waiting for the handler")
+                    .register(meterRegistry);
+        }
+        this.thread = new Thread(this::dispatch, "informer-handler-" + name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    @Override
+    public void onAdd(T obj) {
+        enqueue(new Event<>(Action.ADD, null, obj, false, System.nanoTime()));
+    }
+
+    @Override
+    public void onUpdate(T oldObj, T newObj) {
+        enqueue(new Event<>(Action.UPDATE, oldObj, newObj, false, System.nanoTime()));
+    }
+
+    @Override
+    public void onDelete(T obj, boolean deletedFinalStateUnknown) {
+        enqueue(new Event<>(Action.DELETE, null, obj, deletedFinalStateUnknown, System.nanoTime()));
+    }
+
+    int getPendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    void enqueue(Event<T> event) {
+        String key = Cache.metaNamespaceKeyFunc(event.obj);
+        synchronized (pending) {
+            Event<T> existing = pending.get(key);
+            if (existing != null) {
+                Event<T> result = existing.coalesce(event);
+                if (result == null) {
+                    pending.remove(key);
+                    pending.notifyAll();
+                } else {
+                    pending.put(key, result);
+                }
+                if (coalesced != null) {
+                    coalesced.increment();
+                }
+                return;
+            }
+            if (pending.size() >= capacity && !closed) {
+                log.warnf("Handler %s has %s pending objects, the informer thread is waiting", name, pending.size());
+                if (blocked != null) {
+                    blocked.increment();
+                }
+            }
+            try {
+                while (pending.size() >= capacity && !closed) {
+                    pending.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            pending.put(key, event);
+            pending.notifyAll();
+        }
+    }
+
+    private void dispatch() {
+        while (!closed) {
+            Event<T> event;
+            synchronized (pending) {
+                try {
+                    while (pending.isEmpty() && !closed) {
+                        pending.wait();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (closed) {
+                    return;
+                }
+                Iterator<Event<T>> iter = pending.values().iterator();
+                event = iter.next();
+                iter.remove();
+                pending.notifyAll();
+            }
+            deliver(event);
+        }
+    }
+
+    private void deliver(Event<T> event) {
+        if (event.previous != null) {
+            deliver(event.previous);
+        }
+        long start = System.nanoTime();
+        if (lag != null) {
+            lag.record(start - event.enqueued, TimeUnit.NANOSECONDS);
+        }
+        try {
+            switch (event.action) {
+            case ADD:
+                handler.onAdd(event.obj);
+                break;
+            case UPDATE:
+                handler.onUpdate(event.oldObj, event.obj);
+                break;
+            case DELETE:
+                handler.onDelete(event.obj, event.deletedFinalStateUnknown);
+                break;
+            }
+        } catch (Exception e) {
+            log.errorf(e, "Handler %s failed to process %s of %s", name, event.action, Cache.metaNamespaceKeyFunc(event.obj));
+        }
+        if (duration != null) {
+            duration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Stop delivering events, any that are pending are discarded
+     */
+    public void close() {
+        closed = true;
+        synchronized (pending) {
+            pending.notifyAll();
+        }
+        thread.interrupt();
+    }
+
+}
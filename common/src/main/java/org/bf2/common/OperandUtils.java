@@ -1,5 +1,7 @@
 package org.bf2.common;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import io.fabric8.kubernetes.api.model.Affinity;
 import io.fabric8.kubernetes.api.model.AffinityBuilder;
 import io.fabric8.kubernetes.api.model.HasMetadata;
@@ -13,19 +15,33 @@ import io.fabric8.kubernetes.api.model.PodAffinity;
 import io.fabric8.kubernetes.api.model.PodAffinityBuilder;
 import io.fabric8.kubernetes.api.model.PodAffinityTerm;
 import io.fabric8.kubernetes.api.model.PodAffinityTermBuilder;
+import io.fabric8.kubernetes.api.model.Quantity;
 import io.fabric8.kubernetes.api.model.Toleration;
 import io.fabric8.kubernetes.api.model.TolerationBuilder;
 import io.fabric8.kubernetes.client.KubernetesClientException;
 import io.fabric8.kubernetes.client.dsl.MixedOperation;
 import io.fabric8.kubernetes.client.dsl.Resource;
+import io.fabric8.kubernetes.client.dsl.base.PatchContext;
+import io.fabric8.kubernetes.client.dsl.base.PatchType;
+import io.fabric8.kubernetes.client.utils.Serialization;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
 import org.bf2.operator.resources.v1alpha1.ManagedKafka;
 import org.bf2.operator.resources.v1alpha1.ManagedKafkaAgent;
+import org.eclipse.microprofile.config.ConfigProvider;
 
+import java.math.BigInteger;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class OperandUtils {
 
@@ -35,6 +51,34 @@ public class OperandUtils {
     public static final String STRIMZI_OPERATOR_NAME = "strimzi-cluster-operator";
     public static final String FLEETSHARD_OPERATOR_NAME = "kas-fleetshard-operator";
     public static final String MASTER_SECRET_NAME = "master-secret";
+    public static final String OPERAND_WRITES = "operand.writes";
+    public static final String OPERAND_WRITE_BYTES = "operand.write.bytes";
+    public static final String OPERAND_WRITE_CONFLICTS = "operand.write.conflicts";
+    public static final String OPERAND_WRITE_RETRIES = "operand.write.retries";
+    public static final String SERVER_SIDE_APPLY_PROPERTY = "operand.server-side-apply";
+    public static final String FIELD_MANAGER_PROPERTY = "operand.field-manager";
+    public static final String DESIRED_DIGEST_ANNOTATION = "org.bf2.operator/desired-digest";
+    static final String APPLY = "apply";
+    static final String REPLACE = "replace";
+
+    private static final List<String> SERVER_METADATA = List.of("resourceVersion", "uid", "generation",
+            "creationTimestamp", "managedFields", "selfLink");
+    private static final List<String> APPLY_METADATA = List.of("name", "namespace", "labels", "annotations",
+            "ownerReferences", "finalizers");
+    private static final Set<String> APPLY_IDENTITY = Set.of("apiVersion", "kind", "metadata", "name", "namespace");
+    private static final Set<String> EXACT_FIELDS = Set.of("data", "stringData", "binaryData");
+    private static final Set<String> QUANTITY_FIELDS = Set.of("limits", "requests");
+    private static final int MAX_VERIFIED = 10000;
+
+    // by uid, the resourceVersion and desired digest last found to be unchanged - the least recently used are evicted
+    private static final Map<String, String> verified = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_VERIFIED;
+        }
+    });
 
     /**
      * Set the provided resource as owner of the resource
@@ -75,9 +119,44 @@ public class OperandUtils {
      * need preserved.  An edit should be used instead.
      */
     public static <T extends HasMetadata> T createOrUpdate(MixedOperation<T, ?, ?> resources, T resource) {
+        countWrite(resource, "performed");
+        return write(resources, resource, null);
+    }
+
+    /**
+     * Same as {@link #createOrUpdate(MixedOperation, HasMetadata)}, but the write is skipped if the
+     * current (typically cached) resource is unchanged relative to the desired resource.
+     *
+     * <br>
+     * When {@link #SERVER_SIDE_APPLY_PROPERTY} is true the write is an {@link #apply(MixedOperation, HasMetadata, HasMetadata)}.
+     * <br>
+     * The written resource carries the {@link #DESIRED_DIGEST_ANNOTATION}, so that it may be skipped when it
+     * comes back as the current resource.
+     *
+     * @param current may be null
+     * @return the current resource if the write was skipped
+     * @see #isUnchanged(HasMetadata, HasMetadata)
+     */
+    public static <T extends HasMetadata> T createOrUpdate(MixedOperation<T, ?, ?> resources, T resource, T current) {
+        ObjectNode desiredTree = comparableTree(resource);
+        setDesiredDigest(resource, digest(desiredTree));
+        if (isUnchanged(current, resource, desiredTree)) {
+            countWrite(resource, "skipped");
+            return current;
+        }
+        countWrite(resource, "performed");
+        return write(resources, resource, current);
+    }
+
+    private static <T extends HasMetadata> T write(MixedOperation<T, ?, ?> resources, T resource, T current) {
+        if (isServerSideApply()) {
+            return apply(resources, resource, current);
+        }
         Resource<T> withName = resources
                 .inNamespace(resource.getMetadata().getNamespace())
                 .withName(resource.getMetadata().getName());
+        String payload = Serialization.asJson(resource);
+        recordPayload(resource, payload, REPLACE);
         T result = null;
         try {
             // this could be a patch(item) or replace(item) - they do similar things
@@ -86,13 +165,294 @@ public class OperandUtils {
         } catch (NullPointerException | KubernetesClientException e) {
             // see https://github.com/fabric8io/kubernetes-client/issues/3121
             // see https://github.com/fabric8io/kubernetes-client/issues/3122
+            if (e instanceof KubernetesClientException && ((KubernetesClientException) e).getCode() == HttpURLConnection.HTTP_CONFLICT) {
+                countConflict(resource, REPLACE);
+            }
         }
         if (result != null) {
             return result;
         }
+        countRetry(resource, REPLACE);
+        recordPayload(resource, payload, REPLACE);
         return withName.createOrReplace(resource);
     }
 
+    /**
+     * Same as {@link #apply(MixedOperation, HasMetadata, HasMetadata)} without a current resource
+     */
+    public static <T extends HasMetadata> T apply(MixedOperation<T, ?, ?> resources, T resource) {
+        return apply(resources, resource, null);
+    }
+
+    /**
+     * Server side apply the resource as the {@link #FIELD_MANAGER_PROPERTY}.
+     * <br>
+     * Only the fields set by the operator are sent - see {@link #applyTree(HasMetadata, HasMetadata, String)}.
+     * Without the resourceVersion there is no optimistic lock.
+     * <br>
+     * The apply is never forced.  A conflict with the fields owned by another manager is counted
+     * and the {@link KubernetesClientException} is rethrown, so that it is surfaced to the caller.
+     *
+     * @param current may be null
+     */
+    public static <T extends HasMetadata> T apply(MixedOperation<T, ?, ?> resources, T resource, T current) {
+        String fieldManager = getFieldManager();
+        String payload = applyTree(resource, current, fieldManager).toString();
+        recordPayload(resource, payload, APPLY);
+        try {
+            return resources
+                    .inNamespace(resource.getMetadata().getNamespace())
+                    .withName(resource.getMetadata().getName())
+                    .patch(applyContext(fieldManager), payload);
+        } catch (KubernetesClientException e) {
+            if (e.getCode() == HttpURLConnection.HTTP_CONFLICT) {
+                countConflict(resource, APPLY);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * The apply configuration of the resource:
+     * <ul>
+     * <li>no status</li>
+     * <li>of the metadata only the name, namespace, labels, annotations, owner references and finalizers</li>
+     * <li>when there is a current resource, only the fields that differ from it or that are already owned by
+     * the field manager.  Fields the desired resource merely copied from the current resource, such as server
+     * populated defaults or the fields of other managers, are not sent.  Lists are sent or omitted as a whole.</li>
+     * </ul>
+     */
+    static ObjectNode applyTree(HasMetadata resource, HasMetadata current, String fieldManager) {
+        ObjectNode tree = Serialization.jsonMapper().valueToTree(resource);
+        tree.remove("status");
+        ObjectNode metadata = tree.putObject("metadata");
+        JsonNode desiredMetadata = Serialization.jsonMapper().valueToTree(resource.getMetadata());
+        for (String field : APPLY_METADATA) {
+            JsonNode value = desiredMetadata.get(field);
+            if (value != null && !value.isNull()) {
+                metadata.set(field, value);
+            }
+        }
+        if (current == null) {
+            return tree;
+        }
+        ObjectNode currentTree = Serialization.jsonMapper().valueToTree(current);
+        JsonNode owned = ownedFields(current, fieldManager);
+        omitFields(tree, currentTree, owned, APPLY_IDENTITY, false);
+        omitFields(metadata, currentTree.path("metadata"), owned == null ? null : owned.get("f:metadata"), APPLY_IDENTITY, false);
+        return tree;
+    }
+
+    private static void omitFields(ObjectNode desired, JsonNode current, JsonNode owned, Set<String> keep, boolean quantities) {
+        for (Iterator<Map.Entry<String, JsonNode>> fields = desired.fields(); fields.hasNext();) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            if (keep.contains(field.getKey())) {
+                continue;
+            }
+            if (omit(field.getValue(), current.get(field.getKey()), owned == null ? null : owned.get("f:" + field.getKey()),
+                    quantities || QUANTITY_FIELDS.contains(field.getKey()))) {
+                fields.remove();
+            }
+        }
+    }
+
+    /**
+     * Remove from the desired value what is neither changed nor owned, return true if nothing remains
+     */
+    private static boolean omit(JsonNode desired, JsonNode current, JsonNode owned, boolean quantities) {
+        if (current == null || current.isNull()) {
+            return false;
+        }
+        if (owned != null && (owned.size() == 0 || owned.has("."))) {
+            return false;
+        }
+        if (desired.isObject() && current.isObject()) {
+            omitFields((ObjectNode) desired, current, owned, Collections.emptySet(), quantities);
+            return desired.size() == 0;
+        }
+        return owned == null && contains(current, desired, quantities) && contains(desired, current, quantities);
+    }
+
+    /**
+     * The fieldsV1 of the apply by the field manager, or null if it does not own any fields
+     */
+    private static JsonNode ownedFields(HasMetadata current, String fieldManager) {
+        if (current.getMetadata().getManagedFields() == null) {
+            return null;
+        }
+        return current.getMetadata().getManagedFields().stream()
+                .filter(entry -> fieldManager.equals(entry.getManager()) && "Apply".equals(entry.getOperation()) && entry.getFieldsV1() != null)
+                .findFirst()
+                .map(entry -> (JsonNode) Serialization.jsonMapper().valueToTree(entry.getFieldsV1()))
+                .orElse(null);
+    }
+
+    private static PatchContext applyContext(String fieldManager) {
+        return new PatchContext.Builder()
+                .withPatchType(PatchType.SERVER_SIDE_APPLY)
+                .withFieldManager(fieldManager)
+                .withForce(false)
+                .build();
+    }
+
+    static boolean isServerSideApply() {
+        return ConfigProvider.getConfig().getOptionalValue(SERVER_SIDE_APPLY_PROPERTY, Boolean.class).orElse(false);
+    }
+
+    static String getFieldManager() {
+        return ConfigProvider.getConfig().getOptionalValue(FIELD_MANAGER_PROPERTY, String.class).orElse(FLEETSHARD_OPERATOR_NAME);
+    }
+
+    private static void countWrite(HasMetadata resource, String result) {
+        Metrics.counter(OPERAND_WRITES, "kind", resource.getKind(), "result", result).increment();
+    }
+
+    private static void countConflict(HasMetadata resource, String mode) {
+        Metrics.counter(OPERAND_WRITE_CONFLICTS, "kind", resource.getKind(), "mode", mode).increment();
+    }
+
+    private static void countRetry(HasMetadata resource, String mode) {
+        Metrics.counter(OPERAND_WRITE_RETRIES, "kind", resource.getKind(), "mode", mode).increment();
+    }
+
+    private static void recordPayload(HasMetadata resource, String payload, String mode) {
+        DistributionSummary.builder(OPERAND_WRITE_BYTES)
+                .tag("kind", resource.getKind())
+                .tag("mode", mode)
+                .description("The serialized size of the operand writes")
+                .baseUnit("bytes")
+                .register(Metrics.globalRegistry)
+                .record(payload.length());
+    }
+
+    /**
+     * Determine if the current resource is unchanged relative to the desired resource.
+     * <br>
+     * Both of the following must hold:
+     * <ul>
+     * <li>the {@link #DESIRED_DIGEST_ANNOTATION} of the current resource matches the desired resource,
+     * so that any change to the desired state, including a removed field, is a change</li>
+     * <li>the current resource still has all of the desired fields, so that a modification by something
+     * else is reverted.  Fields only present on the current resource, such as server populated defaults, are ignored.
+     * As are the status and the server managed metadata.  Lists must match in size and order, the data
+     * of ConfigMaps and Secrets must match exactly, and resource quantities are compared by amount.</li>
+     * </ul>
+     * The second check is not repeated for a resourceVersion of the current resource already found
+     * to be unchanged.
+     */
+    public static boolean isUnchanged(HasMetadata current, HasMetadata desired) {
+        return isUnchanged(current, desired, comparableTree(desired));
+    }
+
+    private static boolean isUnchanged(HasMetadata current, HasMetadata desired, ObjectNode desiredTree) {
+        if (current == null) {
+            return false;
+        }
+        String digest = digest(desiredTree);
+        if (!digest.equals(getOrDefault(current.getMetadata().getAnnotations(), DESIRED_DIGEST_ANNOTATION, null))) {
+            return false;
+        }
+        String uid = current.getMetadata().getUid();
+        String version = current.getMetadata().getResourceVersion() + "/" + digest;
+        if (uid != null && version.equals(verified.get(uid))) {
+            return true;
+        }
+        if (!contains(comparableTree(current), desiredTree, false)) {
+            return false;
+        }
+        if (uid != null) {
+            verified.put(uid, version);
+        }
+        return true;
+    }
+
+    /**
+     * The json tree without the status, server managed metadata, or the digest annotation
+     */
+    private static ObjectNode comparableTree(HasMetadata resource) {
+        ObjectNode tree = Serialization.jsonMapper().valueToTree(resource);
+        tree.remove("status");
+        JsonNode metadata = tree.get("metadata");
+        if (metadata instanceof ObjectNode) {
+            ((ObjectNode) metadata).remove(SERVER_METADATA);
+            JsonNode annotations = metadata.get("annotations");
+            if (annotations instanceof ObjectNode) {
+                ((ObjectNode) annotations).remove(DESIRED_DIGEST_ANNOTATION);
+                if (annotations.size() == 0) {
+                    ((ObjectNode) metadata).remove("annotations");
+                }
+            }
+        }
+        return tree;
+    }
+
+    static String desiredDigest(HasMetadata resource) {
+        return digest(comparableTree(resource));
+    }
+
+    private static String digest(ObjectNode tree) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            return String.format("%040x", new BigInteger(1, digest.digest(tree.toString().getBytes(StandardCharsets.UTF_8))));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void setDesiredDigest(HasMetadata resource, String digest) {
+        Map<String, String> annotations = new LinkedHashMap<>();
+        if (resource.getMetadata().getAnnotations() != null) {
+            annotations.putAll(resource.getMetadata().getAnnotations());
+        }
+        annotations.put(DESIRED_DIGEST_ANNOTATION, digest);
+        resource.getMetadata().setAnnotations(annotations);
+    }
+
+    private static boolean contains(JsonNode current, JsonNode desired, boolean quantities) {
+        if (desired.isObject()) {
+            if (!current.isObject()) {
+                return false;
+            }
+            for (Iterator<Map.Entry<String, JsonNode>> fields = desired.fields(); fields.hasNext();) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                JsonNode desiredValue = field.getValue();
+                JsonNode currentValue = current.get(field.getKey());
+                if (currentValue == null || currentValue.isNull()) {
+                    if (desiredValue.isNull() || (desiredValue.isContainerNode() && desiredValue.size() == 0)) {
+                        continue;
+                    }
+                    return false;
+                }
+                if (EXACT_FIELDS.contains(field.getKey()) ? !currentValue.equals(desiredValue)
+                        : !contains(currentValue, desiredValue, quantities || QUANTITY_FIELDS.contains(field.getKey()))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (desired.isArray()) {
+            if (!current.isArray() || current.size() != desired.size()) {
+                return false;
+            }
+            for (int i = 0; i < desired.size(); i++) {
+                if (!contains(current.get(i), desired.get(i), quantities)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (quantities && current.isTextual() && desired.isTextual()) {
+            // the server normalizes quantities, for example 1000m to 1
+            try {
+                return Quantity.getAmountInBytes(new Quantity(current.asText()))
+                        .compareTo(Quantity.getAmountInBytes(new Quantity(desired.asText()))) == 0;
+            } catch (IllegalArgumentException e) {
+                return current.equals(desired);
+            }
+        }
+        return current.equals(desired);
+    }
+
     public static List<Toleration> profileTolerations(ManagedKafka managedKafka, ManagedKafkaAgent agent, boolean dynamicScalingScheduling) {
         String type =
                 OperandUtils.getOrDefault(managedKafka.getMetadata().getLabels(), ManagedKafka.PROFILE_TYPE, null);
@@ -0,0 +1,70 @@
+package org.bf2.common;
+
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.OwnerReference;
+import io.fabric8.kubernetes.api.model.Pod;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Common secondary indexes for the informers created by the {@link ResourceInformerFactory}.
+ * Query them with {@link ResourceInformer#getByIndex(String, String)}.
+ */
+public final class ResourceIndexers {
+
+    public static final String OWNER_UID = "ownerUid";
+    public static final String NODE_NAME = "nodeName";
+
+    private static final String LABEL_PREFIX = "label:";
+
+    private ResourceIndexers() {
+    }
+
+    /**
+     * Indexes by the uid of each owner reference
+     */
+    public static <T extends HasMetadata> Function<T, List<String>> byOwnerUid() {
+        return resource -> {
+            List<OwnerReference> ownerReferences = resource.getMetadata().getOwnerReferences();
+            if (ownerReferences == null || ownerReferences.isEmpty()) {
+                return Collections.emptyList();
+            }
+            return ownerReferences.stream()
+                    .map(OwnerReference::getUid)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+        };
+    }
+
+    /**
+     * The index name for {@link #byLabel(String)}
+     */
+    public static String label(String label) {
+        return LABEL_PREFIX + label;
+    }
+
+    /**
+     * Indexes by the value of the given label, resources without the label are not indexed
+     */
+    public static <T extends HasMetadata> Function<T, List<String>> byLabel(String label) {
+        return resource -> {
+            String value = OperandUtils.getOrDefault(resource.getMetadata().getLabels(), label, null);
+            return value == null ? Collections.emptyList() : Collections.singletonList(value);
+        };
+    }
+
+    /**
+     * Indexes pods by the name of the node they are scheduled on, unscheduled pods are not indexed
+     */
+    public static Function<Pod, List<String>> byNodeName() {
+        return pod -> {
+            String nodeName = pod.getSpec() == null ? null : pod.getSpec().getNodeName();
+            return nodeName == null ? Collections.emptyList() : Collections.singletonList(nodeName);
+        };
+    }
+
+}
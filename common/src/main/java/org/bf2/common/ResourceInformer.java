@@ -6,10 +6,13 @@ import io.fabric8.kubernetes.client.informers.SharedIndexInformer;
 import io.fabric8.kubernetes.client.informers.cache.Cache;
 
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class ResourceInformer<T extends HasMetadata> {
 
-    private SharedIndexInformer<T> informer;
+    private volatile SharedIndexInformer<T> informer;
+    // retained so that they can be added to a relisted informer
+    private final List<ResourceEventHandler<? super T>> handlers = new CopyOnWriteArrayList<>();
 
     public ResourceInformer(SharedIndexInformer<T> informer) {
        this.informer = informer;
@@ -27,12 +30,37 @@ public class ResourceInformer<T extends HasMetadata> {
         return informer.getIndexer().byIndex(Cache.NAMESPACE_INDEX, namesapce);
     }
 
-    public void addEventHandler(ResourceEventHandler<T> handler) {
-        informer.addEventHandler(handler);
+    /**
+     * Get only the resources with the given key in an index declared when the informer was created,
+     * see {@link ResourceIndexers}
+     */
+    public List<T> getByIndex(String indexName, String indexKey) {
+        return informer.getIndexer().byIndex(indexName, indexKey);
+    }
+
+    public void addEventHandler(ResourceEventHandler<? super T> handler) {
+        handlers.add(handler);
+        informer.addEventHandler((ResourceEventHandler) handler);
     }
 
     public boolean isWatching() {
         return informer.isWatching();
     }
 
+    SharedIndexInformer<T> getInformer() {
+        return informer;
+    }
+
+    List<ResourceEventHandler<? super T>> getEventHandlers() {
+        return handlers;
+    }
+
+    /**
+     * Switch to the relisted informer, the handlers will see all of its objects as adds
+     */
+    void replaceInformer(SharedIndexInformer<T> relisted) {
+        this.informer = relisted;
+        handlers.forEach(handler -> relisted.addEventHandler((ResourceEventHandler) handler));
+    }
+
 }
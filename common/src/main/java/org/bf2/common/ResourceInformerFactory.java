@@ -4,34 +4,420 @@ import io.fabric8.kubernetes.api.model.HasMetadata;
 import io.fabric8.kubernetes.client.dsl.Informable;
 import io.fabric8.kubernetes.client.informers.ResourceEventHandler;
 import io.fabric8.kubernetes.client.informers.SharedIndexInformer;
+import io.fabric8.kubernetes.client.informers.cache.Cache;
+import io.fabric8.kubernetes.client.utils.Serialization;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
 
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
 
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+/**
+ * Creates and monitors the informers.
+ * <br>
+ * The fabric8 watch reconnects from the last seen resourceVersion and relists on its own when that
+ * version has expired.  An informer that has stopped watching for longer than the grace period, which
+ * allows for those reconnects and relists to complete, is relisted by the factory, with an exponential
+ * backoff with jitter between the attempts.
+ */
 @ApplicationScoped
 public class ResourceInformerFactory {
 
-    private ConcurrentLinkedQueue<SharedIndexInformer<?>> startedInformers = new ConcurrentLinkedQueue<>();
+    private static Logger log = Logger.getLogger(ResourceInformerFactory.class);
+
+    /* the number of cached objects per type used to estimate the object size */
+    static final int SIZE_SAMPLE = 100;
+
+    /**
+     * Applies the pruning to the cached instance passed by the informer.  Added ahead of any other
+     * handler, so they only see the pruned object.
+     * <br>
+     * The cached instance is modified in place on the informer thread, while other threads may be
+     * reading it.  So pruning is only for types whose cached objects are read, never used as the basis
+     * of a write - see {@link ResourcePruners}.
+     */
+    static class PruningHandler<T> implements ResourceEventHandler<T> {
+        private final Consumer<? super T> pruner;
+
+        PruningHandler(Consumer<? super T> pruner) {
+            this.pruner = pruner;
+        }
+
+        @Override
+        public void onAdd(T obj) {
+            pruner.accept(obj);
+        }
+
+        @Override
+        public void onUpdate(T oldObj, T newObj) {
+            pruner.accept(newObj);
+        }
+
+        @Override
+        public void onDelete(T obj, boolean deletedFinalStateUnknown) {
+        }
+    }
+
+    /**
+     * The state needed to relist an informer
+     */
+    class ManagedInformer<T extends HasMetadata> {
+        final String type;
+        final ResourceInformer<T> resourceInformer;
+        final Supplier<SharedIndexInformer<T>> starter;
+        volatile int failedAttempts;
+        long nextAttempt;
+
+        ManagedInformer(String type, Supplier<SharedIndexInformer<T>> starter) {
+            this.type = type;
+            this.starter = starter;
+            long start = System.nanoTime();
+            starting.incrementAndGet();
+            try {
+                this.resourceInformer = new ResourceInformer<>(starter.get());
+            } finally {
+                starting.decrementAndGet();
+            }
+            long synced = System.nanoTime() - start;
+            log.debugf("The %s informer synced %s objects in %s ms", type,
+                    resourceInformer.getInformer().getStore().listKeys().size(), TimeUnit.NANOSECONDS.toMillis(synced));
+            if (meterRegistry != null) {
+                Timer.builder("informer.sync.duration")
+                        .tag("type", type)
+                        .description("The time taken by the initial list of an informer")
+                        .register(meterRegistry)
+                        .record(synced, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        boolean isWatching() {
+            return resourceInformer.isWatching();
+        }
+
+        void check(long now) {
+            if (isWatching()) {
+                failedAttempts = 0;
+                nextAttempt = 0;
+            } else if (nextAttempt == 0) {
+                // a chance for the watch to recover on its own
+                nextAttempt = now + gracePeriod.toMillis();
+            } else if (now >= nextAttempt) {
+                try {
+                    relist();
+                    failedAttempts = 0;
+                    nextAttempt = 0;
+                } catch (RuntimeException e) {
+                    failedAttempts++;
+                    nextAttempt = now + backoff(failedAttempts);
+                    log.warnf(e, "Relist %s of the %s informer failed", failedAttempts, type);
+                }
+            }
+        }
+
+        void relist() {
+            long start = System.nanoTime();
+            SharedIndexInformer<T> stopped = resourceInformer.getInformer();
+            stopped.stop();
+            SharedIndexInformer<T> relisted = starter.get();
+            Map<String, T> removed = stopped.getStore().list().stream().collect(Collectors.toMap(Cache::metaNamespaceKeyFunc, Function.identity()));
+            relisted.getStore().listKeys().forEach(removed::remove);
+            resourceInformer.replaceInformer(relisted);
+            // the relisted informer has no record of what was deleted in the meantime
+            removed.values().forEach(obj -> resourceInformer.getEventHandlers().forEach(handler -> handler.onDelete(obj, true)));
+
+            int objects = relisted.getStore().listKeys().size();
+            log.infof("Relisted %s %s objects, %s were removed", objects, type, removed.size());
+            if (meterRegistry != null) {
+                Counter.builder("informer.relists")
+                        .tag("type", type)
+                        .description("The number of relists after an informer stopped watching")
+                        .register(meterRegistry)
+                        .increment();
+                Counter.builder("informer.relist.objects")
+                        .tag("type", type)
+                        .description("The number of objects transferred by the relists")
+                        .register(meterRegistry)
+                        .increment(objects);
+                Timer.builder("informer.relist.duration")
+                        .tag("type", type)
+                        .description("The time taken by the relists")
+                        .register(meterRegistry)
+                        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    @ConfigProperty(name = "informer.resync-period", defaultValue = "0s")
+    Duration resyncPeriod = Duration.ZERO;
+    // how long an informer may be not watching before it is relisted by the factory
+    @ConfigProperty(name = "informer.relist.grace-period", defaultValue = "60s")
+    Duration gracePeriod = Duration.ofSeconds(60);
+    @ConfigProperty(name = "informer.relist.initial-backoff", defaultValue = "1s")
+    Duration initialBackoff = Duration.ofSeconds(1);
+    @ConfigProperty(name = "informer.relist.max-backoff", defaultValue = "60s")
+    Duration maxBackoff = Duration.ofSeconds(60);
+    // consecutive failures to relist before the informers are reported as not watching
+    @ConfigProperty(name = "informer.relist.max-attempts", defaultValue = "5")
+    int maxAttempts = 5;
+    @ConfigProperty(name = "informer.check-interval", defaultValue = "5s")
+    Duration checkInterval = Duration.ofSeconds(5);
+    // how often the cached object size is estimated, as it serializes a sample of the objects
+    @ConfigProperty(name = "informer.size-sample-interval", defaultValue = "60s")
+    Duration sizeSampleInterval = Duration.ofSeconds(60);
+    // when false the handlers requested as asynchronous are run on the informer thread
+    @ConfigProperty(name = "informer.handler.async", defaultValue = "true")
+    boolean asyncHandlers = true;
+    // the maximum number of objects with a pending event for an asynchronous handler
+    @ConfigProperty(name = "informer.handler.queue-size", defaultValue = "1000")
+    int handlerQueueSize = 1000;
+
+    private volatile ScheduledExecutorService checkExecutor;
+
+    private AtomicInteger starting = new AtomicInteger();
+
+    private ConcurrentLinkedQueue<ManagedInformer<?>> startedInformers = new ConcurrentLinkedQueue<>();
+
+    private Map<String, Queue<ResourceInformer<?>>> informersByType = new ConcurrentHashMap<>();
+
+    private Map<String, Double> objectBytesByType = new ConcurrentHashMap<>();
+
+    private ConcurrentLinkedQueue<AsyncResourceEventHandler<?>> asyncHandlerList = new ConcurrentLinkedQueue<>();
 
     public <T extends HasMetadata> ResourceInformer<T> create(Class<T> type,
             Informable<T> informable,
             ResourceEventHandler<? super T> eventHandler) {
-        SharedIndexInformer<T> informer = informable.inform();
+        return create(type, informable, eventHandler, Collections.emptyMap(), null);
+    }
+
+    /**
+     * Create an informer that prunes the cached objects, see {@link ResourcePruners}
+     */
+    public <T extends HasMetadata> ResourceInformer<T> create(Class<T> type,
+            Informable<T> informable,
+            ResourceEventHandler<? super T> eventHandler,
+            Consumer<? super T> pruner) {
+        return create(type, informable, eventHandler, Collections.emptyMap(), pruner);
+    }
+
+    /**
+     * Create an informer with additional indexes, which may be queried with {@link ResourceInformer#getByIndex(String, String)}
+     *
+     * @param indexers by index name, see {@link ResourceIndexers}
+     */
+    public <T extends HasMetadata> ResourceInformer<T> create(Class<T> type,
+            Informable<T> informable,
+            ResourceEventHandler<? super T> eventHandler,
+            Map<String, Function<T, List<String>>> indexers) {
+        return create(type, informable, eventHandler, indexers, null);
+    }
+
+    /**
+     * @param indexers by index name, see {@link ResourceIndexers}
+     * @param pruner may be null, otherwise modifies each object as it enters the cache.  Until
+     * the pruning is applied, the cache holds the full object.
+     */
+    public <T extends HasMetadata> ResourceInformer<T> create(Class<T> type,
+            Informable<T> informable,
+            ResourceEventHandler<? super T> eventHandler,
+            Map<String, Function<T, List<String>>> indexers,
+            Consumer<? super T> pruner) {
+        ManagedInformer<T> managed = new ManagedInformer<>(type.getSimpleName(), () -> {
+            // the indexes must be in place before the initial list
+            SharedIndexInformer<T> informer = informable.runnableInformer(resyncPeriod.toMillis());
+            if (!indexers.isEmpty()) {
+                informer.addIndexers(indexers);
+            }
+            try {
+                informer.run();
+            } catch (RuntimeException e) {
+                informer.stop();
+                throw e;
+            }
+            if (pruner != null) {
+                informer.addEventHandler(new PruningHandler<T>(pruner));
+            }
+            return informer;
+        });
         // https://github.com/fabric8io/kubernetes-client/issues/4082 add the handler after it's started so that we see the full state of the cache
         if (eventHandler != null) {
-            informer.addEventHandler((ResourceEventHandler) eventHandler);
+            managed.resourceInformer.addEventHandler(eventHandler);
+        }
+        startedInformers.add(managed);
+        monitor(managed);
+        return managed.resourceInformer;
+    }
+
+    /**
+     * Run the informer creations concurrently, so that the initial lists overlap.  Returns once all
+     * have completed.
+     *
+     * @throws RuntimeException the first creation failure
+     */
+    public void createConcurrently(Runnable... creations) {
+        ExecutorService executor = Executors.newFixedThreadPool(creations.length);
+        try {
+            CompletableFuture.allOf(Stream.of(creations)
+                    .map(creation -> CompletableFuture.runAsync(creation, executor))
+                    .toArray(CompletableFuture[]::new))
+                    .join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        } finally {
+            executor.shutdown();
         }
-        startedInformers.add(informer);
-        return new ResourceInformer<>(informer);
     }
 
     /**
-     * Return true if all informers are watching.  Will be false only after something
-     * has abnormally failed with the watch.
+     * Wrap the handler so that it processes the events on its own thread, see {@link AsyncResourceEventHandler}.
+     * Use for handlers that may be slow - such as those making api calls - so that they do not delay
+     * the other handlers of the same informer.
+     *
+     * @param name unique name of the handler used for the thread and metrics
+     */
+    public <T extends HasMetadata> ResourceEventHandler<T> asynchronous(String name, ResourceEventHandler<T> handler) {
+        if (!asyncHandlers) {
+            return handler;
+        }
+        AsyncResourceEventHandler<T> result = new AsyncResourceEventHandler<>(name, handler, handlerQueueSize, meterRegistry);
+        asyncHandlerList.add(result);
+        return result;
+    }
+
+    private void monitor(ManagedInformer<?> managed) {
+        if (checkExecutor == null) {
+            synchronized (this) {
+                if (checkExecutor == null) {
+                    checkExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                        Thread thread = new Thread(r, "informer-check");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    checkExecutor.scheduleWithFixedDelay(this::checkInformers, checkInterval.toMillis(),
+                            checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+                    if (meterRegistry != null) {
+                        checkExecutor.scheduleWithFixedDelay(this::sampleObjectBytes, sizeSampleInterval.toMillis(),
+                                sizeSampleInterval.toMillis(), TimeUnit.MILLISECONDS);
+                    }
+                }
+            }
+        }
+        if (meterRegistry == null) {
+            return;
+        }
+        // there may be several informers for a type, so the meters are for all of them
+        informersByType.computeIfAbsent(managed.type, name -> {
+            Queue<ResourceInformer<?>> informers = new ConcurrentLinkedQueue<>();
+            Gauge.builder("informer.cache.objects", informers, ResourceInformerFactory::cachedObjects)
+                    .tag("type", name)
+                    .description("The number of cached objects")
+                    .register(meterRegistry);
+            // sampled periodically rather than on each scrape
+            Gauge.builder("informer.cache.object.bytes", objectBytesByType, bytes -> bytes.getOrDefault(name, 0d))
+                    .tag("type", name)
+                    .description("The mean serialized size of a sample of the cached objects, an estimate of the memory per object")
+                    .baseUnit("bytes")
+                    .register(meterRegistry);
+            return informers;
+        }).add(managed.resourceInformer);
+    }
+
+    void sampleObjectBytes() {
+        informersByType.forEach((type, informers) -> objectBytesByType.put(type, meanObjectBytes(informers)));
+    }
+
+    void checkInformers() {
+        long now = System.currentTimeMillis();
+        startedInformers.forEach(managed -> managed.check(now));
+    }
+
+    /**
+     * Exponential backoff with jitter - between half and all of the full delay
+     */
+    long backoff(int failedAttempts) {
+        long delay = Math.min(maxBackoff.toMillis(), initialBackoff.toMillis() << Math.min(failedAttempts, 20));
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    @PreDestroy
+    void onStop() {
+        if (checkExecutor != null) {
+            checkExecutor.shutdownNow();
+        }
+        asyncHandlerList.forEach(AsyncResourceEventHandler::close);
+    }
+
+    static double cachedObjects(Queue<ResourceInformer<?>> informers) {
+        return informers.stream().mapToInt(informer -> informer.getInformer().getStore().listKeys().size()).sum();
+    }
+
+    static double meanObjectBytes(Queue<ResourceInformer<?>> informers) {
+        long bytes = 0;
+        int count = 0;
+        for (ResourceInformer<?> informer : informers) {
+            for (Object cached : informer.getInformer().getStore().list()) {
+                if (count == SIZE_SAMPLE) {
+                    break;
+                }
+                bytes += Serialization.asJson(cached).length();
+                count++;
+            }
+        }
+        return count == 0 ? 0 : (double) bytes / count;
+    }
+
+    /**
+     * Return true while any informer is performing its initial list
+     */
+    public boolean isStarting() {
+        return starting.get() > 0;
+    }
+
+    /**
+     * Return true if all informers have completed their initial list.  This is the readiness gate
+     * for anything reading the informer caches.
+     */
+    public boolean allInformersSynced() {
+        return !isStarting() && startedInformers.stream().allMatch(managed -> managed.resourceInformer.getInformer().hasSynced());
+    }
+
+    /**
+     * Return true if all informers are watching, or are expected to be relisted.  Will be false only after
+     * something has abnormally failed with the watch and the relists have not recovered.
      */
     public boolean allInformersWatching() {
-        return startedInformers.stream().allMatch(SharedIndexInformer::isWatching);
+        return startedInformers.stream().allMatch(managed -> managed.isWatching() || managed.failedAttempts < maxAttempts);
     }
 
 }
@@ -0,0 +1,42 @@
+package org.bf2.common;
+
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.ObjectMeta;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Common pruning for the objects cached by the informers created by the {@link ResourceInformerFactory}.
+ * <br>
+ * Only prune what no reader of the cache uses, and only types whose cached objects are never the basis of
+ * a write.  The pruning is applied in place to the cached object, so the fields are replaced rather than
+ * the collections they hold being modified.
+ */
+public final class ResourcePruners {
+
+    public static final String LAST_APPLIED_CONFIGURATION = "kubectl.kubernetes.io/last-applied-configuration";
+
+    private ResourcePruners() {
+    }
+
+    /**
+     * Removes the managedFields and the last applied configuration annotation, which are
+     * often larger than the rest of the object
+     */
+    public static <T extends HasMetadata> Consumer<T> metadata() {
+        return ResourcePruners::pruneMetadata;
+    }
+
+    public static void pruneMetadata(HasMetadata resource) {
+        ObjectMeta metadata = resource.getMetadata();
+        metadata.setManagedFields(null);
+        if (metadata.getAnnotations() != null && metadata.getAnnotations().containsKey(LAST_APPLIED_CONFIGURATION)) {
+            Map<String, String> annotations = new LinkedHashMap<>(metadata.getAnnotations());
+            annotations.remove(LAST_APPLIED_CONFIGURATION);
+            metadata.setAnnotations(annotations);
+        }
+    }
+
+}
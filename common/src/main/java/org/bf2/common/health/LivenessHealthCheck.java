@@ -20,6 +20,10 @@ public class LivenessHealthCheck implements HealthCheck {
         if (this.resourceInformerFactory.allInformersWatching()) {
             return HealthCheckResponse.up("Informers are watching");
         }
+        // a slow initial list is not a reason to restart
+        if (this.resourceInformerFactory.isStarting()) {
+            return HealthCheckResponse.up("Informers are starting");
+        }
         return HealthCheckResponse.down("Informers are not watching");
     }
 }
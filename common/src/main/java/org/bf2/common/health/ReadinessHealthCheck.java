@@ -0,0 +1,28 @@
+package org.bf2.common.health;
+
+import org.bf2.common.ResourceInformerFactory;
+import org.eclipse.microprofile.health.HealthCheck;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.eclipse.microprofile.health.Readiness;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+@Readiness
+@ApplicationScoped
+public class ReadinessHealthCheck implements HealthCheck {
+
+    @Inject
+    ResourceInformerFactory resourceInformerFactory;
+
+    @Override
+    public HealthCheckResponse call() {
+        if (!this.resourceInformerFactory.allInformersSynced()) {
+            return HealthCheckResponse.down("Informers are starting");
+        }
+        if (!this.resourceInformerFactory.allInformersWatching()) {
+            return HealthCheckResponse.down("Informers are not watching");
+        }
+        return HealthCheckResponse.up("Informers are synced");
+    }
+}
@@ -0,0 +1,273 @@
+package org.bf2.common;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.informers.ResourceEventHandler;
+import io.fabric8.kubernetes.client.informers.cache.Cache;
+import io.fabric8.kubernetes.client.server.mock.KubernetesServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bf2.operator.resources.v1alpha1.ManagedKafka;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AsyncResourceEventHandlerTest {
+
+    static final int INSTANCES = 20;
+    static final long SLOW_HANDLER_MS = 200;
+
+    KubernetesServer server = new KubernetesServer(false, true);
+    KubernetesClient client;
+
+    @BeforeEach
+    public void beforeEach() {
+        server.before();
+        client = server.getClient();
+    }
+
+    @AfterEach
+    public void afterEach() {
+        server.after();
+    }
+
+    /**
+     * Similar to a status update, which makes an api call for each event
+     */
+    static class SlowHandler implements ResourceEventHandler<ManagedKafka> {
+        final Set<String> seen = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public void onAdd(ManagedKafka obj) {
+            try {
+                Thread.sleep(SLOW_HANDLER_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            seen.add(Cache.metaNamespaceKeyFunc(obj));
+        }
+
+        @Override
+        public void onUpdate(ManagedKafka oldObj, ManagedKafka newObj) {
+            onAdd(newObj);
+        }
+
+        @Override
+        public void onDelete(ManagedKafka obj, boolean deletedFinalStateUnknown) {
+        }
+    }
+
+    /**
+     * @return the time in ms for the controller handler to see all of the new ManagedKafkas
+     */
+    long timeControllerEvents(ResourceInformerFactory factory, int offset) throws InterruptedException {
+        Set<String> reconciled = ConcurrentHashMap.newKeySet();
+        ResourceInformer<ManagedKafka> informer = factory.create(ManagedKafka.class, client.resources(ManagedKafka.class).inAnyNamespace(), null);
+        SlowHandler slow = new SlowHandler();
+        // added first, so that inline it is called ahead of the controller
+        informer.addEventHandler(factory.asynchronous("slow-" + offset, slow));
+        informer.addEventHandler(new ResourceEventHandler<ManagedKafka>() {
+            @Override
+            public void onAdd(ManagedKafka obj) {
+                reconciled.add(Cache.metaNamespaceKeyFunc(obj));
+            }
+
+            @Override
+            public void onUpdate(ManagedKafka oldObj, ManagedKafka newObj) {
+            }
+
+            @Override
+            public void onDelete(ManagedKafka obj, boolean deletedFinalStateUnknown) {
+            }
+        });
+
+        long start = System.nanoTime();
+        for (int i = offset; i < offset + INSTANCES; i++) {
+            ManagedKafka mk = ManagedKafka.getDummyInstance(i);
+            client.resources(ManagedKafka.class).inNamespace(mk.getMetadata().getNamespace()).create(mk);
+        }
+        ResourceInformerTest.awaitCondition(() -> reconciled.size() == INSTANCES);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // the slow handler still sees everything
+        ResourceInformerTest.awaitCondition(() -> slow.seen.size() == INSTANCES);
+        // stop the monitoring first, so that the stopped informer is not relisted
+        factory.onStop();
+        informer.getInformer().stop();
+        for (int i = offset; i < offset + INSTANCES; i++) {
+            client.resources(ManagedKafka.class).inNamespace("mk-" + i).withName("mk-" + i).delete();
+        }
+        return elapsed;
+    }
+
+    @Test
+    public void testSlowHandlerDoesNotDelayController() throws InterruptedException {
+        ResourceInformerFactory inlineFactory = new ResourceInformerFactory();
+        inlineFactory.asyncHandlers = false;
+        long inline = timeControllerEvents(inlineFactory, 0);
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ResourceInformerFactory factory = new ResourceInformerFactory();
+        factory.meterRegistry = registry;
+        long async = timeControllerEvents(factory, INSTANCES);
+
+        Logger.getLogger(AsyncResourceEventHandlerTest.class).infof(
+                "Controller saw %s ManagedKafkas behind a %s ms handler: inline %s ms, asynchronous %s ms",
+                INSTANCES, SLOW_HANDLER_MS, inline, async);
+        assertTrue(async < inline);
+        assertTrue(async < INSTANCES * SLOW_HANDLER_MS);
+
+        assertEquals(INSTANCES, registry.get("informer.handler.duration").tag("handler", "slow-" + INSTANCES).timer().count());
+        assertTrue(registry.get("informer.handler.lag").tag("handler", "slow-" + INSTANCES).timer()
+                .max(TimeUnit.MILLISECONDS) >= SLOW_HANDLER_MS);
+        assertEquals(0, registry.get("informer.handler.pending").tag("handler", "slow-" + INSTANCES).gauge().value());
+    }
+
+    static ConfigMap configMap(String name, String value) {
+        return new ConfigMapBuilder()
+                .withNewMetadata().withNamespace("ns").withName(name).endMetadata()
+                .withData(Map.of("value", value))
+                .build();
+    }
+
+    static ConfigMap configMap(String name, String value, String uid) {
+        ConfigMap result = configMap(name, value);
+        result.getMetadata().setUid(uid);
+        return result;
+    }
+
+    /**
+     * Records the events, the add of the first object waits until blocked is released
+     */
+    static AsyncResourceEventHandler<ConfigMap> recordingHandler(CountDownLatch blocked, List<String> events, SimpleMeterRegistry registry) {
+        return new AsyncResourceEventHandler<>("test", new ResourceEventHandler<ConfigMap>() {
+            @Override
+            public void onAdd(ConfigMap obj) {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                events.add("add " + obj.getMetadata().getName() + " " + obj.getData().get("value"));
+            }
+
+            @Override
+            public void onUpdate(ConfigMap oldObj, ConfigMap newObj) {
+                events.add("update " + newObj.getMetadata().getName() + " " + oldObj.getData().get("value") + "->"
+                        + newObj.getData().get("value"));
+            }
+
+            @Override
+            public void onDelete(ConfigMap obj, boolean deletedFinalStateUnknown) {
+                events.add("delete " + obj.getMetadata().getName());
+            }
+        }, 2, registry);
+    }
+
+    @Test
+    public void testCoalescing() throws InterruptedException {
+        CountDownLatch blocked = new CountDownLatch(1);
+        List<String> events = new CopyOnWriteArrayList<>();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        AsyncResourceEventHandler<ConfigMap> handler = recordingHandler(blocked, events, registry);
+
+        try {
+            // a is being processed, so the rest are pending
+            handler.onAdd(configMap("a", "1"));
+            ResourceInformerTest.awaitCondition(() -> handler.getPendingCount() == 0);
+            handler.onAdd(configMap("b", "1"));
+            handler.onUpdate(configMap("b", "1"), configMap("b", "2"));
+            handler.onUpdate(configMap("a", "1"), configMap("a", "2"));
+            handler.onUpdate(configMap("a", "2"), configMap("a", "3"));
+            assertEquals(2, handler.getPendingCount());
+
+            // the queue is full, so a new key waits for the handler
+            Thread thread = new Thread(() -> handler.onDelete(configMap("c", "1"), false));
+            thread.start();
+            thread.join(200);
+            assertTrue(thread.isAlive());
+
+            blocked.countDown();
+            thread.join(30000);
+            ResourceInformerTest.awaitCondition(() -> events.size() == 4);
+        } finally {
+            handler.close();
+        }
+
+        assertEquals(List.of("add a 1", "add b 2", "update a 1->3", "delete c"), events);
+        assertEquals(2, registry.get("informer.handler.coalesced").tag("handler", "test").counter().count());
+        assertEquals(1, registry.get("informer.handler.blocked").tag("handler", "test").counter().count());
+    }
+
+    @Test
+    public void testDeleteThenAdd() throws InterruptedException {
+        CountDownLatch blocked = new CountDownLatch(1);
+        List<String> events = new CopyOnWriteArrayList<>();
+        AsyncResourceEventHandler<ConfigMap> handler = recordingHandler(blocked, events, new SimpleMeterRegistry());
+
+        try {
+            handler.onAdd(configMap("blocking", "1"));
+            ResourceInformerTest.awaitCondition(() -> handler.getPendingCount() == 0);
+
+            // recreated with a new uid
+            handler.onDelete(configMap("a", "1", "uid-1"), false);
+            handler.onAdd(configMap("a", "2", "uid-2"));
+            handler.onUpdate(configMap("a", "2", "uid-2"), configMap("a", "3", "uid-2"));
+            assertEquals(1, handler.getPendingCount());
+
+            blocked.countDown();
+            ResourceInformerTest.awaitCondition(() -> events.size() == 3);
+        } finally {
+            handler.close();
+        }
+
+        // the delete of the old object is still seen
+        assertEquals(List.of("add blocking 1", "delete a", "add a 3"), events);
+    }
+
+    @Test
+    public void testAddThenDelete() throws InterruptedException {
+        CountDownLatch blocked = new CountDownLatch(1);
+        List<String> events = new CopyOnWriteArrayList<>();
+        AsyncResourceEventHandler<ConfigMap> handler = recordingHandler(blocked, events, new SimpleMeterRegistry());
+
+        try {
+            handler.onAdd(configMap("blocking", "1"));
+            ResourceInformerTest.awaitCondition(() -> handler.getPendingCount() == 0);
+
+            // never seen, so nothing to deliver
+            handler.onAdd(configMap("a", "1", "uid-1"));
+            handler.onUpdate(configMap("a", "1", "uid-1"), configMap("a", "2", "uid-1"));
+            handler.onDelete(configMap("a", "2", "uid-1"), false);
+            assertEquals(0, handler.getPendingCount());
+
+            // only the delete of the object that was seen
+            handler.onDelete(configMap("b", "1", "uid-1"), false);
+            handler.onAdd(configMap("b", "2", "uid-2"));
+            handler.onDelete(configMap("b", "2", "uid-2"), false);
+            assertEquals(1, handler.getPendingCount());
+
+            handler.onAdd(configMap("c", "1"));
+
+            blocked.countDown();
+            ResourceInformerTest.awaitCondition(() -> events.size() == 3);
+        } finally {
+            handler.close();
+        }
+
+        assertEquals(List.of("add blocking 1", "delete b", "add c 1"), events);
+    }
+
+}
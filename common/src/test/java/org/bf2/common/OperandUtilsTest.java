@@ -1,10 +1,43 @@
 package org.bf2.common;
 
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.fabric8.kubernetes.api.model.FieldsV1;
+import io.fabric8.kubernetes.api.model.ManagedFieldsEntryBuilder;
+import io.fabric8.kubernetes.api.model.Quantity;
+import io.fabric8.kubernetes.api.model.apps.Deployment;
+import io.fabric8.kubernetes.api.model.StatusBuilder;
+import io.fabric8.kubernetes.api.model.apps.DeploymentBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.server.mock.KubernetesMockServer;
+import io.fabric8.kubernetes.client.server.mock.KubernetesServer;
+import io.fabric8.kubernetes.client.utils.Serialization;
+import io.fabric8.mockwebserver.Context;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
 import org.junit.jupiter.api.Test;
 
+import java.net.HttpURLConnection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class OperandUtilsTest {
 
@@ -14,4 +47,244 @@ public class OperandUtilsTest {
         assertEquals("value", OperandUtils.getOrDefault(Map.of("key", "value"), "key", "1"));
     }
 
+    static Deployment deployment(String cpu, String image) {
+        return new DeploymentBuilder()
+                .withNewMetadata()
+                    .withNamespace("test")
+                    .withName("test-deployment")
+                    .withLabels(OperandUtils.getDefaultLabels())
+                .endMetadata()
+                .withNewSpec()
+                    .withReplicas(1)
+                    .withNewTemplate()
+                        .withNewSpec()
+                            .addNewContainer()
+                                .withName("test")
+                                .withImage(image)
+                                .withNewResources()
+                                    .addToLimits("cpu", new Quantity(cpu))
+                                .endResources()
+                            .endContainer()
+                        .endSpec()
+                    .endTemplate()
+                .endSpec()
+                .build();
+    }
+
+    @Test public void testIsUnchanged() {
+        Deployment desired = deployment("1000m", "image:1");
+
+        // what a server would return
+        Deployment current = new DeploymentBuilder(deployment("1", "image:1"))
+                .editMetadata()
+                    .withResourceVersion("5")
+                    .withUid("uid")
+                    .addToAnnotations("deployment.kubernetes.io/revision", "1")
+                    .addToAnnotations(OperandUtils.DESIRED_DIGEST_ANNOTATION, OperandUtils.desiredDigest(desired))
+                .endMetadata()
+                .editSpec()
+                    .withRevisionHistoryLimit(10)
+                    .editTemplate()
+                        .editSpec()
+                            .editFirstContainer()
+                                .withImagePullPolicy("IfNotPresent")
+                                .withTerminationMessagePath("/dev/termination-log")
+                            .endContainer()
+                        .endSpec()
+                    .endTemplate()
+                .endSpec()
+                .withNewStatus()
+                    .withReadyReplicas(1)
+                .endStatus()
+                .build();
+
+        assertFalse(OperandUtils.isUnchanged(null, desired));
+        assertTrue(OperandUtils.isUnchanged(current, desired));
+        assertFalse(OperandUtils.isUnchanged(current, deployment("2", "image:1")));
+        assertFalse(OperandUtils.isUnchanged(current, deployment("1", "image:2")));
+
+        Deployment moreContainers = new DeploymentBuilder(desired).editSpec().editTemplate().editSpec()
+                .addNewContainer().withName("other").endContainer().endSpec().endTemplate().endSpec().build();
+        assertFalse(OperandUtils.isUnchanged(current, moreContainers));
+
+        // a field removed from the desired state is a change, even though the current still contains the rest
+        Deployment withSelector = new DeploymentBuilder(desired).editSpec().editTemplate().editSpec()
+                .withNodeSelector(Map.of("zone", "a")).endSpec().endTemplate().endSpec().build();
+        Deployment currentWithSelector = new DeploymentBuilder(current).editMetadata()
+                .addToAnnotations(OperandUtils.DESIRED_DIGEST_ANNOTATION, OperandUtils.desiredDigest(withSelector))
+                .endMetadata().editSpec().editTemplate().editSpec()
+                .withNodeSelector(Map.of("zone", "a")).endSpec().endTemplate().endSpec().build();
+        assertTrue(OperandUtils.isUnchanged(currentWithSelector, withSelector));
+        assertFalse(OperandUtils.isUnchanged(currentWithSelector, desired));
+
+        // a desired field modified by something else is a change
+        Deployment modified = new DeploymentBuilder(current).editMetadata().withResourceVersion("6").endMetadata()
+                .editSpec().withReplicas(2).endSpec().build();
+        assertFalse(OperandUtils.isUnchanged(modified, desired));
+    }
+
+    @Test public void testIsUnchangedData() {
+        ConfigMap current = new ConfigMapBuilder()
+                .withNewMetadata().withNamespace("test").withName("test-cm").withResourceVersion("1").endMetadata()
+                .withData(Map.of("a", "1", "b", "2"))
+                .build();
+        current.getMetadata().setAnnotations(Map.of(OperandUtils.DESIRED_DIGEST_ANNOTATION, OperandUtils.desiredDigest(current)));
+
+        assertTrue(OperandUtils.isUnchanged(current, new ConfigMapBuilder(current).editMetadata().withResourceVersion(null).endMetadata().build()));
+        // a removed key is a change
+        assertFalse(OperandUtils.isUnchanged(current, new ConfigMapBuilder(current).withData(Map.of("a", "1")).build()));
+        assertFalse(OperandUtils.isUnchanged(current, new ConfigMapBuilder(current).withData(Map.of("a", "1", "b", "3")).build()));
+    }
+
+    @Test public void testDesiredDigestOnlyForSkippableWrites() {
+        KubernetesServer server = new KubernetesServer(false, true);
+        server.before();
+        try {
+            KubernetesClient client = server.getClient();
+            ConfigMap configMap = new ConfigMapBuilder()
+                    .withNewMetadata().withNamespace("test").withName("test-cm").endMetadata()
+                    .withData(Map.of("a", "1"))
+                    .build();
+
+            // nothing is ever compared, so there is no digest
+            ConfigMap written = OperandUtils.createOrUpdate(client.configMaps(), new ConfigMapBuilder(configMap).build());
+            assertNull(OperandUtils.getOrDefault(written.getMetadata().getAnnotations(), OperandUtils.DESIRED_DIGEST_ANNOTATION, null));
+
+            written = OperandUtils.createOrUpdate(client.configMaps(), new ConfigMapBuilder(configMap).build(), written);
+            assertEquals(OperandUtils.desiredDigest(configMap), written.getMetadata().getAnnotations().get(OperandUtils.DESIRED_DIGEST_ANNOTATION));
+
+            // then skipped as unchanged
+            assertSame(written, OperandUtils.createOrUpdate(client.configMaps(), new ConfigMapBuilder(configMap).build(), written));
+        } finally {
+            server.after();
+        }
+    }
+
+    /**
+     * Records the apply requests and echos the body, the first apply without force is
+     * answered with a conflict if requested
+     */
+    static class ApplyDispatcher extends Dispatcher {
+        final List<RecordedRequest> applies = new CopyOnWriteArrayList<>();
+        final List<String> bodies = new CopyOnWriteArrayList<>();
+        volatile boolean conflict;
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            if (!"PATCH".equals(request.getMethod())) {
+                return new MockResponse().setResponseCode(HttpURLConnection.HTTP_NOT_FOUND);
+            }
+            String body = request.getBody().readUtf8();
+            applies.add(request);
+            bodies.add(body);
+            if (conflict && !"true".equals(request.getRequestUrl().queryParameter("force"))) {
+                conflict = false;
+                return new MockResponse().setResponseCode(HttpURLConnection.HTTP_CONFLICT)
+                        .setBody(Serialization.asJson(new StatusBuilder().withCode(HttpURLConnection.HTTP_CONFLICT)
+                                .withReason("Conflict")
+                                .withMessage("Apply failed with 1 conflict: conflict with \"other\": .data.a")
+                                .build()));
+            }
+            return new MockResponse().setBody(body);
+        }
+    }
+
+    @Test public void testApply() {
+        ApplyDispatcher dispatcher = new ApplyDispatcher();
+        KubernetesMockServer server = new KubernetesMockServer(new Context(Serialization.jsonMapper()), new MockWebServer(),
+                new HashMap<>(), dispatcher, false);
+        server.init();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        Metrics.addRegistry(registry);
+        try {
+            KubernetesClient client = server.createClient();
+            ConfigMap configMap = new ConfigMapBuilder()
+                    .withNewMetadata()
+                        .withNamespace("test")
+                        .withName("test-cm")
+                        .withResourceVersion("5")
+                        .withLabels(OperandUtils.getDefaultLabels())
+                    .endMetadata()
+                    .withData(Map.of("a", "1"))
+                    .build();
+
+            ConfigMap applied = OperandUtils.apply(client.configMaps(), configMap);
+            assertEquals("1", applied.getData().get("a"));
+            assertEquals(1, dispatcher.applies.size());
+            RecordedRequest request = dispatcher.applies.get(0);
+            assertEquals("/api/v1/namespaces/test/configmaps/test-cm", request.getRequestUrl().encodedPath());
+            assertTrue(request.getHeader("Content-Type").startsWith("application/apply-patch+yaml"));
+            assertEquals(OperandUtils.FLEETSHARD_OPERATOR_NAME, request.getRequestUrl().queryParameter("fieldManager"));
+            ConfigMap sent = Serialization.unmarshal(dispatcher.bodies.get(0), ConfigMap.class);
+            // no optimistic lock
+            assertNull(sent.getMetadata().getResourceVersion());
+            assertEquals("5", configMap.getMetadata().getResourceVersion());
+
+            // a conflict is not forced, it is surfaced
+            dispatcher.conflict = true;
+            KubernetesClientException e = assertThrows(KubernetesClientException.class, () -> OperandUtils.apply(client.configMaps(), configMap));
+            assertEquals(HttpURLConnection.HTTP_CONFLICT, e.getCode());
+            assertEquals(2, dispatcher.applies.size());
+            assertNotEquals("true", dispatcher.applies.get(1).getRequestUrl().queryParameter("force"));
+            assertEquals(1, registry.get(OperandUtils.OPERAND_WRITE_CONFLICTS).tags("kind", "ConfigMap", "mode", OperandUtils.APPLY).counter().count());
+            assertNull(registry.find(OperandUtils.OPERAND_WRITE_RETRIES).tags("kind", "ConfigMap", "mode", OperandUtils.APPLY).counter());
+            assertEquals(2, registry.get(OperandUtils.OPERAND_WRITE_BYTES).tags("kind", "ConfigMap", "mode", OperandUtils.APPLY).summary().count());
+        } finally {
+            Metrics.removeRegistry(registry);
+            server.destroy();
+        }
+    }
+
+    @Test public void testApplyTree() {
+        ConfigMap current = new ConfigMapBuilder()
+                .withNewMetadata()
+                    .withNamespace("test")
+                    .withName("test-cm")
+                    .withUid("uid")
+                    .withResourceVersion("5")
+                    .withCreationTimestamp("2021-01-01T00:00:00Z")
+                    .withLabels(OperandUtils.getDefaultLabels())
+                    .withAnnotations(Map.of("other", "value"))
+                    .withManagedFields(new ManagedFieldsEntryBuilder()
+                            .withManager(OperandUtils.FLEETSHARD_OPERATOR_NAME)
+                            .withOperation("Apply")
+                            .withFieldsV1(fieldsV1(Map.of(
+                                    "f:data", Map.of("f:a", Map.of()),
+                                    "f:metadata", Map.of("f:labels", Map.of("f:" + OperandUtils.MANAGED_BY_LABEL, Map.of()))))))
+                            .build())
+                .endMetadata()
+                .withData(Map.of("a", "1", "b", "2"))
+                .build();
+
+        // built from the cached copy
+        ConfigMap desired = new ConfigMapBuilder(current)
+                .addToData("c", "3")
+                .build();
+
+        ObjectNode tree = OperandUtils.applyTree(desired, current, OperandUtils.FLEETSHARD_OPERATOR_NAME);
+        ObjectNode expected = Serialization.jsonMapper().createObjectNode();
+        expected.put("apiVersion", "v1");
+        expected.put("kind", "ConfigMap");
+        ObjectNode metadata = expected.putObject("metadata");
+        metadata.put("name", "test-cm");
+        metadata.put("namespace", "test");
+        // still owned, so still applied
+        metadata.putObject("labels").put(OperandUtils.MANAGED_BY_LABEL, OperandUtils.FLEETSHARD_OPERATOR_NAME);
+        expected.putObject("data").put("a", "1").put("c", "3");
+        assertEquals(expected, tree);
+
+        // without a current resource all of the desired fields are sent, but never the server managed metadata
+        tree = OperandUtils.applyTree(desired, null, OperandUtils.FLEETSHARD_OPERATOR_NAME);
+        Set<String> metadataFields = new HashSet<>();
+        tree.get("metadata").fieldNames().forEachRemaining(metadataFields::add);
+        assertEquals(Set.of("name", "namespace", "labels", "annotations"), metadataFields);
+        assertEquals(3, tree.get("data").size());
+    }
+
+    private static FieldsV1 fieldsV1(Map<String, Object> fields) {
+        FieldsV1 result = new FieldsV1();
+        fields.forEach(result::setAdditionalProperty);
+        return result;
+    }
+
 }
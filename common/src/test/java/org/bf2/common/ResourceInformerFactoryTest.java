@@ -0,0 +1,142 @@
+package org.bf2.common;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.Secret;
+import io.fabric8.kubernetes.api.model.SecretBuilder;
+import io.fabric8.kubernetes.api.model.Service;
+import io.fabric8.kubernetes.api.model.ServiceBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.server.mock.KubernetesCrudDispatcher;
+import io.fabric8.kubernetes.client.server.mock.KubernetesMockServer;
+import io.fabric8.kubernetes.client.utils.Serialization;
+import io.fabric8.mockwebserver.Context;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ResourceInformerFactoryTest {
+
+    static final int INSTANCES = 1000;
+    static final long LIST_LATENCY_MS = 500;
+
+    /**
+     * Adds latency to the lists, similar to a large cluster with a remote api server
+     */
+    static class SlowListDispatcher extends KubernetesCrudDispatcher {
+        volatile boolean slow;
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            if (slow && "GET".equals(request.getMethod()) && request.getRequestUrl().queryParameter("watch") == null) {
+                try {
+                    Thread.sleep(LIST_LATENCY_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return super.dispatch(request);
+        }
+    }
+
+    SlowListDispatcher dispatcher = new SlowListDispatcher();
+    KubernetesMockServer server;
+    KubernetesClient client;
+
+    @BeforeEach
+    public void beforeEach() {
+        server = new KubernetesMockServer(new Context(Serialization.jsonMapper()), new MockWebServer(), new HashMap<>(),
+                dispatcher, false);
+        server.init();
+        client = server.createClient();
+    }
+
+    @AfterEach
+    public void afterEach() {
+        client.close();
+        server.destroy();
+    }
+
+    List<ResourceInformer<?>> createAll(ResourceInformerFactory factory, boolean concurrently) {
+        List<ResourceInformer<?>> informers = new ArrayList<>();
+        Runnable[] creations = new Runnable[] {
+                () -> add(informers, factory.create(ConfigMap.class, client.configMaps().inAnyNamespace(), null)),
+                () -> add(informers, factory.create(Secret.class, client.secrets().inAnyNamespace(), null)),
+                () -> add(informers, factory.create(Service.class, client.services().inAnyNamespace(), null)),
+                () -> add(informers, factory.create(Pod.class, client.pods().inAnyNamespace(), null)) };
+        if (concurrently) {
+            factory.createConcurrently(creations);
+        } else {
+            for (Runnable creation : creations) {
+                creation.run();
+            }
+        }
+        return informers;
+    }
+
+    static void add(List<ResourceInformer<?>> informers, ResourceInformer<?> informer) {
+        synchronized (informers) {
+            informers.add(informer);
+        }
+    }
+
+    @Test
+    public void testConcurrentStartup() {
+        for (int i = 0; i < INSTANCES; i++) {
+            String namespace = "ns-" + i % 100;
+            client.configMaps().inNamespace(namespace).create(new ConfigMapBuilder()
+                    .withNewMetadata().withName("cm-" + i).endMetadata().build());
+            client.secrets().inNamespace(namespace).create(new SecretBuilder()
+                    .withNewMetadata().withName("secret-" + i).endMetadata().build());
+            client.services().inNamespace(namespace).create(new ServiceBuilder()
+                    .withNewMetadata().withName("svc-" + i).endMetadata().build());
+            client.pods().inNamespace(namespace).create(ResourceInformerTest.pod(i));
+        }
+        dispatcher.slow = true;
+
+        ResourceInformerFactory sequentialFactory = new ResourceInformerFactory();
+        long start = System.nanoTime();
+        List<ResourceInformer<?>> sequential = createAll(sequentialFactory, false);
+        long sequentialTime = System.nanoTime() - start;
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ResourceInformerFactory factory = new ResourceInformerFactory();
+        factory.meterRegistry = registry;
+        assertFalse(factory.isStarting());
+        start = System.nanoTime();
+        List<ResourceInformer<?>> concurrent = createAll(factory, true);
+        long concurrentTime = System.nanoTime() - start;
+
+        Logger.getLogger(ResourceInformerFactoryTest.class).infof(
+                "Starting 4 informers over %s objects each: sequentially %s ms, concurrently %s ms",
+                INSTANCES, TimeUnit.NANOSECONDS.toMillis(sequentialTime), TimeUnit.NANOSECONDS.toMillis(concurrentTime));
+        assertTrue(concurrentTime < sequentialTime);
+
+        assertEquals(4, sequential.size());
+        assertEquals(4, concurrent.size());
+        concurrent.forEach(informer -> assertEquals(INSTANCES, informer.getList().size()));
+        assertFalse(factory.isStarting());
+        assertTrue(factory.allInformersSynced());
+        assertTrue(sequentialFactory.allInformersSynced());
+
+        for (String type : List.of("ConfigMap", "Secret", "Service", "Pod")) {
+            assertEquals(1, registry.get("informer.sync.duration").tag("type", type).timer().count());
+        }
+    }
+
+}
@@ -0,0 +1,209 @@
+package org.bf2.common;
+
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.informers.ResourceEventHandler;
+import io.fabric8.kubernetes.client.informers.SharedIndexInformer;
+import io.fabric8.kubernetes.client.informers.cache.Cache;
+import io.fabric8.kubernetes.client.server.mock.KubernetesServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ResourceInformerTest {
+
+    static final int INSTANCES = 10000;
+    static final int OWNERS = 1000;
+    static final int NODES = 10;
+    static final int LOOKUPS = 200;
+
+    KubernetesServer server = new KubernetesServer(false, true);
+    KubernetesClient client;
+
+    @BeforeEach
+    public void beforeEach() {
+        server.before();
+        client = server.getClient();
+    }
+
+    @AfterEach
+    public void afterEach() {
+        server.after();
+    }
+
+    static Pod pod(int i) {
+        return new PodBuilder()
+                .withNewMetadata()
+                    .withName("pod-" + i)
+                    .withNamespace("ns-" + i % 100)
+                    .addToLabels("app", "app-" + i % OWNERS)
+                    .addNewOwnerReference()
+                        .withKind("ReplicaSet")
+                        .withName("owner-" + i % OWNERS)
+                        .withUid("uid-" + i % OWNERS)
+                    .endOwnerReference()
+                .endMetadata()
+                .withNewSpec()
+                    .withNodeName("node-" + i % NODES)
+                .endSpec()
+                .build();
+    }
+
+    static long time(Supplier<List<Pod>> lookup, int expected) {
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            assertEquals(expected, lookup.get().size());
+        }
+        return System.nanoTime() - start;
+    }
+
+    @Test
+    public void testIndexedLookups() throws InterruptedException {
+        for (int i = 0; i < INSTANCES; i++) {
+            client.pods().inNamespace("ns-" + i % 100).create(pod(i));
+        }
+
+        ResourceInformer<Pod> informer = new ResourceInformerFactory().create(Pod.class, client.pods().inAnyNamespace(), null,
+                Map.of(ResourceIndexers.OWNER_UID, ResourceIndexers.byOwnerUid(),
+                        ResourceIndexers.label("app"), ResourceIndexers.byLabel("app"),
+                        ResourceIndexers.NODE_NAME, ResourceIndexers.byNodeName()));
+        long deadline = System.currentTimeMillis() + 30000;
+        while (informer.getList().size() < INSTANCES) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(50);
+        }
+
+        assertEquals(INSTANCES / OWNERS, informer.getByIndex(ResourceIndexers.OWNER_UID, "uid-1").size());
+        assertEquals(INSTANCES / OWNERS, informer.getByIndex(ResourceIndexers.label("app"), "app-1").size());
+        assertEquals(INSTANCES / NODES, informer.getByIndex(ResourceIndexers.NODE_NAME, "node-1").size());
+        assertTrue(informer.getByIndex(ResourceIndexers.NODE_NAME, "unknown").isEmpty());
+
+        // the same lookups as a scan over the full list
+        long ownerScan = time(() -> informer.getList().stream()
+                .filter(p -> p.getMetadata().getOwnerReferences().stream().anyMatch(o -> "uid-1".equals(o.getUid())))
+                .collect(Collectors.toList()), INSTANCES / OWNERS);
+        long ownerIndex = time(() -> informer.getByIndex(ResourceIndexers.OWNER_UID, "uid-1"), INSTANCES / OWNERS);
+        long nodeScan = time(() -> informer.getList().stream()
+                .filter(p -> "node-1".equals(p.getSpec().getNodeName()))
+                .collect(Collectors.toList()), INSTANCES / NODES);
+        long nodeIndex = time(() -> informer.getByIndex(ResourceIndexers.NODE_NAME, "node-1"), INSTANCES / NODES);
+
+        Logger.getLogger(ResourceInformerTest.class).infof(
+                "%s lookups over %s pods: by owner uid scan %s ms, index %s ms; by node name scan %s ms, index %s ms",
+                LOOKUPS, INSTANCES, TimeUnit.NANOSECONDS.toMillis(ownerScan), TimeUnit.NANOSECONDS.toMillis(ownerIndex),
+                TimeUnit.NANOSECONDS.toMillis(nodeScan), TimeUnit.NANOSECONDS.toMillis(nodeIndex));
+        assertTrue(ownerIndex < ownerScan);
+        assertTrue(nodeIndex < nodeScan);
+    }
+
+    @Test
+    public void testRelist() throws InterruptedException {
+        int instances = 100;
+        for (int i = 0; i < instances; i++) {
+            client.pods().inNamespace("ns-" + i % 100).create(pod(i));
+        }
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ResourceInformerFactory factory = new ResourceInformerFactory();
+        factory.meterRegistry = registry;
+        factory.gracePeriod = Duration.ofMillis(10);
+        factory.initialBackoff = Duration.ofMillis(10);
+        factory.checkInterval = Duration.ofMillis(50);
+
+        Set<String> added = ConcurrentHashMap.newKeySet();
+        Set<String> deleted = ConcurrentHashMap.newKeySet();
+        ResourceInformer<Pod> informer = factory.create(Pod.class, client.pods().inAnyNamespace(), new ResourceEventHandler<Pod>() {
+            @Override
+            public void onAdd(Pod obj) {
+                added.add(Cache.metaNamespaceKeyFunc(obj));
+            }
+
+            @Override
+            public void onUpdate(Pod oldObj, Pod newObj) {
+            }
+
+            @Override
+            public void onDelete(Pod obj, boolean deletedFinalStateUnknown) {
+                deleted.add(Cache.metaNamespaceKeyFunc(obj));
+            }
+        });
+        awaitCondition(() -> added.size() == instances);
+
+        // simulate a watch that has failed and will not recover on its own
+        informer.getInformer().stop();
+        assertFalse(informer.isWatching());
+        client.pods().inNamespace("ns-0").withName("pod-0").delete();
+        client.pods().inNamespace("ns-1").create(new PodBuilder(pod(1)).editMetadata().withName("pod-new").endMetadata().build());
+
+        awaitCondition(() -> informer.isWatching() && added.contains("ns-1/pod-new"));
+        awaitCondition(() -> deleted.contains("ns-0/pod-0"));
+        assertNull(informer.getByKey("ns-0/pod-0"));
+        assertEquals(instances, informer.getList().size());
+        assertTrue(factory.allInformersWatching());
+
+        assertEquals(1, registry.get("informer.relists").tag("type", "Pod").counter().count());
+        assertEquals(instances, registry.get("informer.relist.objects").tag("type", "Pod").counter().count());
+        assertEquals(1, registry.get("informer.relist.duration").tag("type", "Pod").timer().count());
+    }
+
+    @Test
+    public void testNoRelistWithinGracePeriod() throws InterruptedException {
+        client.pods().inNamespace("ns-0").create(pod(0));
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ResourceInformerFactory factory = new ResourceInformerFactory();
+        factory.meterRegistry = registry;
+        factory.checkInterval = Duration.ofMillis(50);
+        ResourceInformer<Pod> informer = factory.create(Pod.class, client.pods().inAnyNamespace(), null);
+        SharedIndexInformer<Pod> original = informer.getInformer();
+
+        // the watch may still recover on its own, such as a relist by fabric8 after a 410
+        original.stop();
+        Thread.sleep(1000);
+        factory.onStop();
+
+        assertSame(original, informer.getInformer());
+        assertNull(registry.find("informer.relists").counter());
+    }
+
+    @Test
+    public void testBackoff() {
+        ResourceInformerFactory factory = new ResourceInformerFactory();
+        for (int i = 0; i < 100; i++) {
+            long first = factory.backoff(0);
+            assertTrue(first >= 500 && first <= 1000, "" + first);
+            long third = factory.backoff(2);
+            assertTrue(third >= 2000 && third <= 4000, "" + third);
+            long capped = factory.backoff(30);
+            assertTrue(capped >= 30000 && capped <= 60000, "" + capped);
+        }
+    }
+
+    static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(50);
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+package org.bf2.common;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.fabric8.kubernetes.api.model.FieldsV1;
+import io.fabric8.kubernetes.api.model.ManagedFieldsEntryBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.server.mock.KubernetesServer;
+import io.fabric8.kubernetes.client.utils.Serialization;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ResourcePrunersTest {
+
+    static final int INSTANCES = 2000;
+
+    KubernetesServer server = new KubernetesServer(false, true);
+    KubernetesClient client;
+
+    @BeforeEach
+    public void beforeEach() {
+        server.before();
+        client = server.getClient();
+    }
+
+    @AfterEach
+    public void afterEach() {
+        server.after();
+    }
+
+    static ConfigMap configMap(int i) {
+        ConfigMap configMap = new ConfigMapBuilder()
+                .withNewMetadata()
+                    .withNamespace("ns-" + i % 100)
+                    .withName("cm-" + i)
+                    .withLabels(OperandUtils.getDefaultLabels())
+                    // similar to what is typically found on a real server
+                    .withManagedFields(new ManagedFieldsEntryBuilder()
+                            .withManager("kas-fleetshard-operator")
+                            .withOperation("Update")
+                            .withApiVersion("v1")
+                            .withFieldsType("FieldsV1")
+                            .withFieldsV1(new FieldsV1(Map.of("f:data", Map.of("f:log4j.properties", Map.of()),
+                                    "f:metadata", Map.of("f:labels", Map.of("f:app.kubernetes.io/managed-by", Map.of())))))
+                            .build())
+                .endMetadata()
+                .withData(Map.of("log4j.properties", "log4j.rootLogger=INFO, CONSOLE"))
+                .build();
+        configMap.getMetadata().setAnnotations(Map.of(ResourcePruners.LAST_APPLIED_CONFIGURATION, Serialization.asJson(configMap)));
+        return configMap;
+    }
+
+    ResourceInformer<ConfigMap> awaitInformer(ResourceInformerFactory factory, boolean prune) throws InterruptedException {
+        Consumer<ConfigMap> pruner = prune ? ResourcePruners.metadata() : null;
+        ResourceInformer<ConfigMap> informer = factory.create(ConfigMap.class, client.configMaps().inAnyNamespace(), null, pruner);
+        long deadline = System.currentTimeMillis() + 30000;
+        // the pruning is applied by a handler, so it can lag the cache
+        while (informer.getList().size() < INSTANCES
+                || (prune && informer.getList().stream().anyMatch(cm -> cm.getMetadata().getManagedFields() != null))) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(50);
+        }
+        return informer;
+    }
+
+    static long footprint(ResourceInformer<ConfigMap> informer) {
+        return informer.getList().stream().mapToLong(cm -> Serialization.asJson(cm).length()).sum();
+    }
+
+    @Test
+    public void testPrunedCache() throws InterruptedException {
+        for (int i = 0; i < INSTANCES; i++) {
+            client.configMaps().inNamespace("ns-" + i % 100).create(configMap(i));
+        }
+
+        ResourceInformer<ConfigMap> full = awaitInformer(new ResourceInformerFactory(), false);
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ResourceInformerFactory factory = new ResourceInformerFactory();
+        factory.meterRegistry = registry;
+        ResourceInformer<ConfigMap> pruned = awaitInformer(factory, true);
+
+        ConfigMap cached = pruned.getByKey("ns-1/cm-1");
+        assertNull(cached.getMetadata().getManagedFields());
+        assertNull(cached.getMetadata().getAnnotations().get(ResourcePruners.LAST_APPLIED_CONFIGURATION));
+        assertEquals("log4j.rootLogger=INFO, CONSOLE", cached.getData().get("log4j.properties"));
+        assertEquals(OperandUtils.getDefaultLabels(), cached.getMetadata().getLabels());
+
+        long fullBytes = footprint(full);
+        long prunedBytes = footprint(pruned);
+        Logger.getLogger(ResourcePrunersTest.class).infof("%s cached ConfigMaps are %s bytes serialized, %s bytes pruned",
+                INSTANCES, fullBytes, prunedBytes);
+        assertTrue(prunedBytes * 2 < fullBytes);
+
+        factory.sampleObjectBytes();
+        assertEquals(INSTANCES, registry.get("informer.cache.objects").tag("type", "ConfigMap").gauge().value());
+        double objectBytes = registry.get("informer.cache.object.bytes").tag("type", "ConfigMap").gauge().value();
+        assertTrue(objectBytes > 0);
+        assertTrue(objectBytes < (double) fullBytes / INSTANCES);
+    }
+
+}
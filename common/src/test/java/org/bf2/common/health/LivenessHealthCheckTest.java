@@ -14,6 +14,10 @@ public class LivenessHealthCheckTest {
         LivenessHealthCheck livenessHealthCheck = new LivenessHealthCheck();
         livenessHealthCheck.resourceInformerFactory = Mockito.mock(ResourceInformerFactory.class);
         assertEquals(HealthCheckResponse.Status.DOWN, livenessHealthCheck.call().getStatus());
+        Mockito.when(livenessHealthCheck.resourceInformerFactory.isStarting()).thenReturn(true);
+        assertEquals(HealthCheckResponse.Status.UP, livenessHealthCheck.call().getStatus());
+        Mockito.when(livenessHealthCheck.resourceInformerFactory.isStarting()).thenReturn(false);
+        assertEquals(HealthCheckResponse.Status.DOWN, livenessHealthCheck.call().getStatus());
         Mockito.when(livenessHealthCheck.resourceInformerFactory.allInformersWatching()).thenReturn(true);
         assertEquals(HealthCheckResponse.Status.UP, livenessHealthCheck.call().getStatus());
     }
@@ -0,0 +1,23 @@
+package org.bf2.common.health;
+
+import org.bf2.common.ResourceInformerFactory;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ReadinessHealthCheckTest {
+
+    @Test public void testReadiness() {
+        ReadinessHealthCheck readinessHealthCheck = new ReadinessHealthCheck();
+        readinessHealthCheck.resourceInformerFactory = Mockito.mock(ResourceInformerFactory.class);
+        Mockito.when(readinessHealthCheck.resourceInformerFactory.allInformersWatching()).thenReturn(true);
+        assertEquals(HealthCheckResponse.Status.DOWN, readinessHealthCheck.call().getStatus());
+        Mockito.when(readinessHealthCheck.resourceInformerFactory.allInformersSynced()).thenReturn(true);
+        assertEquals(HealthCheckResponse.Status.UP, readinessHealthCheck.call().getStatus());
+        Mockito.when(readinessHealthCheck.resourceInformerFactory.allInformersWatching()).thenReturn(false);
+        assertEquals(HealthCheckResponse.Status.DOWN, readinessHealthCheck.call().getStatus());
+    }
+
+}
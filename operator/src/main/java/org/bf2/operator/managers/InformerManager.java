@@ -22,6 +22,7 @@ import org.bf2.common.ManagedKafkaAgentResourceClient;
 import org.bf2.common.OperandUtils;
 import org.bf2.common.ResourceInformer;
 import org.bf2.common.ResourceInformerFactory;
+import org.bf2.common.ResourcePruners;
 import org.bf2.operator.events.ResourceEventSource;
 import org.bf2.operator.resources.v1alpha1.ManagedKafka;
 import org.bf2.operator.resources.v1alpha1.ManagedKafkaAgent;
@@ -72,45 +73,50 @@ public class InformerManager {
 
     @PostConstruct
     protected void onStart() {
-        deploymentInformer = resourceInformerFactory.create(Deployment.class, filter(kubernetesClient.apps().deployments()), eventSource);
-
-        serviceInformer = resourceInformerFactory.create(Service.class, filterManagedByFleetshardOrStrimzi(kubernetesClient.services()), eventSource);
-
-        configMapInformer = resourceInformerFactory.create(ConfigMap.class, filter(kubernetesClient.configMaps()), eventSource);
-
-        secretInformer = resourceInformerFactory.create(Secret.class, filter(kubernetesClient.secrets()), eventSource);
-
-        // pvcs have an owner reference set to the kafka, not managedkakfa, so we need some lookup logic in the handleEvent
-        pvcInformer = resourceInformerFactory.create(PersistentVolumeClaim.class,
-                kubernetesClient.persistentVolumeClaims().inAnyNamespace().withLabel("app.kubernetes.io/name", "kafka"),
-                new ResourceEventSource() {
-
-                    @Override
-                    protected void handleEvent(HasMetadata resource, ResourceAction action) {
-                        if (kafkaInformer != null) {
-                            // TODO: could index by uid, or use namespace
-                            String name =
-                                    OperandUtils.getOrDefault(resource.getMetadata().getLabels(), "strimzi.io/cluster", null);
-                            if (name != null) {
-                                Kafka kafka = kafkaInformer
-                                        .getByKey(Cache.namespaceKeyFunc(resource.getMetadata().getNamespace(), name));
-                                if (kafka != null) {
-                                    handleEvent(kafka, ResourceAction.UPDATED);
+        // the initial lists are independent, so they are performed concurrently
+        // only the pvcs are pruned, the cached operands are the basis of their updates
+        resourceInformerFactory.createConcurrently(
+                () -> deploymentInformer = resourceInformerFactory.create(Deployment.class, filter(kubernetesClient.apps().deployments()), eventSource),
+
+                () -> serviceInformer = resourceInformerFactory.create(Service.class, filterManagedByFleetshardOrStrimzi(kubernetesClient.services()), eventSource),
+
+                () -> configMapInformer = resourceInformerFactory.create(ConfigMap.class, filter(kubernetesClient.configMaps()), eventSource),
+
+                () -> secretInformer = resourceInformerFactory.create(Secret.class, filter(kubernetesClient.secrets()), eventSource),
+
+                // pvcs have an owner reference set to the kafka, not managedkakfa, so we need some lookup logic in the handleEvent
+                () -> pvcInformer = resourceInformerFactory.create(PersistentVolumeClaim.class,
+                        kubernetesClient.persistentVolumeClaims().inAnyNamespace().withLabel("app.kubernetes.io/name", "kafka"),
+                        new ResourceEventSource() {
+
+                            @Override
+                            protected void handleEvent(HasMetadata resource, ResourceAction action) {
+                                if (kafkaInformer != null) {
+                                    // TODO: could index by uid, or use namespace
+                                    String name =
+                                            OperandUtils.getOrDefault(resource.getMetadata().getLabels(), "strimzi.io/cluster", null);
+                                    if (name != null) {
+                                        Kafka kafka = kafkaInformer
+                                                .getByKey(Cache.namespaceKeyFunc(resource.getMetadata().getNamespace(), name));
+                                        if (kafka != null) {
+                                            handleEvent(kafka, ResourceAction.UPDATED);
+                                        }
+                                    }
                                 }
                             }
-                        }
-                    }
-                });
+                        }, ResourcePruners.metadata()),
 
-        if (isOpenShift()) {
-            routeInformer = resourceInformerFactory.create(Route.class, filterManagedByFleetshardOrStrimzi(openShiftSupport.adapt(kubernetesClient).routes()), eventSource);
-        }
+                () -> {
+                    if (isOpenShift()) {
+                        routeInformer = resourceInformerFactory.create(Route.class, filterManagedByFleetshardOrStrimzi(openShiftSupport.adapt(kubernetesClient).routes()), eventSource);
+                    }
+                },
 
-        // TODO: replace this with the resource cache maintained by the controller
-        managedKafkaAgentInformer = resourceInformerFactory.create(ManagedKafkaAgent.class,
-                kubernetesClient.resources(ManagedKafkaAgent.class)
-                        .withName(ManagedKafkaAgentResourceClient.RESOURCE_NAME),
-                null); // these events are not processed by the event source
+                // TODO: replace this with the resource cache maintained by the controller
+                () -> managedKafkaAgentInformer = resourceInformerFactory.create(ManagedKafkaAgent.class,
+                        kubernetesClient.resources(ManagedKafkaAgent.class)
+                                .withName(ManagedKafkaAgentResourceClient.RESOURCE_NAME),
+                        null)); // these events are not processed by the event source
     }
 
     static <T extends HasMetadata> FilterWatchListDeletable<T, ? extends KubernetesResourceList<T>> filter(
@@ -159,8 +165,7 @@ public class InformerManager {
 
     protected Stream<Route> getRoutesInNamespace(String namespace) {
         if (isOpenShift()) {
-            return routeInformer.getList().stream()
-                    .filter(r -> r.getMetadata().getNamespace().equals(namespace));
+            return routeInformer.getByNamespace(namespace).stream();
         } else {
             log.warn("Not running on OpenShift cluster, Routes are not available");
             return Stream.empty();
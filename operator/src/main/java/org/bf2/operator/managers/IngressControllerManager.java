@@ -38,8 +38,10 @@ import io.strimzi.api.kafka.model.KafkaClusterSpec;
 import io.strimzi.api.kafka.model.listener.arraylistener.GenericKafkaListener;
 import io.strimzi.api.kafka.model.listener.arraylistener.GenericKafkaListenerConfiguration;
 import org.bf2.common.OperandUtils;
+import org.bf2.common.ResourceIndexers;
 import org.bf2.common.ResourceInformer;
 import org.bf2.common.ResourceInformerFactory;
+import org.bf2.common.ResourcePruners;
 import org.bf2.operator.ManagedKafkaKeys;
 import org.bf2.operator.ManagedKafkaKeys.Labels;
 import org.bf2.operator.operands.AbstractKafkaCluster;
@@ -96,6 +98,8 @@ public class IngressControllerManager {
      */
     public static final String TOPOLOGY_KEY = "topology.kubernetes.io/zone";
 
+    static final String ZONE_INDEX = ResourceIndexers.label(TOPOLOGY_KEY);
+
     protected static final String INGRESS_OPERATOR_NAMESPACE = "openshift-ingress-operator";
 
     protected static final String INGRESS_ROUTER_NAMESPACE = "openshift-ingress";
@@ -221,7 +225,8 @@ public class IngressControllerManager {
                 .withLabel(WORKER_NODE_LABEL)
                 .withoutLabel(INFRA_NODE_LABEL);
 
-        nodeInformer = resourceInformerFactory.create(Node.class, workerNodeFilter, new ResourceEventHandler<HasMetadata>() {
+        // the reconcile makes api calls, so it runs asynchronously to not delay other event handling
+        nodeInformer = resourceInformerFactory.create(Node.class, workerNodeFilter, resourceInformerFactory.asynchronous("ingress-nodes", new ResourceEventHandler<HasMetadata>() {
 
             @Override
             public void onAdd(HasMetadata obj) {
@@ -236,13 +241,14 @@ public class IngressControllerManager {
             public void onDelete(HasMetadata obj, boolean deletedFinalStateUnknown) {
                 reconcileIngressControllers();
             }
-        });
+        }), Map.of(ZONE_INDEX, ResourceIndexers.byLabel(TOPOLOGY_KEY)),
+                ResourcePruners.<Node>metadata().andThen(node -> node.setStatus(null))); // only the labels are used
 
         FilterWatchListDeletable<Pod, PodList> brokerPodFilter = openShiftClient.pods().inAnyNamespace().withLabels(Map.of(
                 OperandUtils.MANAGED_BY_LABEL, OperandUtils.STRIMZI_OPERATOR_NAME,
                 OperandUtils.K8S_NAME_LABEL, "kafka"));
 
-        brokerPodInformer = resourceInformerFactory.create(Pod.class, brokerPodFilter, new ResourceEventHandler<HasMetadata>() {
+        brokerPodInformer = resourceInformerFactory.create(Pod.class, brokerPodFilter, resourceInformerFactory.asynchronous("ingress-broker-pods", new ResourceEventHandler<HasMetadata>() {
 
             @Override
             public void onAdd(HasMetadata obj) {
@@ -256,9 +262,9 @@ public class IngressControllerManager {
             @Override
             public void onDelete(HasMetadata obj, boolean deletedFinalStateUnknown) {
             }
-        });
+        }), ResourcePruners.<Pod>metadata().andThen(pod -> pod.setStatus(null))); // only the node name and labels are used
 
-        ingressControllerInformer = resourceInformerFactory.create(IngressController.class, ingressControllers, new ResourceEventHandler<IngressController>() {
+        ingressControllerInformer = resourceInformerFactory.create(IngressController.class, ingressControllers, resourceInformerFactory.asynchronous("ingress-controllers", new ResourceEventHandler<IngressController>() {
 
             @Override
             public void onAdd(IngressController obj) {
@@ -274,7 +280,7 @@ public class IngressControllerManager {
             public void onDelete(IngressController obj, boolean deletedFinalStateUnknown) {
                 reconcileIngressControllers();
             }
-        });
+        }));
 
         ResourceRequirementsBuilder deploymentResourceBuilder = new ResourceRequirementsBuilder();
         limitCpu.ifPresent(quantity -> deploymentResourceBuilder.addToLimits(CPU, quantity));
@@ -375,7 +381,9 @@ public class IngressControllerManager {
 
         String defaultDomain = getClusterDomain();
 
-        List<String> zones = nodeInformer.getList().stream()
+        // a single copy of the nodes for the whole reconcile
+        List<Node> nodes = nodeInformer.getList();
+        List<String> zones = nodes.stream()
                 .filter(node -> node != null && node.getMetadata().getLabels() != null)
                 .map(node -> node.getMetadata().getLabels().get(TOPOLOGY_KEY))
                 .filter(Objects::nonNull)
@@ -403,7 +411,7 @@ public class IngressControllerManager {
 
         ingressControllersFrom(zoneToIngressController, defaultDomain, kafkas, connectionDemand);
 
-        buildDefaultIngressController(zones, defaultDomain, connectionDemand);
+        buildDefaultIngressController(zones, defaultDomain, connectionDemand, nodes.size());
 
         if (deployments != null) {
             deployments.getList().stream().filter(this::shouldReconcile).forEach(this::doIngressPatch);
@@ -460,9 +468,10 @@ public class IngressControllerManager {
 
         // there is an assumption that the nodes / brokers will be balanced by zone
         double zonePercentage = 1d / ingressControllers.size();
-        int replicas = numReplicasForZone(ingress, egress, connectionDemand, zonePercentage);
         ingressControllers.entrySet().stream().forEach(e -> {
             String zone = e.getKey();
+            int replicas = numReplicasForZone(ingress, egress, connectionDemand, zonePercentage,
+                    nodeInformer.getByIndex(ZONE_INDEX, zone).size());
             String kasZone = "kas-" + zone;
             String domain = kasZone + "." + clusterDomain;
             Map<String, String> routeMatchLabel = Map.of(ManagedKafkaKeys.forKey(kasZone), "true");
@@ -473,10 +482,10 @@ public class IngressControllerManager {
         });
     }
 
-    private void buildDefaultIngressController(List<String> zones, String clusterDomain, long connectionDemand) {
+    private void buildDefaultIngressController(List<String> zones, String clusterDomain, long connectionDemand, int workerNodes) {
         IngressController existing = ingressControllerInformer.getByKey(Cache.namespaceKeyFunc(INGRESS_OPERATOR_NAMESPACE, "kas"));
 
-        int replicas = numReplicasForDefault(connectionDemand);
+        int replicas = numReplicasForDefault(connectionDemand, workerNodes);
 
         final Map<String, String> routeMatchLabel = Map.of(Labels.KAS_MULTI_ZONE, "true");
         LabelSelector routeSelector = new LabelSelector(null, routeMatchLabel);
@@ -567,10 +576,13 @@ public class IngressControllerManager {
         azReplicaCount = value;
     }
 
+    /**
+     * @param zoneNodes the number of worker nodes in the zone
+     */
     int numReplicasForZone(LongSummaryStatistics ingress, LongSummaryStatistics egress,
-            long connectionDemand, double zonePercentage) {
+            long connectionDemand, double zonePercentage, int zoneNodes) {
         // use the override if present
-        int minimumReplicaCount = nodeInformer.getList().size() > 0 ? 1:0;
+        int minimumReplicaCount = zoneNodes > 0 ? 1:0;
         if (azReplicaCount.isPresent()) {
             return azReplicaCount.get();
         }
@@ -615,12 +627,15 @@ public class IngressControllerManager {
                 .summaryStatistics();
     }
 
-    int numReplicasForDefault(long connectionDemand) {
+    /**
+     * @param workerNodes the number of worker nodes in all zones
+     */
+    int numReplicasForDefault(long connectionDemand, int workerNodes) {
         // use the override if present
-        int minimumReplicaCount = nodeInformer.getList().size() > 0 ? 1:0;
+        int minimumReplicaCount = workerNodes > 0 ? 1:0;
         if (defaultReplicaCount.isPresent()) {
             return defaultReplicaCount.get();
-        } else if (nodeInformer.getList().size() > 3){
+        } else if (workerNodes > 3){
             // enforce a minimum of two replicas on clusters that can accommodate it when no default specified
             minimumReplicaCount = 2;
         }
@@ -636,10 +651,8 @@ public class IngressControllerManager {
     }
 
     private String getIngressControllerDomain(String ingressControllerName) {
-        return ingressControllerInformer.getList().stream()
-                .filter(ic -> ic.getMetadata().getName().equals(ingressControllerName))
+        return Optional.ofNullable(ingressControllerInformer.getByKey(Cache.namespaceKeyFunc(INGRESS_OPERATOR_NAMESPACE, ingressControllerName)))
                 .map(ic -> ROUTER_SUBDOMAIN + (ic.getStatus() != null ? ic.getStatus().getDomain() : ic.getSpec().getDomain()))
-                .findFirst()
                 .orElse("");
     }
 
@@ -658,9 +671,8 @@ public class IngressControllerManager {
         }
 
         Map<String, String> labels = svc.getSpec().getSelector();
-        Stream<Pod> pods = brokerPodInformer.getList().stream()
-                .filter(p -> p.getMetadata().getNamespace().equals(namespace)
-                        && p.getMetadata().getLabels().entrySet().containsAll(labels.entrySet()));
+        Stream<Pod> pods = brokerPodInformer.getByNamespace(namespace).stream()
+                .filter(p -> p.getMetadata().getLabels().entrySet().containsAll(labels.entrySet()));
 
         return pods
                 .findFirst()
@@ -69,8 +69,8 @@ public class KafkaEventMonitor {
         }
 
         private boolean isKafkaEvent(Event obj) {
-            return namespaceInformer.getList().stream()
-                    .anyMatch(ns -> ns.getMetadata().getName().equals(obj.getMetadata().getNamespace()));
+            String namespace = obj.getMetadata().getNamespace();
+            return namespace != null && namespaceInformer.getByKey(namespace) != null;
         }
 
         private void logEvent(Event obj) {
@@ -15,6 +15,7 @@ import io.strimzi.api.kafka.model.KafkaClusterSpec;
 import io.strimzi.api.kafka.model.KafkaSpec;
 import io.strimzi.api.kafka.model.listener.arraylistener.GenericKafkaListener;
 import io.strimzi.api.kafka.model.listener.arraylistener.GenericKafkaListenerConfiguration;
+import org.bf2.common.ResourceInformerFactory;
 import org.bf2.operator.operands.AbstractKafkaCluster;
 import org.bf2.operator.operands.KafkaCluster;
 import org.bf2.operator.resources.v1alpha1.ManagedKafka;
@@ -57,11 +58,15 @@ public class MetricsManager implements ResourceEventHandler<Kafka>{
     @Inject
     MeterRegistry meterRegistry;
 
+    @Inject
+    ResourceInformerFactory resourceInformerFactory;
+
     private final Map<String, AtomicReference<Kafka>> kafkaMap = new ConcurrentHashMap<>();
 
     @PostConstruct
     public void postConstruct() {
-        informerManager.registerKafkaInformerHandler(this);
+        // shares the informer with the ManagedKafka event source, so it should not delay it
+        informerManager.registerKafkaInformerHandler(resourceInformerFactory.asynchronous("kafka-metrics", this));
     }
 
     @Override
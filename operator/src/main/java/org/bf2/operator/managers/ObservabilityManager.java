@@ -77,7 +77,7 @@ public class ObservabilityManager {
         createObservabilitySecret(this.client.getNamespace(), observability, builder);
         Secret secret = builder.build();
         OperandUtils.setAsOwner(owner, secret);
-        OperandUtils.createOrUpdate(this.client.secrets(), secret);
+        OperandUtils.createOrUpdate(this.client.secrets(), secret, cached);
     }
 
     public boolean isObservabilityRunning() {
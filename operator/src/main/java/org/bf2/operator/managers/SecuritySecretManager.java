@@ -111,7 +111,7 @@ public class SecuritySecretManager {
         Secret updated = builder.apply(managedKafka, currentSecret);
 
         if (updated != null) {
-            createOrUpdate(updated);
+            createOrUpdate(updated, currentSecret);
         } else if (currentSecret != null){
             secretResource(managedKafka, secretName).delete();
         }
@@ -220,8 +220,8 @@ public class SecuritySecretManager {
                 .withName(name);
     }
 
-    private void createOrUpdate(Secret secret) {
-        OperandUtils.createOrUpdate(kubernetesClient.secrets(), secret);
+    private void createOrUpdate(Secret secret, Secret current) {
+        OperandUtils.createOrUpdate(kubernetesClient.secrets(), secret, current);
     }
 
     private static Secret buildSecretFrom(String name, String type, ManagedKafka managedKafka, Secret current, Map<String, String> dataSource) {
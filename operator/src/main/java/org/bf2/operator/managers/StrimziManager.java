@@ -104,9 +104,10 @@ public class StrimziManager {
             }
         }
         updateStatus();
+        // the status update makes api calls, so it runs asynchronously to not delay other event handling
         this.resourceInformerFactory.create(Deployment.class,
                 deployments,
-                new ResourceEventHandler<Deployment>() {
+                this.resourceInformerFactory.asynchronous("strimzi-deployments", new ResourceEventHandler<Deployment>() {
                     @Override
                     public void onAdd(Deployment deployment) {
                         if (isStrimziDeployment(deployment)) {
@@ -131,7 +132,7 @@ public class StrimziManager {
                             updateStatus();
                         }
                     }
-                });
+                }));
     }
 
     private boolean isStrimziDeployment(Deployment deployment) {
@@ -22,11 +22,11 @@ public abstract class AbstractAdminServer extends DeploymentOperand {
     public void createOrUpdate(ManagedKafka managedKafka) {
         Deployment currentDeployment = cachedDeployment(managedKafka);
         Deployment deployment = deploymentFrom(managedKafka, currentDeployment);
-        createOrUpdate(deployment);
+        createOrUpdate(deployment, currentDeployment);
 
         Service currentService = cachedService(managedKafka);
         Service service = serviceFrom(managedKafka, currentService);
-        createOrUpdate(service);
+        createOrUpdate(service, currentService);
     }
 
     @Override
@@ -27,11 +27,11 @@ public abstract class AbstractCanary extends DeploymentOperand {
     public void createOrUpdate(ManagedKafka managedKafka) {
         Deployment current = cachedDeployment(managedKafka);
         Deployment deployment = deploymentFrom(managedKafka, current);
-        createOrUpdate(deployment);
+        createOrUpdate(deployment, current);
 
         Service currentService = cachedService(managedKafka);
         Service service = serviceFrom(managedKafka, currentService);
-        createOrUpdate(service);
+        createOrUpdate(service, currentService);
     }
 
     @Override
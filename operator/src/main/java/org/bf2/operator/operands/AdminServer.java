@@ -125,7 +125,7 @@ public class AdminServer extends AbstractAdminServer {
             Route currentRoute = cachedRoute(managedKafka);
             Route route = routeFrom(managedKafka, currentRoute);
 
-            OperandUtils.createOrUpdate(openShiftClient.routes(), route);
+            OperandUtils.createOrUpdate(openShiftClient.routes(), route, currentRoute);
         }
     }
 
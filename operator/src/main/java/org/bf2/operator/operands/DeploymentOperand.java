@@ -8,8 +8,6 @@ import org.bf2.operator.resources.v1alpha1.ManagedKafka;
 
 import javax.inject.Inject;
 
-import java.util.Objects;
-
 public abstract class DeploymentOperand implements Operand<ManagedKafka> {
 
     @Inject
@@ -22,12 +20,12 @@ public abstract class DeploymentOperand implements Operand<ManagedKafka> {
 
     public abstract Deployment deploymentFrom(ManagedKafka managedKafka, Deployment current);
 
-    protected void createOrUpdate(Deployment deployment) {
-        OperandUtils.createOrUpdate(kubernetesClient.apps().deployments(), deployment);
+    protected void createOrUpdate(Deployment deployment, Deployment current) {
+        OperandUtils.createOrUpdate(kubernetesClient.apps().deployments(), deployment, current);
     }
 
-    protected void createOrUpdate(Service service) {
-        OperandUtils.createOrUpdate(kubernetesClient.services(), service);
+    protected void createOrUpdate(Service service, Service current) {
+        OperandUtils.createOrUpdate(kubernetesClient.services(), service, current);
     }
 
     protected boolean handleReserveOrWaitForKafka(ManagedKafka managedKafka) {
@@ -37,9 +35,7 @@ public abstract class DeploymentOperand implements Operand<ManagedKafka> {
             Deployment deployment = deploymentFrom(managedKafka, null);
 
             deployment = ReservedDeploymentConverter.asReservedDeployment(current, deployment, managedKafka);
-            if (!Objects.equals(current, deployment)) {
-                createOrUpdate(deployment);
-            }
+            createOrUpdate(deployment, current);
             return true;
         }
 
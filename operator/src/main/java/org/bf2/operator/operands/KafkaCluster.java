@@ -241,9 +241,7 @@ public class KafkaCluster extends AbstractKafkaCluster {
                 replicasExtractor.apply(spec), template,
                 resourceExtractor.apply(spec));
 
-        if (!Objects.equals(current, reserved)) {
-            OperandUtils.createOrUpdate(kubernetesClient.apps().deployments(), reserved);
-        }
+        OperandUtils.createOrUpdate(kubernetesClient.apps().deployments(), reserved, current);
     }
 
     @Override
@@ -258,10 +256,6 @@ public class KafkaCluster extends AbstractKafkaCluster {
         configMapResource(managedKafka, zookeeperMetricsConfigMapName(managedKafka)).delete();
     }
 
-    private void createOrUpdate(ConfigMap configMap) {
-        OperandUtils.createOrUpdate(kubernetesClient.configMaps(), configMap);
-    }
-
     /* test */
     @Override
     public Kafka kafkaFrom(ManagedKafka managedKafka, Kafka current) {
@@ -1170,9 +1164,9 @@ public class KafkaCluster extends AbstractKafkaCluster {
      * Allow local modifications to the configmap to remain until such time a new release provides a new configmap
      * (which will have a differing digest).
      */
-    private void createOrUpdateIfNecessary(ConfigMap currentCM, ConfigMap newCM) {
+    /* test */ void createOrUpdateIfNecessary(ConfigMap currentCM, ConfigMap newCM) {
         if (currentCM == null || isDigestModified(currentCM, newCM)) {
-            createOrUpdate(newCM);
+            OperandUtils.createOrUpdate(kubernetesClient.configMaps(), newCM);
         }
     }
 
@@ -26,7 +26,7 @@ import java.util.Collections;
 public class NoDeploymentAdminServer extends org.bf2.operator.operands.AdminServer {
 
     @Override
-    protected void createOrUpdate(Deployment deployment) {
+    protected void createOrUpdate(Deployment deployment, Deployment current) {
         // Admin Server deployment resource doesn't exist, has to be created
         if (kubernetesClient.configMaps()
                 .inNamespace(deployment.getMetadata().getNamespace())
@@ -17,7 +17,10 @@ import javax.enterprise.context.ApplicationScoped;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
@@ -27,7 +30,8 @@ public class MockResourceInformerFactory extends ResourceInformerFactory {
 
     @Override
     public <T extends HasMetadata> ResourceInformer<T> create(Class<T> type, Informable<T> informable,
-            ResourceEventHandler<? super T> eventHandler) {
+            ResourceEventHandler<? super T> eventHandler, Map<String, Function<T, List<String>>> indexers,
+            Consumer<? super T> pruner) {
         ResourceInformer<T> mock = Mockito.mock(ResourceInformer.class);
         Supplier<List<T>> lister = () -> {
             if (informable instanceof Listable) {
@@ -77,13 +81,36 @@ public class MockResourceInformerFactory extends ResourceInformerFactory {
                         .collect(Collectors.toList());
             }
 
+        });
+        Mockito.when(mock.getByIndex(Mockito.anyString(), Mockito.anyString())).then(new Answer<List<T>>() {
+
+            @Override
+            public List<T> answer(InvocationOnMock invocation) throws Throwable {
+                Function<T, List<String>> indexer = indexers.get((String)invocation.getArgument(0));
+                String indexKey = (String)invocation.getArgument(1);
+                return lister.get()
+                        .stream()
+                        .filter(i -> indexer.apply(i).contains(indexKey))
+                        .collect(Collectors.toList());
+            }
+
         });
         return mock;
     }
 
+    @Override
+    public <T extends HasMetadata> ResourceEventHandler<T> asynchronous(String name, ResourceEventHandler<T> handler) {
+        return handler;
+    }
+
     @Override
     public boolean allInformersWatching() {
         return true;
     }
 
+    @Override
+    public boolean allInformersSynced() {
+        return true;
+    }
+
 }
@@ -268,22 +268,27 @@ class IngressControllerManagerTest {
 
     @Test
     void testIngressControllerReplicaCounts() {
-        assertEquals(1, ingressControllerManager.numReplicasForDefault(3000));
-        assertEquals(0, ingressControllerManager.numReplicasForZone(new LongSummaryStatistics(), new LongSummaryStatistics(), 0, ZONE_PERCENTAGE));
+        assertEquals(1, ingressControllerManager.numReplicasForDefault(3000, 0));
+        assertEquals(0, ingressControllerManager.numReplicasForZone(new LongSummaryStatistics(), new LongSummaryStatistics(), 0, ZONE_PERCENTAGE, 0));
 
-        assertEquals(3, ingressControllerManager.numReplicasForDefault(160000));
-        assertEquals(1, ingressControllerManager.numReplicasForZone(new LongSummaryStatistics(1, 0, 30000000, 1500000000), new LongSummaryStatistics(1, 0, 30000000, 1500000000), 0, ZONE_PERCENTAGE));
-        assertEquals(3, ingressControllerManager.numReplicasForZone(new LongSummaryStatistics(), new LongSummaryStatistics(), 480000, ZONE_PERCENTAGE));
+        assertEquals(3, ingressControllerManager.numReplicasForDefault(160000, 0));
+        assertEquals(1, ingressControllerManager.numReplicasForZone(new LongSummaryStatistics(1, 0, 30000000, 1500000000), new LongSummaryStatistics(1, 0, 30000000, 1500000000), 0, ZONE_PERCENTAGE, 0));
+        assertEquals(3, ingressControllerManager.numReplicasForZone(new LongSummaryStatistics(), new LongSummaryStatistics(), 480000, ZONE_PERCENTAGE, 0));
 
         long ingress = 50000000;
-        assertEquals(5, ingressControllerManager.numReplicasForDefault(370000));
-        assertEquals(4, ingressControllerManager.numReplicasForZone(new LongSummaryStatistics(1, 0, ingress, ingress*60), new LongSummaryStatistics(1, 0, ingress*2, ingress*120), 0, ZONE_PERCENTAGE));
+        assertEquals(5, ingressControllerManager.numReplicasForDefault(370000, 0));
+        assertEquals(4, ingressControllerManager.numReplicasForZone(new LongSummaryStatistics(1, 0, ingress, ingress*60), new LongSummaryStatistics(1, 0, ingress*2, ingress*120), 0, ZONE_PERCENTAGE, 0));
+
+        // a zone with nodes has at least one replica, and larger clusters at least two default replicas
+        assertEquals(1, ingressControllerManager.numReplicasForZone(new LongSummaryStatistics(), new LongSummaryStatistics(), 0, ZONE_PERCENTAGE, 1));
+        assertEquals(1, ingressControllerManager.numReplicasForDefault(3000, 3));
+        assertEquals(2, ingressControllerManager.numReplicasForDefault(3000, 4));
     }
 
     @Test
     void testIngressControllerReplicaCountsMultiUnit() {
-        assertEquals(1, ingressControllerManager.numReplicasForDefault(3000*24));
-        assertEquals(2, ingressControllerManager.numReplicasForZone(new LongSummaryStatistics(1, 0, Quantity.getAmountInBytes(Quantity.parse("50Mi")).longValue(), Quantity.getAmountInBytes(Quantity.parse("50Mi")).longValue()*24), new LongSummaryStatistics(1, 0, Quantity.getAmountInBytes(Quantity.parse("100Mi")).longValue(), Quantity.getAmountInBytes(Quantity.parse("100Mi")).longValue()*24), 0, ZONE_PERCENTAGE));
+        assertEquals(1, ingressControllerManager.numReplicasForDefault(3000*24, 0));
+        assertEquals(2, ingressControllerManager.numReplicasForZone(new LongSummaryStatistics(1, 0, Quantity.getAmountInBytes(Quantity.parse("50Mi")).longValue(), Quantity.getAmountInBytes(Quantity.parse("50Mi")).longValue()*24), new LongSummaryStatistics(1, 0, Quantity.getAmountInBytes(Quantity.parse("100Mi")).longValue(), Quantity.getAmountInBytes(Quantity.parse("100Mi")).longValue()*24), 0, ZONE_PERCENTAGE, 0));
     }
 
     @Test
@@ -292,7 +297,7 @@ class IngressControllerManagerTest {
 
         // should only be 2 replicas for 60 standard instances
         long ingress = 50000000;
-        assertEquals(2, ingressControllerManager.numReplicasForZone(new LongSummaryStatistics(1, 0, ingress, ingress*60), new LongSummaryStatistics(1, 0, ingress*2, ingress*120), 0, ZONE_PERCENTAGE));
+        assertEquals(2, ingressControllerManager.numReplicasForZone(new LongSummaryStatistics(1, 0, ingress, ingress*60), new LongSummaryStatistics(1, 0, ingress*2, ingress*120), 0, ZONE_PERCENTAGE, 0));
     }
 
     private void useProfileLabels() {
@@ -7,13 +7,17 @@ import io.fabric8.kubernetes.api.model.Volume;
 import io.fabric8.kubernetes.api.model.apps.Deployment;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.kubernetes.client.dsl.Resource;
+import io.fabric8.kubernetes.client.server.mock.KubernetesMockServer;
 import io.fabric8.kubernetes.client.server.mock.KubernetesServer;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.quarkus.test.common.QuarkusTestResource;
 import io.quarkus.test.junit.QuarkusMock;
 import io.quarkus.test.junit.QuarkusTest;
 import io.quarkus.test.junit.mockito.InjectMock;
 import io.quarkus.test.kubernetes.client.KubernetesServerTestResource;
 import io.quarkus.test.kubernetes.client.KubernetesTestServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.bf2.common.OperandUtils;
 import org.bf2.operator.managers.OperandOverrideManager;
 import org.bf2.operator.resources.v1alpha1.ManagedKafka;
 import org.bf2.operator.resources.v1alpha1.ManagedKafkaBuilder;
@@ -31,6 +35,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertNull;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -54,6 +59,9 @@ public class CanaryTest {
     @InjectMock
     OperandOverrideManager overrideManager;
 
+    @Inject
+    MeterRegistry meterRegistry;
+
     @ParameterizedTest(name = "createCanaryDeployment: {0}")
     @CsvSource({
             "shouldHaveNoDiffByDefault, test-mk-kafka-bootstrap, false, '[]', '[]', /expected/canary.yml",
@@ -187,4 +195,45 @@ public class CanaryTest {
         canary.createOrUpdate(mk);
         assertNotNull(deployment.get());
     }
+
+    @Test
+    void testUnchangedNotWritten() throws Exception {
+        KafkaCluster kafkaCluster = Mockito.mock(KafkaCluster.class);
+        QuarkusMock.installMockForType(kafkaCluster, KafkaCluster.class);
+        Mockito.when(kafkaCluster.hasKafkaBeenReady(Mockito.any())).thenReturn(true);
+
+        ManagedKafka mk = ManagedKafka.getDummyInstance(2);
+        configureMockOverrideManager(mk, Collections.emptyList(), Collections.emptyList());
+
+        // the first reconcile creates the deployment and service
+        assertTrue(reconcileWrites(mk) >= 2);
+
+        double skipped = meterRegistry.counter(OperandUtils.OPERAND_WRITES, "kind", "Deployment", "result", "skipped").count();
+        assertEquals(0, reconcileWrites(mk));
+        assertEquals(0, reconcileWrites(mk));
+        assertEquals(skipped + 2, meterRegistry.counter(OperandUtils.OPERAND_WRITES, "kind", "Deployment", "result", "skipped").count());
+
+        // a change is written
+        when(overrideManager.getCanaryImage(mk.getSpec().getVersions().getStrimzi())).thenReturn("quay.io/mk-ci-cd/strimzi-canary:changed");
+        assertEquals(1, reconcileWrites(mk));
+    }
+
+    /**
+     * Counts the requests to the mock server, other than gets, made by a reconcile
+     */
+    private int reconcileWrites(ManagedKafka mk) throws InterruptedException {
+        KubernetesMockServer mockServer = server.getMockServer();
+        while (mockServer.takeRequest(10, TimeUnit.MILLISECONDS) != null) {
+            // discard the prior requests
+        }
+        canary.createOrUpdate(mk);
+        int writes = 0;
+        RecordedRequest request;
+        while ((request = mockServer.takeRequest(10, TimeUnit.MILLISECONDS)) != null) {
+            if (!"GET".equals(request.getMethod())) {
+                writes++;
+            }
+        }
+        return writes;
+    }
 }
@@ -5,6 +5,8 @@ import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.fabric8.kubernetes.api.model.Affinity;
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
 import io.fabric8.kubernetes.api.model.LocalObjectReferenceBuilder;
 import io.fabric8.kubernetes.api.model.PersistentVolumeClaim;
 import io.fabric8.kubernetes.api.model.PersistentVolumeClaimBuilder;
@@ -278,6 +280,34 @@ class KafkaClusterTest {
         assertEquals(expected, Serialization.asYaml(affinity));
     }
 
+    @Test
+    void testLocalConfigMapChangesKeptUntilDigestChanges() {
+        ConfigMap released = new ConfigMapBuilder()
+                .withNewMetadata()
+                    .withNamespace("configmaps")
+                    .withName("test-kafka-logging")
+                    .addToAnnotations("org.bf2.operator/digest", "release-1")
+                .endMetadata()
+                .addToData("log4j.properties", "log4j.rootLogger=INFO")
+                .build();
+        kafkaCluster.createOrUpdateIfNecessary(null, released);
+
+        // a local modification remains while the release is the same
+        ConfigMap modified = client.configMaps().inNamespace("configmaps").withName("test-kafka-logging")
+                .edit(cm -> new ConfigMapBuilder(cm).addToData("log4j.properties", "log4j.rootLogger=DEBUG").build());
+        kafkaCluster.createOrUpdateIfNecessary(modified, new ConfigMapBuilder(released).build());
+        assertEquals("log4j.rootLogger=DEBUG",
+                client.configMaps().inNamespace("configmaps").withName("test-kafka-logging").get().getData().get("log4j.properties"));
+
+        // a new release replaces it
+        ConfigMap nextRelease = new ConfigMapBuilder(released)
+                .editMetadata().addToAnnotations("org.bf2.operator/digest", "release-2").endMetadata()
+                .build();
+        kafkaCluster.createOrUpdateIfNecessary(modified, nextRelease);
+        assertEquals("log4j.rootLogger=INFO",
+                client.configMaps().inNamespace("configmaps").withName("test-kafka-logging").get().getData().get("log4j.properties"));
+    }
+
     @Test
     void testManagedKafkaToKafkaWithSizeChanges() throws IOException {
         alternativeConfig(clone -> {
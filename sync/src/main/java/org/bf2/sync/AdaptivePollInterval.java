@@ -0,0 +1,152 @@
+package org.bf2.sync;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import org.bf2.sync.controlplane.CircuitBreakerOpenException;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Determines when the next poll of the control plane should happen.
+ * <ul>
+ * <li>After changes are seen the interval drops to the minimum
+ * <li>Each poll without changes doubles the interval up to the maximum
+ * <li>Errors back off the same way, unless the server supplies a Retry-After
+ * </ul>
+ * The actual wait is jittered by the given fraction so that many syncs do not poll in lock step.
+ * <br>
+ * The poll method is expected to be called at the minimum interval, it will skip polls that are not yet due.
+ */
+public class AdaptivePollInterval {
+
+    private final long minNanos;
+    private final long maxNanos;
+    private final double jitter;
+
+    private long intervalNanos;
+    private long nextPollNanos;
+    private boolean polled;
+
+    public AdaptivePollInterval(String resource, MeterRegistry meterRegistry, Duration min, Duration max, double jitter) {
+        this.minNanos = min.toNanos();
+        this.maxNanos = Math.max(minNanos, max.toNanos());
+        this.jitter = Math.min(Math.max(jitter, 0), 1);
+        this.intervalNanos = minNanos;
+
+        TimeGauge.builder("sync.poll.interval", this, TimeUnit.NANOSECONDS, AdaptivePollInterval::getIntervalNanos)
+                .tag("resource", resource)
+                .description("The current interval between polls")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Run the poll if it is due.
+     *
+     * @param poll returns true if changes were seen
+     */
+    public void poll(BooleanSupplier poll) {
+        if (!isDue(System.nanoTime())) {
+            return;
+        }
+        boolean changes;
+        try {
+            changes = poll.getAsBoolean();
+        } catch (RuntimeException e) {
+            failed(System.nanoTime(), retryAfter(e).orElse(null));
+            throw e;
+        }
+        completed(System.nanoTime(), changes);
+    }
+
+    synchronized boolean isDue(long now) {
+        return !polled || now - nextPollNanos >= 0;
+    }
+
+    synchronized void completed(long now, boolean changes) {
+        intervalNanos = changes ? minNanos : increase(intervalNanos);
+        schedule(now, jittered(intervalNanos));
+    }
+
+    synchronized void failed(long now, Duration retryAfter) {
+        intervalNanos = increase(intervalNanos);
+        if (retryAfter != null) {
+            // never poll before the server asked, jitter only lengthens the wait
+            long retryAfterNanos = retryAfter.toNanos();
+            schedule(now, retryAfterNanos + (long) (retryAfterNanos * jitter * ThreadLocalRandom.current().nextDouble()));
+        } else {
+            schedule(now, jittered(intervalNanos));
+        }
+    }
+
+    synchronized long getIntervalNanos() {
+        return intervalNanos;
+    }
+
+    synchronized long getNextPollNanos() {
+        return nextPollNanos;
+    }
+
+    private void schedule(long now, long delay) {
+        polled = true;
+        nextPollNanos = now + delay;
+    }
+
+    private long increase(long interval) {
+        return interval > maxNanos / 2 ? maxNanos : Math.max(interval * 2, minNanos);
+    }
+
+    private long jittered(long interval) {
+        if (jitter == 0) {
+            return interval;
+        }
+        double factor = 1 + jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+        return Math.max(minNanos, (long) (interval * factor));
+    }
+
+    /**
+     * Get the Retry-After from a 429 or 503 error response, if present.  Both the
+     * delay-seconds and HTTP-date forms are supported.  An open circuit breaker also
+     * provides the time until calls are allowed.
+     */
+    static Optional<Duration> retryAfter(Throwable t) {
+        if (t instanceof CircuitBreakerOpenException) {
+            return Optional.of(((CircuitBreakerOpenException) t).getRetryAfter());
+        }
+        if (!(t instanceof WebApplicationException)) {
+            return Optional.empty();
+        }
+        Response response = ((WebApplicationException) t).getResponse();
+        if (response == null || (response.getStatus() != 429
+                && response.getStatus() != Response.Status.SERVICE_UNAVAILABLE.getStatusCode())) {
+            return Optional.empty();
+        }
+        String value = response.getHeaderString(HttpHeaders.RETRY_AFTER);
+        if (value == null || value.isBlank()) {
+            return Optional.empty();
+        }
+        value = value.trim();
+        try {
+            return Optional.of(Duration.ofSeconds(Math.max(0, Long.parseLong(value))));
+        } catch (NumberFormatException e) {
+            // try the date form
+        }
+        try {
+            Duration delay = Duration.between(ZonedDateTime.now(), ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME));
+            return Optional.of(delay.isNegative() ? Duration.ZERO : delay);
+        } catch (DateTimeParseException e) {
+            return Optional.empty();
+        }
+    }
+
+}
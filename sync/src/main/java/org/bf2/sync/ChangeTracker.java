@@ -0,0 +1,110 @@
+package org.bf2.sync;
+
+import io.fabric8.kubernetes.client.informers.cache.Cache;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.bf2.operator.resources.v1alpha1.ManagedKafka;
+import org.bf2.sync.informer.LocalLookup;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time from when a control plane change to a ManagedKafka is first seen
+ * until the local ManagedKafka generation that includes the change is seen in the cluster.
+ * <br>
+ * Keying on the generation means that events for the older generation, such as status
+ * updates, do not end the measurement early.
+ */
+@ApplicationScoped
+public class ChangeTracker {
+
+    private static final class PendingChange {
+        private final long seenNanos;
+        private volatile boolean written;
+        private volatile Long generation;
+
+        PendingChange(long seenNanos) {
+            this.seenNanos = seenNanos;
+        }
+    }
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    @Inject
+    LocalLookup lookup;
+
+    /* by local key */
+    private final Map<String, PendingChange> pending = new ConcurrentHashMap<>();
+
+    private Timer applied;
+
+    @PostConstruct
+    void onStart() {
+        applied = Timer.builder("sync.change.applied")
+                .description("The time from seeing a control plane change to the changed ManagedKafka generation being seen in the cluster")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("sync.change.pending", pending, Map::size)
+                .description("The number of control plane changes not yet seen in the cluster")
+                .register(meterRegistry);
+    }
+
+    /**
+     * A remote change needs to be applied.  Only the first sighting of an unapplied change is retained.
+     */
+    public void seen(String localKey) {
+        pending.computeIfAbsent(localKey, k -> new PendingChange(System.nanoTime()));
+    }
+
+    /**
+     * The change was written with the resulting resource
+     */
+    public void written(ManagedKafka local) {
+        String key = Cache.metaNamespaceKeyFunc(local);
+        PendingChange change = pending.get(key);
+        if (change == null) {
+            return;
+        }
+        change.generation = local.getMetadata().getGeneration();
+        change.written = true;
+        // the informer event may have already been seen
+        ManagedKafka cached = lookup.getLocalManagedKafka(key);
+        if (cached != null) {
+            observed(cached);
+        }
+    }
+
+    /**
+     * The change will not be applied, such as for a delete
+     */
+    public void removed(String localKey) {
+        pending.remove(localKey);
+    }
+
+    /**
+     * The local resource was seen by the informer
+     */
+    public void observed(ManagedKafka local) {
+        String key = Cache.metaNamespaceKeyFunc(local);
+        PendingChange change = pending.get(key);
+        if (change == null || !change.written) {
+            return;
+        }
+        Long generation = local.getMetadata().getGeneration();
+        if (generation != null && change.generation != null && generation < change.generation) {
+            return;
+        }
+        if (pending.remove(key, change)) {
+            applied.record(System.nanoTime() - change.seenNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+}
@@ -2,74 +2,151 @@ package org.bf2.sync;
 
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
 import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.inject.Produces;
 import javax.inject.Inject;
+import javax.inject.Named;
 
-import java.lang.Thread.UncaughtExceptionHandler;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Provides a separate pool for each class of sync work, so that a slow control plane
+ * cannot starve the local reconciliation and the other way around.
+ * <ul>
+ * <li>{@link #RECONCILE} - creating, updating and deleting the local ManagedKafkas
+ * <li>{@link #CONTROL_PLANE} - status updates and resyncs sent to the control plane
+ * </ul>
+ * Each pool is monitored with the same name and a work tag.
+ */
 @ApplicationScoped
-public class ExecutorServiceProvider implements UncaughtExceptionHandler {
+public class ExecutorServiceProvider {
+
+    public static final String RECONCILE = "reconcile";
+    public static final String CONTROL_PLANE = "control-plane";
 
     private static final String NAME = "sync.threadpool";
 
     @Inject
     Logger log;
 
-    private MeterRegistry meterRegistry;
+    @Inject
+    MeterRegistry meterRegistry;
+
+    // the total number of threads should be less than the size of the rest connection pool (50 by default)
+    @ConfigProperty(name = "sync.executor.reconcile.threads")
+    int reconcileThreads;
+
+    @ConfigProperty(name = "sync.executor.reconcile.queue-size")
+    int reconcileQueueSize;
 
-    // the number of threads should be less than the size of the rest connection pool (50 by default)
-    ThreadPoolExecutor executor = new ThreadPoolExecutor(5, 10, 1, TimeUnit.MINUTES, new ArrayBlockingQueue<>(10000),
-            new ThreadFactory() {
-                ThreadFactory defaultThreadFactory = Executors.defaultThreadFactory();
+    @ConfigProperty(name = "sync.executor.control-plane.threads")
+    int controlPlaneThreads;
 
+    @ConfigProperty(name = "sync.executor.control-plane.queue-size")
+    int controlPlaneQueueSize;
+
+    ThreadPoolExecutor reconcileExecutor;
+    ThreadPoolExecutor controlPlaneExecutor;
+
+    private ExecutorService reconcile;
+    private ExecutorService controlPlane;
+
+    @PostConstruct
+    void init() {
+        // the work queue holds at most one task per key, so its tasks must not be silently discarded
+        reconcileExecutor = createExecutor(RECONCILE, reconcileThreads, reconcileQueueSize, false);
+        reconcile = ExecutorServiceMetrics.monitor(meterRegistry, reconcileExecutor, NAME, Tags.of("work", RECONCILE));
+        controlPlaneExecutor = createExecutor(CONTROL_PLANE, controlPlaneThreads, controlPlaneQueueSize, true);
+        controlPlane = ExecutorServiceMetrics.monitor(meterRegistry, controlPlaneExecutor, NAME, Tags.of("work", CONTROL_PLANE));
+    }
+
+    /**
+     * @param discardOldest if true an old task is discarded when the queue is full, otherwise the new
+     * task is rejected with a {@link RejectedExecutionException}
+     */
+    private ThreadPoolExecutor createExecutor(String work, int threads, int queueSize, boolean discardOldest) {
+        Counter rejected = Counter.builder("executor.rejected")
+                .tag("name", NAME)
+                .tag("work", work)
+                .description("The number of tasks discarded or rejected because the queue was full")
+                .register(meterRegistry);
+
+        RejectedExecutionHandler rejectedHandler;
+        if (discardOldest) {
+            rejectedHandler = new ThreadPoolExecutor.DiscardOldestPolicy() {
                 @Override
-                public Thread newThread(Runnable r) {
-                    Thread t = defaultThreadFactory.newThread(r);
-                    t.setUncaughtExceptionHandler(ExecutorServiceProvider.this);
-                    return t;
+                public void rejectedExecution(Runnable r, ThreadPoolExecutor e) {
+                    log.warnf("%s queue is full - purging an old task", work);
+                    rejected.increment();
+                    super.rejectedExecution(r, e);
                 }
-            },
-            new ThreadPoolExecutor.DiscardOldestPolicy() {
+            };
+        } else {
+            rejectedHandler = new ThreadPoolExecutor.AbortPolicy() {
                 @Override
                 public void rejectedExecution(Runnable r, ThreadPoolExecutor e) {
-                    log.warn("Queue is full - purging an old task");
+                    log.warnf("%s queue is full - rejecting a new task", work);
+                    rejected.increment();
                     super.rejectedExecution(r, e);
                 }
+            };
+        }
 
-            });
+        return new ThreadPoolExecutor(threads, threads * 2, 1, TimeUnit.MINUTES, new ArrayBlockingQueue<>(queueSize),
+                new ThreadFactory() {
+                    ThreadFactory defaultThreadFactory = Executors.defaultThreadFactory();
+                    AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = defaultThreadFactory.newThread(r);
+                        t.setName("sync-" + work + "-" + count.incrementAndGet());
+                        t.setUncaughtExceptionHandler((thread, e) -> uncaughtException(work, e));
+                        return t;
+                    }
+                },
+                rejectedHandler);
+    }
 
-    public ExecutorServiceProvider(MeterRegistry meterRegistry) {
-        ExecutorServiceMetrics.monitor(meterRegistry, executor, NAME);
-        this.meterRegistry = meterRegistry;
+    @Produces
+    @Named(RECONCILE)
+    public ExecutorService reconcileExecutorService() {
+        return reconcile;
     }
 
     @Produces
-    public ExecutorService executorService() {
-        return executor;
+    @Named(CONTROL_PLANE)
+    public ExecutorService controlPlaneExecutorService() {
+        return controlPlane;
     }
 
     @PreDestroy
     void shutdown() {
         // we don't need to be more graceful than this as any action will be retried
-        executor.shutdownNow();
+        reconcileExecutor.shutdownNow();
+        controlPlaneExecutor.shutdownNow();
     }
 
-    @Override
-    public void uncaughtException(Thread t, Throwable e) {
-        log.errorf(e, "Uncaught exception running task");
+    void uncaughtException(String work, Throwable e) {
+        log.errorf(e, "Uncaught exception running %s task", work);
         Counter.Builder builder = Counter.builder("executor.failed.tasks")
                 .tag("name", NAME)
+                .tag("work", work)
                 .tag("exception", getExceptionTag(e))
                 .tag("result", "failure")
                 .description("The number of tasks that have failed");
@@ -0,0 +1,227 @@
+package org.bf2.sync;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * A simple keyed work queue similar to
+ * https://github.com/kubernetes/client-go/tree/master/examples/workqueue
+ * <ul>
+ * <li>A newer item for a key supersedes one that is still pending
+ * <li>A key is never processed concurrently with itself - an item added while
+ * the key is processing will run once the current processing completes
+ * <li>Failed items are retried with a per key exponential backoff, unless superseded
+ * <li>A key that has exhausted its retries, and has no newer item, is passed to the drop handler
+ * </ul>
+ * The actual processing is delegated to the supplied {@link Executor}, which will hold
+ * at most one task per key.  It should reject rather than silently discard tasks - a rejected
+ * key is dispatched again after the base delay.
+ */
+public class KeyedWorkQueue {
+
+    private static Logger log = Logger.getLogger(KeyedWorkQueue.class);
+
+    private static final class Item {
+        private final Runnable work;
+        private final long addedNanos;
+
+        Item(Runnable work, long addedNanos) {
+            this.work = work;
+            this.addedNanos = addedNanos;
+        }
+    }
+
+    private final String name;
+    private final Executor executor;
+    private final Duration baseDelay;
+    private final Duration maxDelay;
+    private final int maxRetries;
+    private final Consumer<String> dropHandler;
+
+    private final Map<String, Item> pending = new HashMap<>();
+    private final Set<String> active = new HashSet<>();
+    private final Set<String> delayed = new HashSet<>();
+    private final Map<String, Integer> failures = new HashMap<>();
+
+    private final Counter adds;
+    private final Counter superseded;
+    private final Counter retries;
+    private final Counter dropped;
+    private final Counter rejected;
+    private final Timer latency;
+    private final Timer duration;
+
+    public KeyedWorkQueue(String name, Executor executor, MeterRegistry meterRegistry, Duration baseDelay,
+            Duration maxDelay, int maxRetries) {
+        this(name, executor, meterRegistry, baseDelay, maxDelay, maxRetries, key -> {});
+    }
+
+    /**
+     * @param dropHandler called with the key when its work is given up on
+     */
+    public KeyedWorkQueue(String name, Executor executor, MeterRegistry meterRegistry, Duration baseDelay,
+            Duration maxDelay, int maxRetries, Consumer<String> dropHandler) {
+        this.name = name;
+        this.executor = executor;
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+        this.maxRetries = maxRetries;
+        this.dropHandler = dropHandler;
+
+        Gauge.builder("sync.workqueue.depth", this, KeyedWorkQueue::getDepth)
+                .tag("name", name)
+                .description("The number of keys waiting to be processed")
+                .register(meterRegistry);
+        this.adds = meterRegistry.counter("sync.workqueue.adds", "name", name);
+        this.superseded = meterRegistry.counter("sync.workqueue.superseded", "name", name);
+        this.retries = meterRegistry.counter("sync.workqueue.retries", "name", name);
+        this.dropped = meterRegistry.counter("sync.workqueue.dropped", "name", name);
+        this.rejected = meterRegistry.counter("sync.workqueue.rejected", "name", name);
+        this.latency = Timer.builder("sync.workqueue.latency")
+                .tag("name", name)
+                .description("The time an item waits in the queue before processing")
+                .register(meterRegistry);
+        this.duration = Timer.builder("sync.workqueue.duration")
+                .tag("name", name)
+                .description("The time spent processing an item")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Add work for the given key, superseding any pending work for the same key
+     */
+    public void add(String key, Runnable work) {
+        adds.increment();
+        boolean dispatch;
+        synchronized (this) {
+            Item previous = pending.get(key);
+            // retain the original add time so that the latency reflects the oldest request
+            pending.put(key, new Item(work, previous == null ? System.nanoTime() : previous.addedNanos));
+            if (previous != null) {
+                superseded.increment();
+            }
+            dispatch = previous == null && !active.contains(key) && !delayed.contains(key);
+        }
+        if (dispatch) {
+            dispatch(key);
+        }
+    }
+
+    /**
+     * The number of keys waiting to be processed
+     */
+    public synchronized int getDepth() {
+        return pending.size();
+    }
+
+    /**
+     * Return true if there is nothing pending, processing, or waiting for a retry
+     */
+    synchronized boolean isEmpty() {
+        return pending.isEmpty() && active.isEmpty() && delayed.isEmpty();
+    }
+
+    private void dispatch(String key) {
+        try {
+            executor.execute(() -> process(key));
+        } catch (RejectedExecutionException e) {
+            if (executor instanceof ExecutorService && ((ExecutorService) executor).isShutdown()) {
+                return;
+            }
+            rejected.increment();
+            log.warnf("Could not dispatch %s %s, will try again in %s", name, key, baseDelay);
+            // the key remains pending, so it must be dispatched again or it would never be processed
+            CompletableFuture.delayedExecutor(baseDelay.toMillis(), TimeUnit.MILLISECONDS).execute(() -> dispatch(key));
+        }
+    }
+
+    private void process(String key) {
+        Item item;
+        synchronized (this) {
+            if (active.contains(key) || delayed.contains(key)) {
+                return; // will be dispatched again on completion
+            }
+            item = pending.remove(key);
+            if (item == null) {
+                return;
+            }
+            active.add(key);
+        }
+        long start = System.nanoTime();
+        latency.record(start - item.addedNanos, TimeUnit.NANOSECONDS);
+        boolean success = false;
+        try {
+            item.work.run();
+            success = true;
+        } finally {
+            duration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            completed(key, item, success);
+        }
+    }
+
+    private void completed(String key, Item item, boolean success) {
+        Duration delay = null;
+        boolean dispatch = false;
+        boolean drop = false;
+        synchronized (this) {
+            active.remove(key);
+            if (success) {
+                failures.remove(key);
+                dispatch = pending.containsKey(key);
+            } else {
+                int attempts = failures.merge(key, 1, Integer::sum);
+                if (attempts > maxRetries) {
+                    failures.remove(key);
+                    dropped.increment();
+                    log.warnf("Giving up on %s %s after %s retries", name, key, maxRetries);
+                    dispatch = pending.containsKey(key);
+                    drop = !dispatch;
+                } else {
+                    retries.increment();
+                    // retry the failed work only if it has not been superseded
+                    pending.putIfAbsent(key, new Item(item.work, System.nanoTime()));
+                    delayed.add(key);
+                    delay = backoff(attempts);
+                }
+            }
+        }
+        if (delay != null) {
+            log.infof("Retrying %s %s in %s", name, key, delay);
+            // dispatched after the delay, so that a rejection is handled rather than lost on the delay thread
+            CompletableFuture.delayedExecutor(delay.toMillis(), TimeUnit.MILLISECONDS).execute(() -> {
+                synchronized (this) {
+                    delayed.remove(key);
+                }
+                dispatch(key);
+            });
+        } else if (dispatch) {
+            dispatch(key);
+        } else if (drop) {
+            dropHandler.accept(key);
+        }
+    }
+
+    Duration backoff(int attempts) {
+        long millis = baseDelay.toMillis() << Math.min(attempts - 1, 30);
+        if (millis <= 0 || millis > maxDelay.toMillis()) {
+            return maxDelay;
+        }
+        return Duration.ofMillis(millis);
+    }
+
+}
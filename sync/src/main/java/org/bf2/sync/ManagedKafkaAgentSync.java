@@ -2,17 +2,22 @@ package org.bf2.sync;
 
 import io.micrometer.core.annotation.Counted;
 import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.quarkus.scheduler.Scheduled;
 import io.quarkus.scheduler.Scheduled.ConcurrentExecution;
 import org.bf2.common.ManagedKafkaAgentResourceClient;
 import org.bf2.operator.resources.v1alpha1.ManagedKafkaAgent;
 import org.bf2.sync.controlplane.ControlPlane;
 import org.bf2.sync.informer.LocalLookup;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
 
+import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 
+import java.time.Duration;
 import java.util.Objects;
 
 @ApplicationScoped
@@ -30,16 +35,74 @@ public class ManagedKafkaAgentSync {
     @Inject
     ControlPlane controlPlane;
 
+    @Inject
+    MeterRegistry meterRegistry;
+
+    @Inject
+    ShardManager shardManager;
+
+    @ConfigProperty(name = "poll.min-interval")
+    Duration minPollInterval;
+
+    @ConfigProperty(name = "poll.interval")
+    Duration maxPollInterval;
+
+    @ConfigProperty(name = "poll.jitter")
+    double pollJitter;
+
+    private AdaptivePollInterval pollInterval;
+
+    private Counter applied;
+    private Counter unchanged;
+    private Counter skipped;
+
+    /* the last remote agent known to be reflected locally, and the generation of the local agent at that time */
+    private volatile ManagedKafkaAgent appliedAgent;
+    private volatile Long appliedGeneration;
+
+    @PostConstruct
+    void onStart() {
+        pollInterval = new AdaptivePollInterval("ManagedKafkaAgent", meterRegistry, minPollInterval, maxPollInterval, pollJitter);
+        applied = meterRegistry.counter("sync.agent.updates", "result", "applied");
+        unchanged = meterRegistry.counter("sync.agent.updates", "result", "unchanged");
+        skipped = meterRegistry.counter("sync.agent.updates", "result", "skipped");
+    }
+
+    @Scheduled(every = "{poll.min-interval}", concurrentExecution = ConcurrentExecution.SKIP)
+    void poll() {
+        // only a single shard manages the agent
+        if (!shardManager.owns(ManagedKafkaAgentResourceClient.RESOURCE_NAME)) {
+            return;
+        }
+        pollInterval.poll(this::loop);
+    }
+
+    /**
+     * @return true if the local agent was created or updated
+     */
     @Timed(value = "sync.poll", extraTags = {"resource", "ManagedKafkaAgent"}, description = "The time spent processing polling calls")
     @Counted(value = "sync.poll", extraTags = {"resource", "ManagedKafkaAgent"}, description = "The number of polling calls")
-    @Scheduled(every = "{poll.interval}", concurrentExecution = ConcurrentExecution.SKIP)
-    void loop() {
+    boolean loop() {
         ManagedKafkaAgent managedKafkaAgent = controlPlane.getManagedKafkaAgent();
         Objects.requireNonNull(managedKafkaAgent);
-        createOrUpdateManagedKafkaAgent(managedKafkaAgent);
+        if (managedKafkaAgent == appliedAgent && isLocalUnchanged()) {
+            // the control plane returns the same instance when nothing has changed
+            skipped.increment();
+            return false;
+        }
+        return createOrUpdateManagedKafkaAgent(managedKafkaAgent);
     }
 
-    private void createOrUpdateManagedKafkaAgent(ManagedKafkaAgent remoteAgent) {
+    /**
+     * The generation only changes with the spec, so this detects local modifications
+     * without a comparison
+     */
+    private boolean isLocalUnchanged() {
+        ManagedKafkaAgent resource = lookup.getLocalManagedKafkaAgent();
+        return resource != null && Objects.equals(appliedGeneration, resource.getMetadata().getGeneration());
+    }
+
+    private boolean createOrUpdateManagedKafkaAgent(ManagedKafkaAgent remoteAgent) {
         ManagedKafkaAgent resource = lookup.getLocalManagedKafkaAgent();
         if (resource == null) {
             // the informer may not have run yet, so check more definitively
@@ -49,15 +112,29 @@ public class ManagedKafkaAgentSync {
         if (resource == null) {
             remoteAgent.getMetadata().setNamespace(agentClient.getNamespace());
             remoteAgent.getMetadata().setName(ManagedKafkaAgentResourceClient.RESOURCE_NAME);
-            this.agentClient.create(remoteAgent);
+            ManagedKafkaAgent created = this.agentClient.create(remoteAgent);
             log.infof("ManagedKafkaAgent CR created");
+            applied(remoteAgent, created);
+            applied.increment();
+            return true;
         } else if (!remoteAgent.getSpec().equals(resource.getSpec())) {
-            this.agentClient.edit(this.agentClient.getNamespace(), ManagedKafkaAgentResourceClient.RESOURCE_NAME, mka -> {
+            ManagedKafkaAgent updated = this.agentClient.edit(this.agentClient.getNamespace(), ManagedKafkaAgentResourceClient.RESOURCE_NAME, mka -> {
                 mka.setSpec(remoteAgent.getSpec());
                 return mka;
             });
             log.infof("ManagedKafkaAgent CR updated");
+            applied(remoteAgent, updated);
+            applied.increment();
+            return true;
         }
+        applied(remoteAgent, resource);
+        unchanged.increment();
+        return false;
+    }
+
+    private void applied(ManagedKafkaAgent remoteAgent, ManagedKafkaAgent resource) {
+        appliedGeneration = resource == null ? null : resource.getMetadata().getGeneration();
+        appliedAgent = remoteAgent;
     }
 
 }
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.fabric8.kubernetes.api.model.Namespace;
 import io.fabric8.kubernetes.api.model.NamespaceBuilder;
+import io.fabric8.kubernetes.api.model.NamespaceStatus;
 import io.fabric8.kubernetes.api.model.ObjectMeta;
 import io.fabric8.kubernetes.api.model.Secret;
 import io.fabric8.kubernetes.client.KubernetesClient;
@@ -13,6 +14,8 @@ import io.fabric8.kubernetes.client.utils.Serialization;
 import io.fabric8.zjsonpatch.JsonDiff;
 import io.micrometer.core.annotation.Counted;
 import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import io.quarkus.scheduler.Scheduled;
 import io.quarkus.scheduler.Scheduled.ConcurrentExecution;
 import org.bf2.common.ConditionUtils;
@@ -27,35 +30,79 @@ import org.bf2.operator.resources.v1alpha1.ManagedKafkaSpec;
 import org.bf2.operator.resources.v1alpha1.ManagedKafkaStatusBuilder;
 import org.bf2.sync.controlplane.ControlPlane;
 import org.bf2.sync.informer.LocalLookup;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.context.ManagedExecutor;
 import org.jboss.logging.Logger;
 import org.jboss.logging.NDC;
 
+import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
+import javax.inject.Named;
 
 import java.net.HttpURLConnection;
+import java.security.MessageDigest;
+import java.time.Duration;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 /**
  * Has the responsibility of processing the remote list of ManagedKafka from the
  * control plane.
  *
- * Actual modifications to the kube ManagedKafka are added to a simple work
- * queue, but you could envision using a more involved approach
- * https://github.com/kubernetes/client-go/tree/master/examples/workqueue -
- * where tasks could be superseded, rate limited, etc.
+ * Actual modifications to the kube ManagedKafka are added to a {@link KeyedWorkQueue}
+ * keyed by the local ManagedKafka, so that newer tasks supersede pending ones,
+ * an instance is not processed concurrently and failures are retried with a backoff.
  */
 @ApplicationScoped
 public class ManagedKafkaSync {
     private static final String MANAGEDKAFKA_ID_LABEL = "bf2.org/id";
     private static final String MANAGEDKAFKA_ID_NAMESPACE_LABEL = "bf2.org/managedkafka-id";
+    private static final String NAMESPACE_TERMINATING = "Terminating";
     private static Logger log = Logger.getLogger(ManagedKafkaSync.class);
 
+    /**
+     * The fingerprint of the remote state last found to match a local generation and metadata, keyed by the local
+     * uid.  The generation is unaffected by the status updates, but also by the labels and annotations - including
+     * the master secret digest - so a hash of those is also held.  The remote spec still contains the secret values,
+     * so an equal fingerprint also implies an unchanged remote master secret.
+     * <br>
+     * The remote fingerprint is computed when the remote is read from the control plane, see
+     * {@link ControlPlane#getDesiredFingerprint(ManagedKafka)}, so matching does not copy or hash the remote.
+     */
+    static final class UnchangedRemote {
+        private final Long localGeneration;
+        private final int localMetadataHash;
+        private final byte[] fingerprint;
+
+        UnchangedRemote(ManagedKafka existing, byte[] fingerprint) {
+            this.localGeneration = existing.getMetadata().getGeneration();
+            this.localMetadataHash = localMetadataHash(existing);
+            this.fingerprint = fingerprint;
+        }
+
+        boolean matches(byte[] remoteFingerprint, ManagedKafka existing) {
+            return localGeneration != null
+                    && localGeneration.equals(existing.getMetadata().getGeneration())
+                    && localMetadataHash == localMetadataHash(existing)
+                    && MessageDigest.isEqual(fingerprint, remoteFingerprint);
+        }
+
+        static int localMetadataHash(ManagedKafka existing) {
+            return 31 * Objects.hashCode(existing.getMetadata().getLabels()) + Objects.hashCode(existing.getMetadata().getAnnotations());
+        }
+    }
+
     @Inject
     ManagedKafkaResourceClient client;
 
@@ -69,81 +116,194 @@ public class ManagedKafkaSync {
     KubernetesClient kubeClient;
 
     @Inject
+    @Named(ExecutorServiceProvider.RECONCILE)
     ExecutorService executorService;
 
     @Inject
     protected SecretManager secretManager;
 
+    @Inject
+    ShardManager shardManager;
+
+    @Inject
+    ChangeTracker changeTracker;
+
+    @ConfigProperty(name = "poll.full-interval")
+    Duration fullPollInterval;
+
+    @ConfigProperty(name = "poll.min-interval")
+    Duration minPollInterval;
+
+    @ConfigProperty(name = "poll.interval")
+    Duration maxPollInterval;
+
+    @ConfigProperty(name = "poll.jitter")
+    double pollJitter;
+
+    @ConfigProperty(name = "sync.workqueue.base-delay")
+    Duration workQueueBaseDelay;
+
+    @ConfigProperty(name = "sync.workqueue.max-delay")
+    Duration workQueueMaxDelay;
+
+    @ConfigProperty(name = "sync.workqueue.max-retries")
+    int workQueueMaxRetries;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    private volatile Long lastFullSync;
+
+    private KeyedWorkQueue workQueue;
+
+    private AdaptivePollInterval pollInterval;
+
+    private final Map<String, UnchangedRemote> unchanged = new ConcurrentHashMap<>();
+
+    private Timer diffTimer;
+    private Timer createTimer;
+    private Timer updateTimer;
+    private Timer deleteTimer;
+
+    @PostConstruct
+    void onStart() {
+        diffTimer = phaseTimer("diff");
+        createTimer = phaseTimer("create");
+        updateTimer = phaseTimer("update");
+        deleteTimer = phaseTimer("delete");
+        workQueue = new KeyedWorkQueue("ManagedKafka", executorService, meterRegistry, workQueueBaseDelay,
+                workQueueMaxDelay, workQueueMaxRetries, changeTracker::removed);
+        pollInterval = new AdaptivePollInterval("ManagedKafka", meterRegistry, minPollInterval, maxPollInterval, pollJitter);
+        // after a restart with a snapshot polls may continue with changes until the full interval is due
+        Long fullListTimestamp = controlPlane.getFullListTimestamp();
+        if (fullListTimestamp != null) {
+            lastFullSync = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(Math.max(0, System.currentTimeMillis() - fullListTimestamp));
+        }
+    }
+
+    private Timer phaseTimer(String phase) {
+        return Timer.builder("sync.phase")
+                .tag("phase", phase)
+                .tag("resource", "ManagedKafka")
+                .description("The time spent in each phase of the sync")
+                .register(meterRegistry);
+    }
+
     /**
-     * Update the local state based upon the remote ManagedKafkas
+     * Update the local state based upon the full list of remote ManagedKafkas
      * The strategy here is to take a pass over the list and find any deferred work
      * Then execute that deferred work using the {@link ManagedExecutor} but with
      * a refresh of the state to ensure we're still acting appropriately.
      */
+    public void syncKafkaClusters() {
+        syncKafkaClusters(true);
+    }
+
+    /**
+     * Update the local state based upon the remote ManagedKafkas.
+     *
+     * @param full if false only the remote changes since the last poll are requested.  The control plane
+     * may still require a full list, and only a full list is used to process the final removals.
+     * @return true if any local changes were needed
+     */
     @Timed(value = "sync.poll", extraTags = {"resource", "ManagedKafka"}, description = "The time spent processing polling calls")
     @Counted(value = "sync.poll", extraTags = {"resource", "ManagedKafka"}, description = "The number of polling calls")
-    public void syncKafkaClusters() {
-        Map<String, ManagedKafka> remotes = new HashMap<>();
+    boolean syncKafkaClusters(boolean full) {
+        // only the keys are retained, each remote is processed as it is read
+        Set<String> remotes = new HashSet<>();
+        AtomicBoolean changes = new AtomicBoolean();
+        Consumer<ManagedKafka> consumer = remoteManagedKafka -> {
+            remotes.add(ControlPlane.managedKafkaKey(remoteManagedKafka));
+            if (syncKafkaCluster(remoteManagedKafka)) {
+                changes.set(true);
+            }
+        };
 
-        for (ManagedKafka remoteManagedKafka : controlPlane.getKafkaClusters()) {
-            // these are basically assertions - there's not expected to fail in a real environment
-            Objects.requireNonNull(remoteManagedKafka.getId());
-            Objects.requireNonNull(remoteManagedKafka.getMetadata().getNamespace());
+        if (!full && controlPlane.getKafkaClusterChanges(consumer)) {
+            return changes.get();
+        }
+        controlPlane.getKafkaClusters(consumer);
+
+        lastFullSync = System.nanoTime();
 
-            remotes.put(ControlPlane.managedKafkaKey(remoteManagedKafka), remoteManagedKafka);
-            ManagedKafkaSpec remoteSpec = remoteManagedKafka.getSpec();
-            Objects.requireNonNull(remoteSpec);
+        List<ManagedKafka> locals = lookup.getLocalManagedKafkas();
+        if (unchanged.size() > locals.size()) {
+            Set<String> uids = new HashSet<>();
+            locals.forEach(local -> uids.add(local.getMetadata().getUid()));
+            unchanged.keySet().retainAll(uids);
+        }
 
-            String localKey = Cache.namespaceKeyFunc(remoteManagedKafka.getMetadata().getNamespace(), remoteManagedKafka.getMetadata().getName());
-            ManagedKafka existing = lookup.getLocalManagedKafka(localKey);
+        // process final removals - the remotes only include what this shard owns
+        for (ManagedKafka local : locals) {
+            if (remotes.contains(ControlPlane.managedKafkaKey(local)) || !shardManager.owns(local.getId()) || !deleteAllowed(local)) {
+                continue;
+            }
 
-            // take action based upon differences
-            // this is really just seeing if an instance needs created and the delete flag
-            // there are no other fields to reconcile - but you could envision updating
-            // component versions etc. later
+            reconcileAsync(null, Cache.metaNamespaceKeyFunc(local));
+            changes.set(true);
+        }
 
-            if (existing == null) {
-                if (!remoteSpec.isDeleted()) {
-                    reconcileAsync(ControlPlane.managedKafkaKey(remoteManagedKafka), localKey);
-                } else {
-                    // we've successfully removed locally, but control plane is not aware
-                    // we need to send another status update to let them know
+        return changes.get();
+    }
 
-                    ManagedKafkaStatusBuilder statusBuilder = new ManagedKafkaStatusBuilder();
-                    statusBuilder.withConditions(ConditionUtils.buildCondition(Type.Ready, Status.False).reason(Reason.Deleted));
-                    // fire and forget the async call - if it fails, we'll retry on the next poll
-                    controlPlane.updateKafkaClusterStatus(()->{return Map.of(remoteManagedKafka.getId(), statusBuilder.build());});
-                }
+    /**
+     * @return true if local work was queued for the remote
+     */
+    boolean syncKafkaCluster(ManagedKafka remoteManagedKafka) {
+        // these are basically assertions - there's not expected to fail in a real environment
+        Objects.requireNonNull(remoteManagedKafka.getId());
+        Objects.requireNonNull(remoteManagedKafka.getMetadata().getNamespace());
+
+        ManagedKafkaSpec remoteSpec = remoteManagedKafka.getSpec();
+        Objects.requireNonNull(remoteSpec);
+
+        String localKey = Cache.namespaceKeyFunc(remoteManagedKafka.getMetadata().getNamespace(), remoteManagedKafka.getMetadata().getName());
+        ManagedKafka existing = lookup.getLocalManagedKafka(localKey);
+
+        // take action based upon differences
+        // this is really just seeing if an instance needs created and the delete flag
+        // there are no other fields to reconcile - but you could envision updating
+        // component versions etc. later
+
+        if (existing == null) {
+            if (!remoteSpec.isDeleted()) {
+                changeTracker.seen(localKey);
+                reconcileAsync(ControlPlane.managedKafkaKey(remoteManagedKafka), localKey);
+                return true;
             } else {
-                final String localNamespace = existing.getMetadata().getNamespace();
-                final String managedKafkaId = existing.getMetadata().getAnnotations() == null ? null : existing.getMetadata().getAnnotations().get(MANAGEDKAFKA_ID_LABEL);
-                Namespace n = kubeClient.namespaces().withName(localNamespace).get();
-                if (n != null) {
-                    String namespaceLabel = Optional.ofNullable(n.getMetadata().getLabels()).map(m -> m.get(MANAGEDKAFKA_ID_NAMESPACE_LABEL)).orElse("");
-                    if (managedKafkaId != null && !namespaceLabel.equals(managedKafkaId)) {
-                        kubeClient.namespaces().withName(localNamespace).edit(namespace -> new NamespaceBuilder(namespace)
-                                .editMetadata()
-                                .addToLabels(MANAGEDKAFKA_ID_NAMESPACE_LABEL, managedKafkaId)
-                                .endMetadata()
-                                .build());
-                    }
-                }
+                // we've successfully removed locally, but control plane is not aware
+                // we need to send another status update to let them know
 
-                if (changed(remoteManagedKafka, existing)) {
-                    reconcileAsync(ControlPlane.managedKafkaKey(remoteManagedKafka), localKey);
+                ManagedKafkaStatusBuilder statusBuilder = new ManagedKafkaStatusBuilder();
+                statusBuilder.withConditions(ConditionUtils.buildCondition(Type.Ready, Status.False).reason(Reason.Deleted));
+                // fire and forget the async call - if it fails, we'll retry on the next poll
+                controlPlane.updateKafkaClusterStatus(()->{return Map.of(remoteManagedKafka.getId(), statusBuilder.build());});
+            }
+        } else {
+            final String localNamespace = existing.getMetadata().getNamespace();
+            final String managedKafkaId = existing.getMetadata().getAnnotations() == null ? null : existing.getMetadata().getAnnotations().get(MANAGEDKAFKA_ID_LABEL);
+            Namespace n = lookup.getLocalNamespace(localNamespace);
+            if (n != null && !NAMESPACE_TERMINATING.equals(Optional.ofNullable(n.getStatus()).map(NamespaceStatus::getPhase).orElse(null))) {
+                String namespaceLabel = Optional.ofNullable(n.getMetadata().getLabels()).map(m -> m.get(MANAGEDKAFKA_ID_NAMESPACE_LABEL)).orElse("");
+                if (managedKafkaId != null && !namespaceLabel.equals(managedKafkaId)) {
+                    kubeClient.namespaces().withName(localNamespace).edit(namespace -> new NamespaceBuilder(namespace)
+                            .editMetadata()
+                            .addToLabels(MANAGEDKAFKA_ID_NAMESPACE_LABEL, managedKafkaId)
+                            .endMetadata()
+                            .build());
                 }
             }
-        }
 
-        // process final removals
-        for (ManagedKafka local : lookup.getLocalManagedKafkas()) {
-            if (remotes.get(ControlPlane.managedKafkaKey(local)) != null || !deleteAllowed(local)) {
-                continue;
+            long start = System.nanoTime();
+            boolean changed = changed(remoteManagedKafka, existing);
+            diffTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (changed) {
+                changeTracker.seen(localKey);
+                reconcileAsync(ControlPlane.managedKafkaKey(remoteManagedKafka), localKey);
+                return true;
             }
-
-            reconcileAsync(null, Cache.metaNamespaceKeyFunc(local));
         }
-
+        return false;
     }
 
     boolean deleteAllowed(ManagedKafka local) {
@@ -172,6 +332,27 @@ public class ManagedKafkaSync {
             log.warnf("Ignoring ManagedKafka %s that wants to come back to life", Cache.metaNamespaceKeyFunc(existing));
             return false;
         }
+
+        // fast path - the remote and local are the same as when last compared
+        String uid = existing.getMetadata().getUid();
+        byte[] fingerprint = controlPlane.getDesiredFingerprint(remote);
+        if (uid == null || existing.getMetadata().getGeneration() == null || fingerprint == null) {
+            return compare(remote, existing);
+        }
+        UnchangedRemote previous = unchanged.get(uid);
+        if (previous != null && previous.matches(fingerprint, existing)) {
+            return false;
+        }
+
+        if (compare(remote, existing)) {
+            unchanged.remove(uid);
+            return true;
+        }
+        unchanged.put(uid, new UnchangedRemote(existing, fingerprint));
+        return false;
+    }
+
+    private boolean compare(ManagedKafka remote, ManagedKafka existing) {
         if (secretManager.isMasterSecretChanged(remote, existing)) {
             log.debugf("Remote master secret data changed");
             return true;
@@ -216,7 +397,7 @@ public class ManagedKafkaSync {
      * @param localMetaNamespaceKey - obtained from {@link Cache#namespaceKeyFunc(String, String)}
      */
     void reconcileAsync(String remoteId, String localMetaNamespaceKey) {
-        executorService.execute(() -> {
+        workQueue.add(localMetaNamespaceKey, () -> {
             reconcile(remoteId, localMetaNamespaceKey);
         });
     }
@@ -238,6 +419,7 @@ public class ManagedKafkaSync {
         }
 
         if (local == null && remote == null) {
+            changeTracker.removed(localMetaNamespaceKey);
             return; //nothing to do
         }
 
@@ -248,6 +430,12 @@ public class ManagedKafkaSync {
             id = remote.getId();
         }
         if (id != null) {
+            if (!shardManager.owns(id)) {
+                // moved to another shard since being queued
+                log.debugf("Skipping ManagedKafka %s owned by another shard", id);
+                changeTracker.removed(localMetaNamespaceKey);
+                return;
+            }
             NDC.push(ManagedKafkaResourceClient.ID_LOG_KEY + "=" + id);
         }
         try {
@@ -265,25 +453,9 @@ public class ManagedKafkaSync {
                     return;
                 }
                 if (changed(remote, local)) {
-                    log.debugf("Updating ManagedKafka %s", Cache.metaNamespaceKeyFunc(local));
-                    Secret masterSecret = secretManager.buildSecret(remote);
-                    ManagedKafka remoteCopy = secretManager.removeSecretsFromManagedKafka(remote);
-                    ManagedKafkaSpec spec = remoteCopy.getSpec();
-                    ObjectMeta meta = remoteCopy.getMetadata();
-                    client.edit(local.getMetadata().getNamespace(), local.getMetadata().getName(), mk -> {
-                            mk.getMetadata().setLabels(meta.getLabels());
-                            Map<String, String> existingAnnotations = mk.getMetadata().getAnnotations();
-                            mk.getMetadata().setAnnotations(meta.getAnnotations());
-                            if (existingAnnotations != null) {
-                                existingAnnotations.keySet().retainAll(ManagedKafkaKeys.Annotations.DATA_PLANE_ANNOTATIONS);
-                                mk.getMetadata().getAnnotations().putAll(existingAnnotations);
-                            }
-                            secretManager.calculateMasterSecretDigest(mk, masterSecret);
-                            mk.setSpec(spec);
-                            return mk;
-                        });
-                    secretManager.createOrUpdateSecret(local, masterSecret);
-                    // the operator will handle it from here
+                    update(local, remote);
+                } else {
+                    changeTracker.removed(localMetaNamespaceKey);
                 }
             }
         } finally {
@@ -293,16 +465,47 @@ public class ManagedKafkaSync {
         }
     }
 
+    void update(ManagedKafka local, ManagedKafka remote) {
+        log.debugf("Updating ManagedKafka %s", Cache.metaNamespaceKeyFunc(local));
+        long start = System.nanoTime();
+        Secret masterSecret = secretManager.buildSecret(remote);
+        ManagedKafka remoteCopy = secretManager.removeSecretsFromManagedKafka(remote);
+        ManagedKafkaSpec spec = remoteCopy.getSpec();
+        ObjectMeta meta = remoteCopy.getMetadata();
+        ManagedKafka updated = client.edit(local.getMetadata().getNamespace(), local.getMetadata().getName(), mk -> {
+                mk.getMetadata().setLabels(meta.getLabels());
+                Map<String, String> existingAnnotations = mk.getMetadata().getAnnotations();
+                mk.getMetadata().setAnnotations(meta.getAnnotations());
+                if (existingAnnotations != null) {
+                    existingAnnotations.keySet().retainAll(ManagedKafkaKeys.Annotations.DATA_PLANE_ANNOTATIONS);
+                    mk.getMetadata().getAnnotations().putAll(existingAnnotations);
+                }
+                secretManager.calculateMasterSecretDigest(mk, masterSecret);
+                mk.setSpec(spec);
+                return mk;
+            });
+        secretManager.createOrUpdateSecret(local, masterSecret);
+        updateTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        changeTracker.written(updated);
+        // the operator will handle it from here
+    }
+
     void delete(ManagedKafka local) {
         log.debugf("Deleting ManagedKafka %s", Cache.metaNamespaceKeyFunc(local));
+        long start = System.nanoTime();
 
         client.delete(local.getMetadata().getNamespace(), local.getMetadata().getName());
+        if (local.getMetadata().getUid() != null) {
+            unchanged.remove(local.getMetadata().getUid());
+        }
 
         kubeClient.namespaces().withName(local.getMetadata().getNamespace()).delete();
 
         // only remove the local after we're fully cleaned up, so that
         // we'll keep retrying if there is a failure
         controlPlane.removeDesiredState(local);
+        deleteTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        changeTracker.removed(Cache.metaNamespaceKeyFunc(local));
     }
 
     void create(ManagedKafka remote) {
@@ -310,6 +513,7 @@ public class ManagedKafkaSync {
         log.debugf("Creating ManagedKafka %s", Cache.metaNamespaceKeyFunc(remote));
         final String remoteNamespace = remote.getMetadata().getNamespace();
         final String remoteManagedKafkaId = remote.getMetadata().getAnnotations() == null ? null : remote.getMetadata().getAnnotations().get(MANAGEDKAFKA_ID_LABEL);
+        long start = System.nanoTime();
 
         kubeClient.namespaces().createOrReplace(
                 new NamespaceBuilder()
@@ -329,19 +533,24 @@ public class ManagedKafkaSync {
        try {
            remote = client.create(remote);
            secretManager.createOrUpdateSecret(remote, secret);
+           createTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+           changeTracker.written(remote);
        } catch (KubernetesClientException e) {
            if (e.getStatus().getCode() != HttpURLConnection.HTTP_CONFLICT) {
                throw e;
            }
            log.infof("ManagedKafka %s already exists", Cache.metaNamespaceKeyFunc(remote));
+           changeTracker.removed(Cache.metaNamespaceKeyFunc(remote));
        }
     }
 
-    @Scheduled(every = "{poll.interval}", concurrentExecution = ConcurrentExecution.SKIP)
+    @Scheduled(every = "{poll.min-interval}", concurrentExecution = ConcurrentExecution.SKIP)
     void pollKafkaClusters() {
-        log.debug("Polling for control plane managed kafkas");
-        // TODO: this is based upon a full poll - eventually this could be
-        // based upon a delta revision / timestmap to get a smaller list
-        syncKafkaClusters();
+        pollInterval.poll(() -> {
+            log.debug("Polling for control plane managed kafkas");
+            // poll only for changes, but periodically use a full list to process removals
+            // and to retry anything that may have failed locally
+            return syncKafkaClusters(lastFullSync == null || System.nanoTime() - lastFullSync >= fullPollInterval.toNanos());
+        });
     }
 }
@@ -23,6 +23,7 @@ import java.util.Base64;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -72,9 +73,30 @@ public class SecretManager {
 
     public void createOrUpdateSecret(ManagedKafka managedKafka, Secret secret) {
         OperandUtils.setAsOwner(managedKafka, secret);
+        if (isUnchanged(secret)) {
+            return;
+        }
         OperandUtils.createOrUpdate(kubernetesClient.secrets(), secret);
     }
 
+    /**
+     * Compare against the cached digest rather than the cached data.  The secret is built from
+     * the cached instance, so only the data, labels and owner may differ.
+     */
+    private boolean isUnchanged(Secret secret) {
+        String namespace = secret.getMetadata().getNamespace();
+        String name = secret.getMetadata().getName();
+        String cachedDigest = informerManager.getLocalSecretDigest(namespace, name);
+        if (cachedDigest == null || !cachedDigest.equals(digest(secret))) {
+            return false;
+        }
+        Secret current = informerManager.getLocalSecret(namespace, name);
+        return current != null
+                && Objects.equals(Optional.ofNullable(current.getData()).map(Map::keySet), Optional.ofNullable(secret.getData()).map(Map::keySet))
+                && Objects.equals(current.getMetadata().getLabels(), secret.getMetadata().getLabels())
+                && Objects.equals(current.getMetadata().getOwnerReferences(), secret.getMetadata().getOwnerReferences());
+    }
+
     private Secret buildSecret(String name, String type, ManagedKafka managedKafka, Map<String, String> dataSource) {
         Secret current = cachedSecret(managedKafka, OperandUtils.masterSecretName(managedKafka));
         SecretBuilder builder = current != null ? new SecretBuilder(current) : new SecretBuilder();
@@ -158,12 +180,19 @@ public class SecretManager {
 
     public void calculateMasterSecretDigest(ManagedKafka managedKafka, Secret secret) {
         var metadata = new ObjectMetaBuilder(managedKafka.getMetadata())
-                .addToAnnotations(Annotations.MASTER_SECRET_DIGEST, buildDigest(decode(secret.getData())))
+                .addToAnnotations(Annotations.MASTER_SECRET_DIGEST, digest(secret))
                 .build();
 
         managedKafka.setMetadata(metadata);
     }
 
+    /**
+     * The digest of the secret data, as used for the {@link Annotations#MASTER_SECRET_DIGEST}
+     */
+    public static String digest(Secret secret) {
+        return buildDigest(secret.getData() == null ? Map.of() : decode(secret.getData()));
+    }
+
     private static String encode(String value) {
         return Base64.getEncoder().encodeToString(value.getBytes(StandardCharsets.UTF_8));
     }
@@ -0,0 +1,252 @@
+package org.bf2.sync;
+
+import io.fabric8.kubernetes.api.model.coordination.v1.Lease;
+import io.fabric8.kubernetes.api.model.coordination.v1.LeaseBuilder;
+import io.fabric8.kubernetes.api.model.coordination.v1.LeaseSpec;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.scheduler.Scheduled;
+import io.quarkus.scheduler.Scheduled.ConcurrentExecution;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Optionally divides the ManagedKafka ids among several sync replicas.
+ * <br>
+ * Each replica renews its own Lease, the members are the replicas with an unexpired Lease.
+ * Ids are assigned to members with a consistent hash ring, so that a membership change
+ * only moves the ids of the members gained or lost.
+ * <br>
+ * After a membership change an id is only owned if it was also owned before the change until the
+ * rebalance delay passes.  That gives the other replicas time to see the same change, so that
+ * an id is not processed by two replicas at once.  Changes to a moved id during the delay are not
+ * processed by any replica, so a full list is required once the delay has passed.
+ * <br>
+ * A replica that has not renewed its own Lease within the lease duration owns nothing, as the
+ * others will have removed it from their rings.
+ * <br>
+ * When sharding is disabled everything is owned.
+ */
+@ApplicationScoped
+public class ShardManager {
+
+    static final String LEASE_PREFIX = "kas-fleetshard-sync-shard-";
+    static final String SHARD_LABEL = "bf2.org/sync-shard";
+
+    private static Logger log = Logger.getLogger(ShardManager.class);
+
+    /**
+     * An immutable consistent hash ring over the members
+     */
+    static final class HashRing {
+        static final HashRing EMPTY = new HashRing(Collections.emptySet(), 0);
+
+        private final Set<String> members;
+        private final NavigableMap<Long, String> ring = new TreeMap<>();
+
+        HashRing(Set<String> members, int virtualNodes) {
+            this.members = Collections.unmodifiableSet(new TreeSet<>(members));
+            for (String member : members) {
+                for (int i = 0; i < virtualNodes; i++) {
+                    ring.put(hash(member + "#" + i), member);
+                }
+            }
+        }
+
+        String owner(String key) {
+            if (ring.isEmpty()) {
+                return null;
+            }
+            Map.Entry<Long, String> entry = ring.ceilingEntry(hash(key));
+            return (entry == null ? ring.firstEntry() : entry).getValue();
+        }
+
+        Set<String> getMembers() {
+            return members;
+        }
+
+        static long hash(String value) {
+            try {
+                byte[] digest = MessageDigest.getInstance("MD5").digest(value.getBytes(StandardCharsets.UTF_8));
+                return ByteBuffer.wrap(digest).getLong();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    @Inject
+    KubernetesClient kubeClient;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    @ConfigProperty(name = "sync.shard.enabled")
+    boolean enabled;
+
+    @ConfigProperty(name = "sync.shard.identity")
+    String identity;
+
+    @ConfigProperty(name = "sync.shard.lease-duration")
+    Duration leaseDuration;
+
+    @ConfigProperty(name = "sync.shard.rebalance-delay")
+    Duration rebalanceDelay;
+
+    @ConfigProperty(name = "sync.shard.virtual-nodes")
+    int virtualNodes;
+
+    private volatile HashRing ring = HashRing.EMPTY;
+    /* the ring prior to the last membership change - null once the rebalance delay has passed */
+    private volatile HashRing previousRing;
+    private volatile long changedNanos;
+    private volatile boolean fullListRequired;
+    /* when the last successful renewal of our own Lease was started */
+    private volatile Long renewedNanos;
+
+    private Counter rebalances;
+
+    @PostConstruct
+    void onStart() {
+        Gauge.builder("sync.shard.members", this, s -> s.ring.getMembers().size())
+                .description("The number of sync replicas sharing the ManagedKafkas")
+                .register(meterRegistry);
+        rebalances = Counter.builder("sync.shard.rebalances")
+                .description("The number of membership changes seen")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param key typically the ManagedKafka id
+     * @return true if this replica should process the key
+     */
+    public boolean owns(String key) {
+        if (!enabled) {
+            return true;
+        }
+        Long renewed = renewedNanos;
+        if (renewed == null || System.nanoTime() - renewed >= leaseDuration.toNanos()) {
+            return false;
+        }
+        if (key == null || !identity.equals(ring.owner(key))) {
+            return false;
+        }
+        HashRing previous = previousRing;
+        if (previous != null) {
+            if (System.nanoTime() - changedNanos < rebalanceDelay.toNanos()) {
+                return identity.equals(previous.owner(key));
+            }
+            previousRing = null;
+        }
+        return true;
+    }
+
+    Set<String> getMembers() {
+        return ring.getMembers();
+    }
+
+    /**
+     * @return true if there has been a membership change, the rebalance delay has passed, and there has
+     * not yet been a full list started after the delay
+     */
+    public boolean isFullListRequired() {
+        return enabled && fullListRequired && System.nanoTime() - changedNanos >= rebalanceDelay.toNanos();
+    }
+
+    /**
+     * Record that a full list, started at the given {@link System#nanoTime()}, has completed
+     */
+    public void fullListCompleted(long startNanos) {
+        if (fullListRequired && startNanos - changedNanos >= rebalanceDelay.toNanos()) {
+            fullListRequired = false;
+        }
+    }
+
+    @Scheduled(every = "{sync.shard.renew-interval}", concurrentExecution = ConcurrentExecution.SKIP)
+    void renew() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        kubeClient.coordination().v1().leases().createOrReplace(new LeaseBuilder()
+                .withNewMetadata()
+                    .withName(LEASE_PREFIX + identity)
+                    .withNamespace(kubeClient.getNamespace())
+                    .addToLabels(SHARD_LABEL, "true")
+                .endMetadata()
+                .withNewSpec()
+                    .withHolderIdentity(identity)
+                    .withLeaseDurationSeconds((int) leaseDuration.getSeconds())
+                    .withRenewTime(now)
+                .endSpec()
+                .build());
+        renewedNanos = start;
+
+        Set<String> members = new TreeSet<>();
+        for (Lease lease : kubeClient.coordination().v1().leases().withLabel(SHARD_LABEL).list().getItems()) {
+            LeaseSpec spec = lease.getSpec();
+            if (spec == null || spec.getHolderIdentity() == null || spec.getRenewTime() == null) {
+                continue;
+            }
+            int duration = spec.getLeaseDurationSeconds() == null ? (int) leaseDuration.getSeconds() : spec.getLeaseDurationSeconds();
+            if (spec.getRenewTime().plusSeconds(duration).isAfter(now)) {
+                members.add(spec.getHolderIdentity());
+            }
+        }
+        members.add(identity);
+        updateMembers(members);
+    }
+
+    void updateMembers(Set<String> members) {
+        HashRing current = ring;
+        if (current.getMembers().equals(members)) {
+            return;
+        }
+        log.infof("Sync shard members changed from %s to %s", current.getMembers(), members);
+        previousRing = current;
+        changedNanos = System.nanoTime();
+        fullListRequired = true;
+        ring = new HashRing(members, virtualNodes);
+        rebalances.increment();
+    }
+
+    void onStop(@Observes ShutdownEvent ev) {
+        if (!enabled) {
+            return;
+        }
+        // let the others take over without waiting for the lease to expire
+        try {
+            kubeClient.coordination().v1().leases().withName(LEASE_PREFIX + identity).delete();
+        } catch (RuntimeException e) {
+            log.warn("Could not remove the sync shard lease", e);
+        }
+    }
+
+}
@@ -0,0 +1,177 @@
+package org.bf2.sync.controlplane;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.jboss.logging.Logger;
+
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * A circuit breaker for the control plane calls.
+ * <ul>
+ * <li>closed - calls are made, consecutive failures up to the threshold open the circuit
+ * <li>open - calls fail immediately with a {@link CircuitBreakerOpenException} until the
+ * delay has passed.  The delay doubles with each consecutive opening up to the max delay and is jittered
+ * so that many syncs do not return to the control plane at the same time.
+ * <li>half-open - a single probe call is allowed, its success closes the circuit and
+ * its failure opens it again
+ * </ul>
+ * Only errors that indicate an unhealthy control plane are failures - connection errors, timeouts,
+ * 5xx and 429 responses.  Other errors, such as a 410, are passed through without affecting the state.
+ */
+class CircuitBreaker {
+
+    private static Logger log = Logger.getLogger(CircuitBreaker.class);
+
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN;
+
+        String tag() {
+            return name().toLowerCase(Locale.ROOT).replace('_', '-');
+        }
+    }
+
+    private final int failureThreshold;
+    private final Duration delay;
+    private final Duration maxDelay;
+    private final double jitter;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private int opens;
+    private long openUntilNanos;
+    private boolean probing;
+
+    private final Counter rejected;
+
+    CircuitBreaker(MeterRegistry meterRegistry, int failureThreshold, Duration delay, Duration maxDelay, double jitter) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.delay = delay;
+        this.maxDelay = maxDelay;
+        this.jitter = Math.min(Math.max(jitter, 0), 1);
+
+        for (State s : State.values()) {
+            Gauge.builder("sync.control-plane.circuit.state", this, cb -> cb.getState() == s ? 1 : 0)
+                    .tag("state", s.tag())
+                    .description("1 if the control plane circuit breaker is in the given state")
+                    .register(meterRegistry);
+        }
+        this.rejected = Counter.builder("sync.control-plane.circuit.rejected")
+                .description("The number of control plane calls not made because the circuit breaker was open")
+                .register(meterRegistry);
+    }
+
+    <T> T call(Supplier<T> call) {
+        boolean probe = acquire();
+        boolean failure = false;
+        try {
+            return call.get();
+        } catch (RuntimeException e) {
+            failure = isFailure(e);
+            throw e;
+        } finally {
+            completed(probe, failure);
+        }
+    }
+
+    void run(Runnable runnable) {
+        call(() -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return true if the call is the half-open probe
+     */
+    private synchronized boolean acquire() {
+        if (state == State.OPEN) {
+            long remaining = openUntilNanos - System.nanoTime();
+            if (remaining > 0) {
+                rejected.increment();
+                throw new CircuitBreakerOpenException(Duration.ofNanos(remaining));
+            }
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probing) {
+                rejected.increment();
+                throw new CircuitBreakerOpenException(delay);
+            }
+            probing = true;
+            return true;
+        }
+        return false;
+    }
+
+    private synchronized void completed(boolean probe, boolean failure) {
+        if (probe) {
+            probing = false;
+            if (failure) {
+                open();
+            } else {
+                failures = 0;
+                opens = 0;
+                transition(State.CLOSED);
+            }
+        } else if (state == State.CLOSED) {
+            if (!failure) {
+                failures = 0;
+            } else if (++failures >= failureThreshold) {
+                open();
+            }
+        }
+    }
+
+    private void open() {
+        failures = 0;
+        opens++;
+        Duration backoff = backoff(opens);
+        openUntilNanos = System.nanoTime() + backoff.toNanos();
+        transition(State.OPEN);
+        log.warnf("Control plane calls are failing, not retrying for %s", backoff);
+    }
+
+    private void transition(State newState) {
+        if (state != newState) {
+            log.infof("Control plane circuit breaker %s -> %s", state.tag(), newState.tag());
+            state = newState;
+        }
+    }
+
+    /**
+     * The jittered open duration for the given number of consecutive openings
+     */
+    Duration backoff(int count) {
+        long millis = delay.toMillis() << Math.min(count - 1, 30);
+        if (millis <= 0 || millis > maxDelay.toMillis()) {
+            millis = maxDelay.toMillis();
+        }
+        return Duration.ofMillis((long) (millis * (1 + jitter * ThreadLocalRandom.current().nextDouble())));
+    }
+
+    static boolean isFailure(Throwable e) {
+        if (e instanceof WebApplicationException) {
+            Response response = ((WebApplicationException) e).getResponse();
+            return response == null || response.getStatus() >= 500 || response.getStatus() == 429;
+        }
+        return e instanceof ProcessingException || e instanceof UncheckedIOException || e.getCause() instanceof IOException;
+    }
+
+}
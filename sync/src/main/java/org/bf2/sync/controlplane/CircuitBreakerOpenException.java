@@ -0,0 +1,26 @@
+package org.bf2.sync.controlplane;
+
+import java.time.Duration;
+
+/**
+ * Thrown instead of making a control plane call while the circuit breaker is open
+ */
+public class CircuitBreakerOpenException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Duration retryAfter;
+
+    public CircuitBreakerOpenException(Duration retryAfter) {
+        super("The control plane circuit breaker is open, retry after " + retryAfter);
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * The minimum time until a call may be allowed
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+}
@@ -1,31 +1,56 @@
 package org.bf2.sync.controlplane;
 
+import io.fabric8.kubernetes.api.model.ListMeta;
 import io.fabric8.kubernetes.client.informers.cache.Cache;
+import io.fabric8.kubernetes.client.utils.Serialization;
 import io.micrometer.core.annotation.Counted;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import io.quarkus.scheduler.Scheduled;
 import io.quarkus.scheduler.Scheduled.ConcurrentExecution;
+import org.bf2.common.ManagedKafkaAgentResourceClient;
 import org.bf2.operator.resources.v1alpha1.ManagedKafka;
 import org.bf2.operator.resources.v1alpha1.ManagedKafkaAgent;
 import org.bf2.operator.resources.v1alpha1.ManagedKafkaAgentStatus;
-import org.bf2.operator.resources.v1alpha1.ManagedKafkaList;
 import org.bf2.operator.resources.v1alpha1.ManagedKafkaStatus;
+import org.bf2.sync.ExecutorServiceProvider;
+import org.bf2.sync.ShardManager;
 import org.bf2.sync.informer.LocalLookup;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.rest.client.inject.RestClient;
 import org.jboss.logging.Logger;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
+import javax.inject.Named;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.List;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
-import java.util.stream.Collectors;
+import java.util.zip.CRC32;
 
 import static java.util.Objects.requireNonNullElse;
 
@@ -34,6 +59,63 @@ public class ControlPlane {
 
     private static final ManagedKafkaStatus EMPTY_MANAGED_KAFKA_STATUS = new ManagedKafkaStatus();
 
+    /**
+     * The fingerprint of the parsed remote instance it was computed for
+     */
+    private static final class Fingerprint {
+        final ManagedKafka remote;
+        final byte[] value;
+
+        Fingerprint(ManagedKafka remote, byte[] value) {
+            this.remote = remote;
+            this.value = value;
+        }
+    }
+
+    /**
+     * A failure of the local processing of a listed entry, which is not a control plane failure
+     */
+    private static final class LocalProcessingException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        LocalProcessingException(RuntimeException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized RuntimeException getCause() {
+            return (RuntimeException) super.getCause();
+        }
+    }
+
+    /**
+     * A compact record of a status that the control plane has accepted
+     */
+    static final class StatusAcknowledgement {
+        final long fingerprint;
+        final long timestamp;
+
+        StatusAcknowledgement(long fingerprint, long timestamp) {
+            this.fingerprint = fingerprint;
+            this.timestamp = timestamp;
+        }
+    }
+
+    /**
+     * The last ManagedKafkaAgent returned by the control plane
+     */
+    static final class AgentVersion {
+        final ManagedKafkaAgent agent;
+        final String entityTag;
+        final long fingerprint;
+
+        AgentVersion(ManagedKafkaAgent agent, String entityTag, long fingerprint) {
+            this.agent = agent;
+            this.entityTag = entityTag;
+            this.fingerprint = fingerprint;
+        }
+    }
+
     @Inject
     Logger log;
 
@@ -45,16 +127,229 @@ public class ControlPlane {
     ControlPlaneRestClient controlPlaneClient;
 
     @Inject
+    @Named(ExecutorServiceProvider.CONTROL_PLANE)
     ExecutorService executorService;
 
     @Inject
     LocalLookup localLookup;
 
+    @Inject
+    ShardManager shardManager;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    @ConfigProperty(name = "status.batch.window")
+    Duration statusBatchWindow;
+
+    @ConfigProperty(name = "status.batch.max-size")
+    int statusBatchMaxSize;
+
+    @ConfigProperty(name = "resync.max-staleness")
+    Duration resyncMaxStaleness;
+
+    @ConfigProperty(name = "control-plane.circuit-breaker.failure-threshold")
+    int circuitBreakerFailureThreshold;
+
+    @ConfigProperty(name = "control-plane.circuit-breaker.delay")
+    Duration circuitBreakerDelay;
+
+    @ConfigProperty(name = "control-plane.circuit-breaker.max-delay")
+    Duration circuitBreakerMaxDelay;
+
+    @ConfigProperty(name = "control-plane.circuit-breaker.jitter")
+    double circuitBreakerJitter;
+
+    @ConfigProperty(name = "sync.snapshot.path")
+    Optional<String> snapshotPath;
+
+    private CircuitBreaker circuitBreaker;
+    private Counter agentStatusShed;
+
+    private StatusUpdateBatcher statusUpdateBatcher;
+
+    private final ManagedKafkaListReader listReader = new ManagedKafkaListReader(Serialization.jsonMapper());
+
+    /* fingerprints of the last status accepted by the control plane by cluster id */
+    private ConcurrentHashMap<String, StatusAcknowledgement> acknowledgedStatus = new ConcurrentHashMap<>();
+
+    private Counter resyncSent;
+    private Counter resyncSkipped;
+
     /* holds a copy of the remote desired state */
     private ConcurrentHashMap<String, ManagedKafka> desiredState = new ConcurrentHashMap<>();
 
+    /* the fingerprint computed when each desired state was parsed, by the same key */
+    private ConcurrentHashMap<String, Fingerprint> desiredFingerprints = new ConcurrentHashMap<>();
+
+    /* the resourceVersion of the last successful list - null if unknown or not supported by the control plane */
+    private volatile String kafkaClustersResourceVersion;
+
+    private volatile AgentVersion agentVersion;
+
+    /* the wall clock time of the last full list */
+    private volatile Long fullListTimestamp;
+
+    /* incremented with each change to what is kept in the snapshot */
+    private final AtomicLong snapshotChanges = new AtomicLong();
+    private volatile long snapshotWritten;
+    private Timer snapshotWrite;
+
+    private Timer fetchTimer;
+    private Timer agentFetchTimer;
+    private Timer statusTimer;
+    private Timer agentStatusTimer;
+    private Timer statusAcknowledged;
+
+    /* when a local status change not yet acknowledged by the control plane was first seen by cluster id */
+    private final Map<String, Long> unacknowledgedStatus = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void onStart() {
+        circuitBreaker = new CircuitBreaker(meterRegistry, circuitBreakerFailureThreshold, circuitBreakerDelay,
+                circuitBreakerMaxDelay, circuitBreakerJitter);
+        fetchTimer = phaseTimer("fetch", "ManagedKafka");
+        agentFetchTimer = phaseTimer("fetch", "ManagedKafkaAgent");
+        statusTimer = phaseTimer("status", "ManagedKafka");
+        agentStatusTimer = phaseTimer("status", "ManagedKafkaAgent");
+        statusAcknowledged = Timer.builder("sync.status.acknowledged")
+                .description("The time from seeing a ManagedKafka status change to the control plane accepting it")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        statusUpdateBatcher = new StatusUpdateBatcher(executorService, meterRegistry, statusBatchWindow, statusBatchMaxSize,
+                status -> {
+                    statusTimer.record(() -> circuitBreaker.run(() -> controlPlaneClient.updateKafkaClustersStatus(id, status)));
+                    acknowledged(status);
+                });
+        agentStatusShed = meterRegistry.counter("sync.status.shed", "resource", "ManagedKafkaAgent");
+        resyncSent = meterRegistry.counter("sync.resync.status", "result", "sent");
+        resyncSkipped = meterRegistry.counter("sync.resync.status", "result", "skipped");
+        snapshotWrite = Timer.builder("sync.snapshot.write")
+                .description("The time spent writing the desired state snapshot")
+                .register(meterRegistry);
+        restoreSnapshot();
+    }
+
+    private Timer phaseTimer(String phase, String resource) {
+        return Timer.builder("sync.phase")
+                .tag("phase", phase)
+                .tag("resource", resource)
+                .description("The time spent in each phase of the sync")
+                .register(meterRegistry);
+    }
+
+    private void acknowledged(Map<String, ManagedKafkaStatus> status) {
+        long now = System.currentTimeMillis();
+        long nanos = System.nanoTime();
+        status.forEach((clusterId, s) -> {
+            acknowledgedStatus.put(clusterId, new StatusAcknowledgement(statusFingerprint(s), now));
+            Long changed = unacknowledgedStatus.remove(clusterId);
+            if (changed != null) {
+                statusAcknowledged.record(nanos - changed, TimeUnit.NANOSECONDS);
+            }
+        });
+        snapshotChanges.incrementAndGet();
+    }
+
+    /**
+     * Restore the state from the snapshot, if any.  A missing or unreadable snapshot
+     * means starting over.
+     */
+    void restoreSnapshot() {
+        if (snapshotPath.isEmpty() || !Files.exists(Path.of(snapshotPath.get()))) {
+            return;
+        }
+        try {
+            DesiredStateSnapshot snapshot = DesiredStateSnapshot.read(Path.of(snapshotPath.get()));
+            snapshot.desiredState.forEach(mk -> desiredState.put(managedKafkaKey(mk), mk));
+            snapshot.acknowledgedStatus.forEach((clusterId, ack) -> acknowledgedStatus.put(clusterId, new StatusAcknowledgement(ack.fingerprint, ack.timestamp)));
+            kafkaClustersResourceVersion = snapshot.kafkaClustersResourceVersion;
+            fullListTimestamp = snapshot.fullListTimestamp;
+            log.infof("Restored %s desired states and %s status acknowledgements from a snapshot taken %s ago",
+                    desiredState.size(), acknowledgedStatus.size(), Duration.ofMillis(System.currentTimeMillis() - snapshot.timestamp));
+        } catch (IOException | RuntimeException e) {
+            log.warnf(e, "Could not restore the snapshot %s, starting without it", snapshotPath.get());
+        }
+    }
+
+    /**
+     * Write the snapshot if anything has changed since the last write
+     */
+    @Scheduled(every = "{sync.snapshot.interval}", concurrentExecution = ConcurrentExecution.SKIP)
+    void writeSnapshot() {
+        long changes = snapshotChanges.get();
+        if (snapshotPath.isEmpty() || changes == snapshotWritten) {
+            return;
+        }
+        DesiredStateSnapshot snapshot = new DesiredStateSnapshot();
+        snapshot.timestamp = System.currentTimeMillis();
+        snapshot.fullListTimestamp = fullListTimestamp;
+        snapshot.kafkaClustersResourceVersion = kafkaClustersResourceVersion;
+        snapshot.desiredState.addAll(desiredState.values());
+        acknowledgedStatus.forEach((clusterId, ack) -> {
+            DesiredStateSnapshot.Acknowledgement acknowledgement = new DesiredStateSnapshot.Acknowledgement();
+            acknowledgement.fingerprint = ack.fingerprint;
+            acknowledgement.timestamp = ack.timestamp;
+            snapshot.acknowledgedStatus.put(clusterId, acknowledgement);
+        });
+        try {
+            snapshotWrite.recordCallable(() -> {
+                snapshot.write(Path.of(snapshotPath.get()));
+                return null;
+            });
+            snapshotWritten = changes;
+        } catch (Exception e) {
+            log.warnf(e, "Could not write the snapshot %s", snapshotPath.get());
+        }
+    }
+
+    @PreDestroy
+    void onStop() {
+        writeSnapshot();
+    }
+
+    /**
+     * The wall clock time of the last full list, which may have been restored from a snapshot
+     */
+    public Long getFullListTimestamp() {
+        return fullListTimestamp;
+    }
+
+    /**
+     * A compact fingerprint of the status content
+     */
+    static long statusFingerprint(ManagedKafkaStatus status) {
+        return fingerprint(status);
+    }
+
+    private static long fingerprint(Object value) {
+        CRC32 crc = new CRC32();
+        crc.update(Serialization.asJson(value).getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
     void addDesiredState(ManagedKafka remoteManagedKafka) {
         desiredState.put(managedKafkaKey(remoteManagedKafka), remoteManagedKafka);
+        snapshotChanges.incrementAndGet();
+    }
+
+    void addDesiredState(ManagedKafka remoteManagedKafka, byte[] fingerprint) {
+        desiredFingerprints.put(managedKafkaKey(remoteManagedKafka), new Fingerprint(remoteManagedKafka, fingerprint));
+        addDesiredState(remoteManagedKafka);
+    }
+
+    /**
+     * Get the fingerprint of the spec, labels and annotations computed when the remote was read
+     * from the control plane.
+     *
+     * @return null if the remote is not the instance that was read
+     */
+    public byte[] getDesiredFingerprint(ManagedKafka remoteManagedKafka) {
+        Fingerprint fingerprint = desiredFingerprints.get(managedKafkaKey(remoteManagedKafka));
+        if (fingerprint == null || fingerprint.remote != remoteManagedKafka) {
+            return null;
+        }
+        return fingerprint.value;
     }
 
     /**
@@ -62,7 +357,10 @@ public class ControlPlane {
      * @param remoteManagedKafka
      */
     public void removeDesiredState(ManagedKafka remoteManagedKafka) {
-        desiredState.remove(managedKafkaKey(remoteManagedKafka));
+        desiredFingerprints.remove(managedKafkaKey(remoteManagedKafka));
+        if (desiredState.remove(managedKafkaKey(remoteManagedKafka)) != null) {
+            snapshotChanges.incrementAndGet();
+        }
     }
 
     /**
@@ -76,7 +374,7 @@ public class ControlPlane {
 
     /**
      * Get all known desired states.  May include orphan entries
-     * not in {@link #getKafkaClusters()} and entries that have not
+     * not in {@link #getKafkaClusters(Consumer)} and entries that have not
      * yet been created locally.
      */
     public Collection<ManagedKafka> getDesiredStates() {
@@ -106,6 +404,9 @@ public class ControlPlane {
     }
 
     private void updateAgentStatus() {
+        if (!shardManager.owns(ManagedKafkaAgentResourceClient.RESOURCE_NAME)) {
+            return;
+        }
         log.debug("Updating agent status");
         executorService.execute(() -> {
             ManagedKafkaAgent localManagedKafkaAgent = localLookup.getLocalManagedKafkaAgent();
@@ -119,59 +420,168 @@ public class ControlPlane {
                 // as they are not looking for this sync yet as a heartbeat
                 return;
             }
-            controlPlaneClient.updateStatus(id, status);
+            try {
+                agentStatusTimer.record(() -> circuitBreaker.run(() -> controlPlaneClient.updateStatus(id, status)));
+            } catch (CircuitBreakerOpenException e) {
+                // the next change or resync will send the latest
+                log.debugf("Not sending the agent status: %s", e.getMessage());
+                agentStatusShed.increment();
+            }
         });
     }
 
     /**
      * Get the current list of ManagedKafka clusters from the control plane
-     * as a blocking call.
+     * as a blocking call.  Each entry is passed to the consumer as it is read.
      * Also updates the cache of desired state ManagedKafka instances.  May include
      * entries that have not yet been created locally.
      *
      * @see {@link #getDesiredStates()} to get the full cache, rather than making a
      * remote call
      */
-    public List<ManagedKafka> getKafkaClusters() {
-        ManagedKafkaList result = controlPlaneClient.getKafkaClusters(id);
-        result.getItems().forEach((mk)->addDesiredState(mk));
-        return result.getItems();
+    public void getKafkaClusters(Consumer<ManagedKafka> consumer) {
+        listKafkaClusters(null, consumer);
+    }
+
+    /**
+     * Get the list of ManagedKafka clusters that have changed since the last list
+     * as a blocking call.  Each entry is passed to the consumer as it is read.
+     * Also updates the cache of desired state ManagedKafka instances.
+     * <br>
+     * Entries that have been fully removed by the control plane are not reported,
+     * so a full list from {@link #getKafkaClusters(Consumer)} is still needed to detect removals.
+     *
+     * @return false if a full list is required because the
+     * resourceVersion is unknown or no longer valid, or the shards have been rebalanced
+     */
+    public boolean getKafkaClusterChanges(Consumer<ManagedKafka> consumer) {
+        String resourceVersion = kafkaClustersResourceVersion;
+        if (resourceVersion == null) {
+            return false;
+        }
+        if (shardManager.isFullListRequired()) {
+            // changes to the moved ids during the rebalance were not processed by any shard
+            log.info("ManagedKafka shard membership has changed, a full list is required");
+            return false;
+        }
+        try {
+            listKafkaClusters(resourceVersion, consumer);
+            return true;
+        } catch (WebApplicationException e) {
+            if (e.getResponse() == null || e.getResponse().getStatus() != Response.Status.GONE.getStatusCode()) {
+                throw e;
+            }
+            log.infof("ManagedKafka resourceVersion %s is no longer valid, a full list is required", resourceVersion);
+            kafkaClustersResourceVersion = null;
+            return false;
+        }
+    }
+
+    private void listKafkaClusters(String resourceVersion, Consumer<ManagedKafka> consumer) {
+        // read incrementally so that a large fleet is not fully materialized on each poll
+        long start = System.nanoTime();
+        long[] consumerNanos = new long[1];
+        ListMeta metadata;
+        try {
+            // only the request and the read of the response count towards the circuit breaker
+            metadata = circuitBreaker.call(() -> {
+                try (InputStream stream = controlPlaneClient.streamKafkaClusters(id, resourceVersion)) {
+                    return listReader.read(stream, (mk, fingerprint) -> {
+                        if (!shardManager.owns(mk.getId())) {
+                            return;
+                        }
+                        long consumerStart = System.nanoTime();
+                        try {
+                            addDesiredState(mk, fingerprint);
+                            consumer.accept(mk);
+                        } catch (RuntimeException e) {
+                            throw new LocalProcessingException(e);
+                        }
+                        consumerNanos[0] += System.nanoTime() - consumerStart;
+                    });
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (LocalProcessingException e) {
+            throw e.getCause();
+        }
+        // the processing of each entry is not part of the fetch
+        fetchTimer.record(System.nanoTime() - start - consumerNanos[0], TimeUnit.NANOSECONDS);
+        if (resourceVersion == null && shardManager.isEnabled()) {
+            // forget anything that has moved to another shard
+            desiredState.values().removeIf(mk -> !shardManager.owns(mk.getId()));
+            desiredFingerprints.keySet().retainAll(desiredState.keySet());
+        }
+        if (resourceVersion == null) {
+            fullListTimestamp = System.currentTimeMillis();
+            shardManager.fullListCompleted(start);
+        }
+        // an older control plane will not supply a resourceVersion, which keeps us on full lists
+        kafkaClustersResourceVersion = metadata == null ? null : metadata.getResourceVersion();
+        if (!Objects.equals(resourceVersion, kafkaClustersResourceVersion)) {
+            snapshotChanges.incrementAndGet();
+        }
     }
 
     /**
      * Get the ManagedKafkaAgent as a blocking call.
+     * <br>
+     * A conditional request is made with the ETag of the last response.  If the control plane
+     * reports the agent as not modified, or without ETag support returns the same spec, then the
+     * instance from the prior call is returned - callers may skip processing the same instance again.
      */
     public ManagedKafkaAgent getManagedKafkaAgent() {
-        return controlPlaneClient.get(id);
+        AgentVersion last = agentVersion;
+        AgentVersion current = agentFetchTimer.record(() -> circuitBreaker.call(() -> {
+            Response response = controlPlaneClient.getIfNoneMatch(id, last == null ? null : last.entityTag);
+            try {
+                if (last != null && response.getStatus() == Response.Status.NOT_MODIFIED.getStatusCode()) {
+                    return last;
+                }
+                ManagedKafkaAgent agent = response.readEntity(ManagedKafkaAgent.class);
+                String entityTag = response.getHeaderString(HttpHeaders.ETAG);
+                long fingerprint = fingerprint(agent.getSpec());
+                if (last != null && last.fingerprint == fingerprint) {
+                    return new AgentVersion(last.agent, entityTag, fingerprint);
+                }
+                return new AgentVersion(agent, entityTag, fingerprint);
+            } finally {
+                response.close();
+            }
+        }));
+        agentVersion = current;
+        return current.agent;
     }
 
     /**
-     * Make an async call to update the status.
+     * Make an async call to update the status.  The status is read from the local state
+     * when the batch of status updates is sent.
      */
     public void updateKafkaClusterStatus(String localMetaNamespaceKey, String clusterId) {
-        updateKafkaClusterStatus(() -> {
+        log.debug("Updating managedkafka status");
+        statusUpdateBatcher.add(clusterId, () -> {
             ManagedKafka kafka = localLookup.getLocalManagedKafka(localMetaNamespaceKey);
             if (kafka == null) {
-                return Collections.emptyMap();
+                return null;
             }
             // for consistency we'll send an empty status
-            return Map.<String, ManagedKafkaStatus>of(clusterId, requireNonNullElse(kafka.getStatus(), EMPTY_MANAGED_KAFKA_STATUS));
+            return requireNonNullElse(kafka.getStatus(), EMPTY_MANAGED_KAFKA_STATUS);
         });
     }
 
     /**
-     * Make an async call to update the status.
+     * Make an async call to update the status.  The updates are batched with
+     * other status updates - the latest status per id wins.
      *
      * A {@link Supplier} is used to defer the map construction.
      */
     public void updateKafkaClusterStatus(Supplier<Map<String, ManagedKafkaStatus>> statusSupplier) {
         log.debug("Updating managedkafka(s) status");
         executorService.execute(() -> {
-            Map<String, ManagedKafkaStatus> status = statusSupplier.get();
-            if (status.isEmpty()) {
-                return;
-            }
-            controlPlaneClient.updateKafkaClustersStatus(id, status);
+            Map<String, Supplier<ManagedKafkaStatus>> statuses = new LinkedHashMap<>();
+            statusSupplier.get().forEach((clusterId, status) -> statuses.put(clusterId, () -> status));
+            statusUpdateBatcher.addAll(statuses);
         });
     }
 
@@ -182,7 +592,9 @@ public class ControlPlane {
      * newManagedKafka is expected to be non-null as deletes are not processed
      */
     public void updateKafkaClusterStatus(ManagedKafka oldManagedKafka, ManagedKafka newManagedKafka) {
-        if (newManagedKafka.getId() != null && oldManagedKafka != null && statusChanged(oldManagedKafka.getStatus(), newManagedKafka.getStatus())) {
+        if (newManagedKafka.getId() != null && oldManagedKafka != null && shardManager.owns(newManagedKafka.getId())
+                && statusChanged(oldManagedKafka.getStatus(), newManagedKafka.getStatus())) {
+            unacknowledgedStatus.putIfAbsent(newManagedKafka.getId(), System.nanoTime());
             // send a status update immediately (async)
             updateKafkaClusterStatus(Cache.metaNamespaceKeyFunc(newManagedKafka), newManagedKafka.getId());
         }
@@ -199,16 +611,35 @@ public class ControlPlane {
     }
 
     /**
-     * On the resync interval, send everything
+     * On the resync interval, send everything that differs from what the control plane
+     * has acknowledged, or that was acknowledged longer ago than the max staleness
      */
     @Counted(value = "sync.resync", description = "The number of resync calls") // no need to be timed as the actions are async
     @Scheduled(every = "{resync.interval}", concurrentExecution = ConcurrentExecution.SKIP)
     public void sendResync() {
         log.debug("Updating status on resync interval");
-        updateKafkaClusterStatus(() -> {
-            return localLookup.getLocalManagedKafkas().stream().filter(mk -> mk.getId() != null)
-                    .collect(Collectors.toMap(ManagedKafka::getId,
-                            (mk) -> requireNonNullElse(mk.getStatus(), EMPTY_MANAGED_KAFKA_STATUS)));
+        executorService.execute(() -> {
+            long staleBefore = System.currentTimeMillis() - resyncMaxStaleness.toMillis();
+            Map<String, Supplier<ManagedKafkaStatus>> statuses = new LinkedHashMap<>();
+            Set<String> ids = new HashSet<>();
+            for (ManagedKafka mk : localLookup.getLocalManagedKafkas()) {
+                if (mk.getId() == null || !shardManager.owns(mk.getId())) {
+                    continue;
+                }
+                ids.add(mk.getId());
+                ManagedKafkaStatus status = requireNonNullElse(mk.getStatus(), EMPTY_MANAGED_KAFKA_STATUS);
+                StatusAcknowledgement ack = acknowledgedStatus.get(mk.getId());
+                if (ack != null && ack.timestamp > staleBefore && ack.fingerprint == statusFingerprint(status)) {
+                    resyncSkipped.increment();
+                    continue;
+                }
+                resyncSent.increment();
+                statuses.put(mk.getId(), () -> status);
+            }
+            // forget about anything that no longer exists locally
+            acknowledgedStatus.keySet().retainAll(ids);
+            unacknowledgedStatus.keySet().retainAll(ids);
+            statusUpdateBatcher.addAll(statuses);
         });
         updateAgentStatus();
     }
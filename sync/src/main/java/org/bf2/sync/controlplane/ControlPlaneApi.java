@@ -10,6 +10,7 @@ import javax.ws.rs.GET;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
 
@@ -29,10 +30,18 @@ public interface ControlPlaneApi {
     @Consumes(MediaType.APPLICATION_JSON)
     void updateStatus(@PathParam("id") String id, ManagedKafkaAgentStatus status);
 
+    /**
+     * Get the ManagedKafkas for the cluster.
+     *
+     * @param resourceVersion if null the full list is returned, otherwise only the entries that
+     * have changed since the resourceVersion of a prior list.  The list metadata resourceVersion of the
+     * result may be used for the next call.  A 410 Gone response indicates that the resourceVersion is
+     * no longer valid and a full list is needed.
+     */
     @GET
     @Path("/{id}/kafkas")
     @Produces(MediaType.APPLICATION_JSON)
-    ManagedKafkaList getKafkaClusters(@PathParam("id") String id);
+    ManagedKafkaList getKafkaClusters(@PathParam("id") String id, @QueryParam("resourceVersion") String resourceVersion);
 
     @PUT
     @Path("/{id}/kafkas/status")
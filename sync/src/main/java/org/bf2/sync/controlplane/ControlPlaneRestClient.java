@@ -1,13 +1,44 @@
 package org.bf2.sync.controlplane;
 
+import org.eclipse.microprofile.rest.client.annotation.RegisterProvider;
 import org.eclipse.microprofile.rest.client.inject.RegisterRestClient;
 
 import javax.enterprise.context.ApplicationScoped;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import java.io.InputStream;
 
 @ApplicationScoped
 @RegisterRestClient(configKey = "control-plane")
+@RegisterProvider(PayloadCompression.class)
 @Path(ControlPlaneApi.BASE_PATH)
 public interface ControlPlaneRestClient extends ControlPlaneApi {
 
+    /**
+     * The same as {@link #getKafkaClusters(String, String)}, but the unparsed response
+     * is returned so that large lists may be read incrementally.  The caller must close the stream.
+     */
+    @GET
+    @Path("/{id}/kafkas")
+    @Produces(MediaType.APPLICATION_JSON)
+    InputStream streamKafkaClusters(@PathParam("id") String id, @QueryParam("resourceVersion") String resourceVersion);
+
+    /**
+     * The conditional form of {@link #get(String)}.  If the ifNoneMatch matches the ETag of the
+     * current agent a 304 Not Modified response without an entity is returned.  A control plane that
+     * does not support conditional requests will always respond with the agent.  The caller must close the response.
+     */
+    @GET
+    @Path("/{id}")
+    @Produces(MediaType.APPLICATION_JSON)
+    Response getIfNoneMatch(@PathParam("id") String id, @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch);
+
 }
@@ -0,0 +1,76 @@
+package org.bf2.sync.controlplane;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.fabric8.kubernetes.client.utils.Serialization;
+import org.bf2.operator.resources.v1alpha1.ManagedKafka;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A compressed point in time copy of what the {@link ControlPlane} has learned from the
+ * control plane, so that a restart does not need to start over.
+ * <br>
+ * The desired state includes the master secret values, so the file should only be readable by the sync.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+class DesiredStateSnapshot {
+
+    static class Acknowledgement {
+        public long fingerprint;
+        public long timestamp;
+    }
+
+    private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rw-------");
+
+    /* the wall clock time of the snapshot */
+    public long timestamp;
+    /* the wall clock time of the last full list, if any */
+    public Long fullListTimestamp;
+    public String kafkaClustersResourceVersion;
+    public List<ManagedKafka> desiredState = new ArrayList<>();
+    public Map<String, Acknowledgement> acknowledgedStatus = new HashMap<>();
+
+    static DesiredStateSnapshot read(Path path) throws IOException {
+        try (InputStream stream = new GZIPInputStream(Files.newInputStream(path))) {
+            return Serialization.jsonMapper().readValue(stream, DesiredStateSnapshot.class);
+        }
+    }
+
+    /**
+     * Write to a temporary file first, so that a crash does not leave a partial snapshot.  The
+     * temporary file is created readable only by the owner, before anything is written to it.
+     */
+    void write(Path path) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        // a leftover would keep its permissions
+        Files.deleteIfExists(temp);
+        FileAttribute<?>[] attributes = new FileAttribute<?>[0];
+        if (temp.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            attributes = new FileAttribute<?>[] {PosixFilePermissions.asFileAttribute(OWNER_ONLY)};
+        }
+        try (OutputStream stream = new GZIPOutputStream(Channels.newOutputStream(Files.newByteChannel(temp,
+                EnumSet.of(StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE), attributes)))) {
+            Serialization.jsonMapper().writeValue(stream, this);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+}
@@ -0,0 +1,96 @@
+package org.bf2.sync.controlplane;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.fabric8.kubernetes.api.model.ListMeta;
+import org.bf2.operator.resources.v1alpha1.ManagedKafka;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Incrementally reads a ManagedKafkaList so that only a single item is materialized at a time,
+ * rather than the whole list.
+ * <br>
+ * Each item is also given a fingerprint of its spec, labels and annotations as it is parsed, so
+ * that an unchanged item may be recognized later without serializing or comparing it again.
+ */
+class ManagedKafkaListReader {
+
+    private final ObjectMapper mapper;
+
+    ManagedKafkaListReader(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    /**
+     * Pass each item to the consumer as it is parsed.
+     *
+     * @return the list metadata, or null if there is none
+     */
+    ListMeta read(InputStream stream, Consumer<ManagedKafka> consumer) throws IOException {
+        return read(stream, (mk, fingerprint) -> consumer.accept(mk));
+    }
+
+    /**
+     * Pass each item and its {@link #fingerprint(JsonNode)} to the consumer as it is parsed.
+     *
+     * @return the list metadata, or null if there is none
+     */
+    ListMeta read(InputStream stream, BiConsumer<ManagedKafka, byte[]> consumer) throws IOException {
+        ListMeta metadata = null;
+        try (JsonParser parser = mapper.createParser(stream)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected a ManagedKafkaList object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if ("items".equals(field) && token == JsonToken.START_ARRAY) {
+                    while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                        if (token == null) {
+                            throw new JsonParseException(parser, "Unexpected end of ManagedKafkaList items");
+                        }
+                        if (token == JsonToken.START_OBJECT) {
+                            JsonNode item = parser.readValueAsTree();
+                            consumer.accept(mapper.treeToValue(item, ManagedKafka.class), fingerprint(item));
+                        }
+                    }
+                } else if ("metadata".equals(field) && token == JsonToken.START_OBJECT) {
+                    metadata = parser.readValueAs(ListMeta.class);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return metadata;
+    }
+
+    /**
+     * The SHA-1 of the spec, labels and annotations of the parsed item
+     */
+    static byte[] fingerprint(JsonNode item) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        JsonNode metadata = item.path("metadata");
+        for (JsonNode node : new JsonNode[] {item.path("spec"), metadata.path("labels"), metadata.path("annotations")}) {
+            digest.update(node.toString().getBytes(StandardCharsets.UTF_8));
+            // separates the parts
+            digest.update((byte) 0);
+        }
+        return digest.digest();
+    }
+
+}
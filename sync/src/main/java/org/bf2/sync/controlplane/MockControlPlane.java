@@ -1,5 +1,9 @@
 package org.bf2.sync.controlplane;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.fabric8.kubernetes.api.model.ListMetaBuilder;
+import io.fabric8.kubernetes.client.utils.Serialization;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.quarkus.arc.profile.UnlessBuildProfile;
 import io.quarkus.scheduler.Scheduled;
 import org.bf2.common.ConditionUtils;
@@ -20,17 +24,24 @@ import javax.inject.Inject;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 
 import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 @ApplicationScoped
 @UnlessBuildProfile("prod")
@@ -40,6 +51,9 @@ public class MockControlPlane implements ControlPlaneApi {
     @Inject
     Logger log;
 
+    @Inject
+    MeterRegistry meterRegistry;
+
     @ConfigProperty(name="sync.mock-control-plane.simulate", defaultValue = "false")
     boolean runSimulation;
 
@@ -55,10 +69,21 @@ public class MockControlPlane implements ControlPlaneApi {
 
     volatile ManagedKafkaAgent agent = ManagedKafkaAgentResourceClient.getDummyInstance();
     volatile ManagedKafkaAgentStatus agentStatus;
+    // changes with each agent update - used as the ETag
+    private AtomicLong agentRevision = new AtomicLong();
 
     // Unique Id for the clusters
     private AtomicInteger clusterIdGenerator = new AtomicInteger(1);
 
+    // emulation of a resourceVersion cursor over the kafkas
+    private AtomicLong revision = new AtomicLong();
+    Map<String, Long> kafkaRevisions = new ConcurrentHashMap<String, Long>();
+    private volatile long expiredRevision;
+
+    // when a change was made that has not yet been seen by the sync - to measure the propagation delay
+    Map<String, Long> unseenChanges = new ConcurrentHashMap<String, Long>();
+    private volatile Long unseenAgentChange;
+
     @Scheduled(every = "{poll.interval}")
     void loop() {
 
@@ -75,7 +100,7 @@ public class MockControlPlane implements ControlPlaneApi {
             for (int i = 0; i < maxKafkas; i++) {
                 ManagedKafka k = ManagedKafka.getDummyInstance(this.clusterIdGenerator.getAndIncrement());
                 log.infof("control plane::marking %s for addition", k.getId());
-                this.kafkas.put(k.getId(), k);
+                putKafka(k);
             }
         }
 
@@ -97,7 +122,7 @@ public class MockControlPlane implements ControlPlaneApi {
         if (this.kafkas.size() < maxKafkas && random.nextBoolean()) {
             ManagedKafka k = ManagedKafka.getDummyInstance(this.clusterIdGenerator.getAndIncrement());
             log.infof("control plane:: creating a new cluster %s ", k.getId());
-            this.kafkas.put(k.getId(), k);
+            putKafka(k);
         }
 
         log.info("--------------------------------------------------");
@@ -112,11 +137,37 @@ public class MockControlPlane implements ControlPlaneApi {
         if (mk != null && !mk.isMarkedForDeletion()) {
             log.infof("control plane:: marking cluster %s for deletion", mk.getId());
             mk.getSpec().setDeleted(true);
+            modified(id);
         } else {
             log.infof("control plane:: Is cluster %s already deleted?", id);
         }
     }
 
+    private void putKafka(ManagedKafka mk) {
+        this.kafkas.put(mk.getId(), mk);
+        modified(mk.getId());
+    }
+
+    private void modified(String id) {
+        this.kafkaRevisions.put(id, revision.incrementAndGet());
+        this.unseenChanges.putIfAbsent(id, System.nanoTime());
+    }
+
+    private void seen(String resource, Long changed) {
+        if (changed != null && meterRegistry != null) {
+            meterRegistry.timer("mock.control-plane.propagation", "resource", resource)
+                    .record(System.nanoTime() - changed, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Invalidate all of the resourceVersions handed out so far, which forces the
+     * next delta request into a full list.
+     */
+    public void expireResourceVersions() {
+        this.expiredRevision = revision.incrementAndGet();
+    }
+
     private boolean isDeleted(ManagedKafkaStatus status) {
         if (status == null || status.getConditions() == null) {
             return false;
@@ -132,14 +183,58 @@ public class MockControlPlane implements ControlPlaneApi {
     }
 
     @Override
-    public ManagedKafkaList getKafkaClusters(String id) {
-        log.info("control plane::getKafkaClusters <- Received");
-        return new ManagedKafkaList(kafkas.values());
+    public ManagedKafkaList getKafkaClusters(String id, String resourceVersion) {
+        log.infof("control plane::getKafkaClusters <- Received with resourceVersion %s", resourceVersion);
+        // read the revision first so that concurrent modifications are seen on the next request
+        long current = revision.get();
+        ManagedKafkaList result;
+        if (resourceVersion == null) {
+            result = new ManagedKafkaList(kafkas.values());
+        } else {
+            long since = parseRevision(resourceVersion);
+            if (since < expiredRevision || since > current) {
+                throw new WebApplicationException(Response.Status.GONE);
+            }
+            result = new ManagedKafkaList(kafkas.values()
+                    .stream()
+                    .filter(mk -> kafkaRevisions.getOrDefault(mk.getId(), Long.MAX_VALUE) > since)
+                    .collect(Collectors.toList()));
+        }
+        result.setMetadata(new ListMetaBuilder().withResourceVersion(String.valueOf(current)).build());
+        result.getItems().forEach(mk -> seen("ManagedKafka", unseenChanges.remove(mk.getId())));
+        recordList(resourceVersion == null ? "full" : "delta", result);
+        return result;
+    }
+
+    private long parseRevision(String resourceVersion) {
+        try {
+            return Long.parseLong(resourceVersion);
+        } catch (NumberFormatException e) {
+            throw new WebApplicationException(Response.Status.GONE);
+        }
+    }
+
+    private void recordList(String type, ManagedKafkaList result) {
+        if (meterRegistry == null) {
+            return;
+        }
+        meterRegistry.counter("mock.control-plane.kafkas.requests", "type", type).increment();
+        meterRegistry.summary("mock.control-plane.kafkas.items", "type", type).record(result.getItems().size());
+        try {
+            meterRegistry.summary("mock.control-plane.kafkas.bytes", "type", type)
+                    .record(Serialization.jsonMapper().writeValueAsBytes(result).length);
+        } catch (JsonProcessingException e) {
+            log.warn("Could not measure the ManagedKafka list size", e);
+        }
     }
 
     @Override
     public void updateKafkaClustersStatus(@PathParam(value = "id") String id, Map<String, ManagedKafkaStatus> statusMap) {
         log.infof("control plane:: updateKafkaClustersStatus <- Received from cluster %s, %s", id, statusMap);
+        if (meterRegistry != null) {
+            meterRegistry.counter("mock.control-plane.status.requests").increment();
+            meterRegistry.summary("mock.control-plane.status.items").record(statusMap.size());
+        }
 
         // clean up the deleted
         statusMap.forEach((k, v) -> {
@@ -150,6 +245,8 @@ public class MockControlPlane implements ControlPlaneApi {
                     log.infof("control plane:: Removing cluster %s as it is deleted", mk.getId());
                     this.kafkas.remove(k);
                     this.kafkaStatus.remove(k);
+                    this.kafkaRevisions.remove(k);
+                    this.unseenChanges.remove(k);
                 } else {
                     this.kafkaStatus.put(k, v);
                 }
@@ -157,17 +254,41 @@ public class MockControlPlane implements ControlPlaneApi {
         });
     }
 
+    // annotated so that the @GET of the interface is not inherited - the http endpoint is getIfNoneMatch
     @Override
+    @Produces(MediaType.APPLICATION_JSON)
     public ManagedKafkaAgent get(String id) {
+        Long changed = unseenAgentChange;
+        unseenAgentChange = null;
+        seen("ManagedKafkaAgent", changed);
         return agent;
     }
 
+    /**
+     * The conditional form of {@link #get(String)}, as sent by {@link ControlPlaneRestClient#getIfNoneMatch(String, String)}.
+     * This is also the http endpoint for the agent, so that the sync sees a 304 Not Modified when run against the mock.
+     */
+    @GET
+    @Path("/{id}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getIfNoneMatch(@PathParam("id") String id, @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
+        String entityTag = "\"" + agentRevision.get() + "\"";
+        boolean modified = !entityTag.equals(ifNoneMatch);
+        if (meterRegistry != null) {
+            meterRegistry.counter("mock.control-plane.agent.requests", "modified", String.valueOf(modified)).increment();
+        }
+        if (!modified) {
+            return Response.notModified().header(HttpHeaders.ETAG, entityTag).build();
+        }
+        return Response.ok(get(id)).header(HttpHeaders.ETAG, entityTag).build();
+    }
+
     @POST
     @Path("/{id}/kafkas")
     @Produces(MediaType.APPLICATION_JSON)
     @Consumes(MediaType.APPLICATION_JSON)
     public void createCluster(ManagedKafka mk) {
-        this.kafkas.put(mk.getId(), mk);
+        putKafka(mk);
         log.infof("control plane:: Received request to create/update ManagedKafka %s", mk.getId());
     }
 
@@ -186,6 +307,8 @@ public class MockControlPlane implements ControlPlaneApi {
     public void createAgent(ManagedKafkaAgent agent) {
         log.infof("control plane:: Received request to create agent %s", agent);
         this.agent = agent;
+        this.agentRevision.incrementAndGet();
+        this.unseenAgentChange = System.nanoTime();
     }
 
     @GET
@@ -0,0 +1,207 @@
+package org.bf2.sync.controlplane;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.ext.ReaderInterceptor;
+import javax.ws.rs.ext.ReaderInterceptorContext;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Negotiates gzip for the control plane responses and optionally compresses the request
+ * bodies, such as the status maps, that are at least the min-size.
+ * <br>
+ * The bytes on the wire and the uncompressed payload bytes are counted in both directions.
+ */
+@ApplicationScoped
+public class PayloadCompression implements ClientRequestFilter, WriterInterceptor, ReaderInterceptor {
+
+    static final String GZIP = "gzip";
+    static final String IDENTITY = "identity";
+
+    /**
+     * Counts the bytes read from the delegate
+     */
+    static class CountingInputStream extends FilterInputStream {
+        private final Counter[] counters;
+
+        CountingInputStream(InputStream in, Counter... counters) {
+            super(in);
+            this.counters = counters;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int result = super.read();
+            if (result != -1) {
+                count(1);
+            }
+            return result;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int result = super.read(b, off, len);
+            if (result > 0) {
+                count(result);
+            }
+            return result;
+        }
+
+        private void count(int bytes) {
+            for (Counter counter : counters) {
+                counter.increment(bytes);
+            }
+        }
+    }
+
+    /**
+     * Counts the bytes written to the delegate
+     */
+    static class CountingOutputStream extends FilterOutputStream {
+        private final Counter[] counters;
+
+        CountingOutputStream(OutputStream out, Counter... counters) {
+            super(out);
+            this.counters = counters;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count(1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count(len);
+        }
+
+        private void count(int bytes) {
+            for (Counter counter : counters) {
+                counter.increment(bytes);
+            }
+        }
+    }
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    @ConfigProperty(name = "control-plane.compression.response")
+    boolean compressResponses;
+
+    @ConfigProperty(name = "control-plane.compression.request")
+    boolean compressRequests;
+
+    @ConfigProperty(name = "control-plane.compression.request-min-size")
+    int requestMinSize;
+
+    private Counter sentGzip;
+    private Counter sentIdentity;
+    private Counter sentPayload;
+    private Counter receivedGzip;
+    private Counter receivedIdentity;
+    private Counter receivedPayload;
+
+    @PostConstruct
+    void onStart() {
+        sentGzip = wireCounter("sent", GZIP);
+        sentIdentity = wireCounter("sent", IDENTITY);
+        receivedGzip = wireCounter("received", GZIP);
+        receivedIdentity = wireCounter("received", IDENTITY);
+        sentPayload = payloadCounter("sent");
+        receivedPayload = payloadCounter("received");
+    }
+
+    private Counter wireCounter(String direction, String encoding) {
+        return Counter.builder("sync.control-plane.bytes")
+                .tag("direction", direction)
+                .tag("encoding", encoding)
+                .description("The control plane request and response body bytes on the wire")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    private Counter payloadCounter(String direction) {
+        return Counter.builder("sync.control-plane.payload.bytes")
+                .tag("direction", direction)
+                .description("The uncompressed control plane request and response body bytes")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void filter(ClientRequestContext requestContext) throws IOException {
+        if (compressResponses) {
+            requestContext.getHeaders().putSingle(HttpHeaders.ACCEPT_ENCODING, GZIP);
+        }
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        OutputStream original = context.getOutputStream();
+        // there is nothing to decide, so stream the body as is
+        // otherwise buffer the body to decide on the compression by size
+        ByteArrayOutputStream body = null;
+        if (compressRequests) {
+            body = new ByteArrayOutputStream();
+            context.setOutputStream(body);
+        } else {
+            context.setOutputStream(new CountingOutputStream(original, sentIdentity, sentPayload));
+        }
+        try {
+            context.proceed();
+        } finally {
+            context.setOutputStream(original);
+        }
+        if (body == null) {
+            return;
+        }
+        sentPayload.increment(body.size());
+
+        if (body.size() < requestMinSize) {
+            sentIdentity.increment(body.size());
+            body.writeTo(original);
+            return;
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.size() / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            body.writeTo(gzip);
+        }
+        context.getHeaders().putSingle(HttpHeaders.CONTENT_ENCODING, GZIP);
+        sentGzip.increment(compressed.size());
+        compressed.writeTo(original);
+    }
+
+    @Override
+    public Object aroundReadFrom(ReaderInterceptorContext context) throws IOException {
+        String encoding = context.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+        if (encoding != null && GZIP.equalsIgnoreCase(encoding.trim())) {
+            context.getHeaders().remove(HttpHeaders.CONTENT_ENCODING);
+            context.setInputStream(new CountingInputStream(
+                    new GZIPInputStream(new CountingInputStream(context.getInputStream(), receivedGzip)), receivedPayload));
+        } else {
+            context.setInputStream(new CountingInputStream(context.getInputStream(), receivedIdentity, receivedPayload));
+        }
+        return context.proceed();
+    }
+
+}
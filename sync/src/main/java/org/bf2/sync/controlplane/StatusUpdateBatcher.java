@@ -0,0 +1,211 @@
+package org.bf2.sync.controlplane;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.bf2.operator.resources.v1alpha1.ManagedKafkaStatus;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Collects ManagedKafka status updates over a short window and sends them as a
+ * single multi-entry request.
+ * <br>
+ * The latest status for an id wins.  Statuses are supplied lazily, so that the most
+ * recent local state is sent at flush time - a null status is not sent.
+ * Only a single flush is in progress at a time, so that the updates for an id are sent in order.
+ * A flush that finds another in progress does not wait, the one in progress checks again for pending work.
+ * <br>
+ * While the control plane circuit breaker is open the batch is kept and sending is deferred,
+ * a newer status for an id then sheds the deferred one.  After any other failure the batch is
+ * put back, and is sent with the next update.
+ */
+class StatusUpdateBatcher {
+
+    private final Executor executor;
+    private final Duration window;
+    private final int maxBatchSize;
+    private final Consumer<Map<String, ManagedKafkaStatus>> sender;
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private Map<String, Supplier<ManagedKafkaStatus>> pending = new LinkedHashMap<>();
+    private boolean flushScheduled;
+    private boolean deferred;
+
+    private final Counter coalesced;
+    private final Counter shed;
+    private final DistributionSummary batchSize;
+    private final Timer flushTimer;
+
+    StatusUpdateBatcher(Executor executor, MeterRegistry meterRegistry, Duration window, int maxBatchSize,
+            Consumer<Map<String, ManagedKafkaStatus>> sender) {
+        this.executor = executor;
+        this.window = window;
+        this.maxBatchSize = maxBatchSize;
+        this.sender = sender;
+
+        this.coalesced = Counter.builder("sync.status.coalesced")
+                .description("The number of status updates superseded by a newer update before being sent")
+                .register(meterRegistry);
+        this.shed = Counter.builder("sync.status.shed")
+                .tag("resource", "ManagedKafka")
+                .description("The number of status updates dropped for a newer update while the control plane was unavailable")
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("sync.status.batch.size")
+                .description("The number of statuses sent per request")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("sync.status.flush")
+                .description("The time spent sending a batch of statuses")
+                .register(meterRegistry);
+    }
+
+    void add(String id, Supplier<ManagedKafkaStatus> status) {
+        addAll(Map.of(id, status));
+    }
+
+    void addAll(Map<String, Supplier<ManagedKafkaStatus>> statuses) {
+        if (statuses.isEmpty()) {
+            return;
+        }
+        boolean schedule = false;
+        boolean full;
+        synchronized (this) {
+            for (Map.Entry<String, Supplier<ManagedKafkaStatus>> entry : statuses.entrySet()) {
+                if (pending.put(entry.getKey(), entry.getValue()) != null) {
+                    (deferred ? shed : coalesced).increment();
+                }
+            }
+            if (!flushScheduled) {
+                flushScheduled = true;
+                schedule = true;
+            }
+            // while deferred the scheduled flush will send everything
+            full = !deferred && pending.size() >= maxBatchSize;
+        }
+        if (full || (schedule && window.isZero())) {
+            executor.execute(this::flush);
+        } else if (schedule) {
+            CompletableFuture.delayedExecutor(window.toMillis(), TimeUnit.MILLISECONDS, executor).execute(this::flush);
+        }
+    }
+
+    /**
+     * The number of ids waiting to be sent
+     */
+    synchronized int getPending() {
+        return pending.size();
+    }
+
+    void flush() {
+        flushRequested.set(true);
+        while (flushRequested.get() && flushLock.tryLock()) {
+            try {
+                flushRequested.set(false);
+                if (!flushPending()) {
+                    return;
+                }
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @return false if sending was deferred
+     */
+    private boolean flushPending() {
+        Map<String, Supplier<ManagedKafkaStatus>> batch;
+        while ((batch = nextBatch()) != null) {
+            try {
+                send(batch);
+            } catch (CircuitBreakerOpenException e) {
+                defer(batch, e.getRetryAfter());
+                return false;
+            } catch (RuntimeException e) {
+                requeue(batch);
+                throw e;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Put back a batch that could not be sent.  The next update schedules the flush, rather
+     * than retrying immediately against a failing control plane.
+     */
+    private synchronized void requeue(Map<String, Supplier<ManagedKafkaStatus>> batch) {
+        // anything added since was taken is newer
+        batch.forEach((id, status) -> {
+            if (pending.putIfAbsent(id, status) != null) {
+                coalesced.increment();
+            }
+        });
+        flushScheduled = false;
+    }
+
+    private void defer(Map<String, Supplier<ManagedKafkaStatus>> batch, Duration retryAfter) {
+        synchronized (this) {
+            deferred = true;
+            flushScheduled = true;
+            // anything added since was taken is newer
+            batch.forEach((id, status) -> {
+                if (pending.putIfAbsent(id, status) != null) {
+                    shed.increment();
+                }
+            });
+        }
+        long delay = Math.max(window.toMillis(), retryAfter.toMillis());
+        CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS, executor).execute(this::flush);
+    }
+
+    private synchronized Map<String, Supplier<ManagedKafkaStatus>> nextBatch() {
+        if (pending.isEmpty()) {
+            flushScheduled = false;
+            return null;
+        }
+        if (pending.size() <= maxBatchSize) {
+            Map<String, Supplier<ManagedKafkaStatus>> result = pending;
+            pending = new LinkedHashMap<>();
+            return result;
+        }
+        Map<String, Supplier<ManagedKafkaStatus>> result = new LinkedHashMap<>();
+        for (Iterator<Map.Entry<String, Supplier<ManagedKafkaStatus>>> iter = pending.entrySet().iterator(); result.size() < maxBatchSize;) {
+            Map.Entry<String, Supplier<ManagedKafkaStatus>> entry = iter.next();
+            result.put(entry.getKey(), entry.getValue());
+            iter.remove();
+        }
+        return result;
+    }
+
+    private void send(Map<String, Supplier<ManagedKafkaStatus>> batch) {
+        Map<String, ManagedKafkaStatus> statuses = new HashMap<>();
+        batch.forEach((id, supplier) -> {
+            ManagedKafkaStatus status = supplier.get();
+            if (status != null) {
+                statuses.put(id, status);
+            }
+        });
+        if (statuses.isEmpty()) {
+            return;
+        }
+        flushTimer.record(() -> sender.accept(statuses));
+        batchSize.record(statuses.size());
+        synchronized (this) {
+            deferred = false;
+        }
+    }
+
+}
@@ -1,7 +1,10 @@
 package org.bf2.sync.informer;
 
+import io.fabric8.kubernetes.api.model.Namespace;
+import io.fabric8.kubernetes.api.model.NamespaceBuilder;
 import io.fabric8.kubernetes.api.model.Secret;
 import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
 import io.fabric8.kubernetes.client.informers.cache.Cache;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.quarkus.runtime.Startup;
@@ -13,24 +16,35 @@ import org.bf2.operator.resources.v1alpha1.ManagedKafka;
 import org.bf2.operator.resources.v1alpha1.ManagedKafkaAgent;
 import org.bf2.operator.resources.v1alpha1.ManagedKafkaCondition;
 import org.bf2.operator.resources.v1alpha1.ManagedKafkaCondition.Type;
+import org.bf2.sync.ChangeTracker;
 import org.bf2.sync.controlplane.ControlPlane;
+import org.jboss.logging.Logger;
 
 import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 @Startup
 @ApplicationScoped
 public class InformerManager implements LocalLookup {
 
+    private static Logger log = Logger.getLogger(InformerManager.class);
+
     @Inject
     KubernetesClient client;
 
     @Inject
     ControlPlane controlPlane;
 
+    @Inject
+    ChangeTracker changeTracker;
+
     @Inject
     MeterRegistry meterRegistry;
 
@@ -40,18 +54,30 @@ public class InformerManager implements LocalLookup {
     private ResourceInformer<ManagedKafka> managedKafkaInformer;
     private ResourceInformer<ManagedKafkaAgent> managedAgentInformer;
     private ResourceInformer<Secret> secretInformer;
+    private ResourceInformer<Namespace> namespaceInformer;
+
+    private Map<String, String> secretDigests = new ConcurrentHashMap<>();
 
     @PostConstruct
     protected void onStart() {
-        managedKafkaInformer = resourceInformerFactory.create(ManagedKafka.class, client.resources(ManagedKafka.class).inAnyNamespace(),
-                CustomResourceEventHandler.of(controlPlane::updateKafkaClusterStatus));
+        // the initial lists are independent, so they are performed concurrently
+        resourceInformerFactory.createConcurrently(
+                () -> managedKafkaInformer = resourceInformerFactory.create(ManagedKafka.class, client.resources(ManagedKafka.class).inAnyNamespace(),
+                        CustomResourceEventHandler.of((oldManagedKafka, newManagedKafka) -> {
+                            changeTracker.observed(newManagedKafka);
+                            controlPlane.updateKafkaClusterStatus(oldManagedKafka, newManagedKafka);
+                        })),
 
-        // for the Agent
-        managedAgentInformer = resourceInformerFactory.create(ManagedKafkaAgent.class, client.resources(ManagedKafkaAgent.class).inAnyNamespace(),
-                CustomResourceEventHandler.of(controlPlane::updateAgentStatus));
+                // for the Agent
+                () -> managedAgentInformer = resourceInformerFactory.create(ManagedKafkaAgent.class, client.resources(ManagedKafkaAgent.class).inAnyNamespace(),
+                        CustomResourceEventHandler.of(controlPlane::updateAgentStatus)),
 
-        secretInformer = resourceInformerFactory.create(Secret.class, client.secrets().inAnyNamespace().withLabels(OperandUtils.getMasterSecretLabel()),
-                null);
+                () -> secretInformer = resourceInformerFactory.create(Secret.class, client.secrets().inAnyNamespace().withLabels(OperandUtils.getMasterSecretLabel()),
+                        new SecretCacheHandler(secretDigests)),
+
+                // only the namespaces created by the sync are of interest
+                () -> namespaceInformer = resourceInformerFactory.create(Namespace.class, client.namespaces().withLabels(OperandUtils.getDefaultLabels()),
+                        null));
 
         meterRegistry.gauge("managedkafkas", this, (informer) -> {
             return informer.getLocalManagedKafkas().size();
@@ -66,6 +92,39 @@ public class InformerManager implements LocalLookup {
                             .isPresent())
                     .count();
         });
+
+        labelNamespaces();
+    }
+
+    /**
+     * The namespace informer only sees the namespaces with the default labels.  Namespaces created
+     * before those labels were applied are labeled once here, so that they are then seen.
+     */
+    void labelNamespaces() {
+        Set<String> unlabeled = managedKafkaInformer.getList()
+                .stream()
+                .map(mk -> mk.getMetadata().getNamespace())
+                .filter(namespace -> namespaceInformer.getByKey(namespace) == null)
+                .collect(Collectors.toSet());
+        if (unlabeled.isEmpty()) {
+            return;
+        }
+        for (Namespace namespace : client.namespaces().list().getItems()) {
+            String name = namespace.getMetadata().getName();
+            if (!unlabeled.contains(name) || namespace.getMetadata().getDeletionTimestamp() != null) {
+                continue;
+            }
+            log.infof("Adding the default labels to namespace %s", name);
+            try {
+                client.namespaces().withName(name).edit(n -> new NamespaceBuilder(n)
+                        .editMetadata()
+                        .addToLabels(OperandUtils.getDefaultLabels())
+                        .endMetadata()
+                        .build());
+            } catch (KubernetesClientException e) {
+                log.warnf(e, "Could not label namespace %s", name);
+            }
+        }
     }
     @Override
     public ManagedKafka getLocalManagedKafka(String metaNamespaceKey) {
@@ -87,7 +146,22 @@ public class InformerManager implements LocalLookup {
         return list.get(0);
     }
 
+    @Override
+    public Namespace getLocalNamespace(String name) {
+        return namespaceInformer.getByKey(name);
+    }
+
+    /**
+     * Get the cached Secret.  The managedFields and the last applied configuration annotation are not retained.
+     */
     public Secret getLocalSecret(String namespace, String name) {
         return secretInformer.getByKey(Cache.namespaceKeyFunc(namespace, name));
     }
+
+    /**
+     * Get the digest of the cached Secret data, or null if there is no cached Secret
+     */
+    public String getLocalSecretDigest(String namespace, String name) {
+        return secretDigests.get(Cache.namespaceKeyFunc(namespace, name));
+    }
 }
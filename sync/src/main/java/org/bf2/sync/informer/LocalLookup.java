@@ -1,5 +1,6 @@
 package org.bf2.sync.informer;
 
+import io.fabric8.kubernetes.api.model.Namespace;
 import io.fabric8.kubernetes.client.informers.cache.Cache;
 import org.bf2.operator.resources.v1alpha1.ManagedKafka;
 import org.bf2.operator.resources.v1alpha1.ManagedKafkaAgent;
@@ -20,4 +21,9 @@ public interface LocalLookup {
 
     ManagedKafkaAgent getLocalManagedKafkaAgent();
 
+    /**
+     * @return the namespace with the given name, only if it is managed by fleetshard
+     */
+    Namespace getLocalNamespace(String name);
+
 }
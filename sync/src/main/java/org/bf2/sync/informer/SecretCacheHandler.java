@@ -0,0 +1,48 @@
+package org.bf2.sync.informer;
+
+import io.fabric8.kubernetes.api.model.Secret;
+import io.fabric8.kubernetes.client.informers.ResourceEventHandler;
+import io.fabric8.kubernetes.client.informers.cache.Cache;
+import org.bf2.common.ResourcePruners;
+import org.bf2.sync.SecretManager;
+
+import java.util.Map;
+
+/**
+ * Slims the cached master Secrets as they are added to the informer cache and
+ * maintains a digest of each Secret's data.
+ * <br>
+ * The informer passes the cached instance to the handler, so the pruning applies to the cache.
+ * The cached instance is also copied by the {@link SecretManager} as the basis of a write, so the
+ * pruning only replaces the metadata fields and never modifies the existing lists or maps - a
+ * concurrent copy sees either the full or the pruned values.
+ */
+class SecretCacheHandler implements ResourceEventHandler<Secret> {
+
+    private final Map<String, String> digests;
+
+    SecretCacheHandler(Map<String, String> digests) {
+        this.digests = digests;
+    }
+
+    @Override
+    public void onAdd(Secret obj) {
+        prune(obj);
+        digests.put(Cache.metaNamespaceKeyFunc(obj), SecretManager.digest(obj));
+    }
+
+    @Override
+    public void onUpdate(Secret oldObj, Secret newObj) {
+        onAdd(newObj);
+    }
+
+    @Override
+    public void onDelete(Secret obj, boolean deletedFinalStateUnknown) {
+        digests.remove(Cache.metaNamespaceKeyFunc(obj));
+    }
+
+    static void prune(Secret secret) {
+        ResourcePruners.pruneMetadata(secret);
+    }
+
+}
@@ -2,24 +2,46 @@ package org.bf2.sync.informer;
 
 import io.fabric8.kubernetes.api.model.Secret;
 import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.informers.ResourceEventHandler;
 import io.quarkus.runtime.Quarkus;
 import io.quarkus.runtime.Startup;
-import io.quarkus.scheduler.Scheduled;
-import io.quarkus.scheduler.Scheduled.ConcurrentExecution;
+import org.bf2.common.ResourceInformerFactory;
+import org.bf2.sync.ExecutorServiceProvider;
 import org.eclipse.microprofile.config.ConfigProvider;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.config.spi.ConfigSource;
 import org.jboss.logging.Logger;
 
+import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
+import javax.inject.Named;
 
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+/**
+ * Watches the configuration secret and restarts when it changes, so that the new
+ * configuration is picked up.
+ * <br>
+ * The watch is on just the named secret.  The resourceVersion is compared first, and then
+ * the content, so that metadata only changes do not require a restart.  The control plane
+ * calls already queued are allowed to complete before exiting.  The control plane pool is shared,
+ * so it is not shut down - a barrier task is waited on instead.
+ */
 @Startup
 @ApplicationScoped
-public class SecretRestartHandler {
+public class SecretRestartHandler implements ResourceEventHandler<Secret> {
     private static final Pattern SECRET_PATTERN = Pattern.compile(".*\\[secret=[^/]*/[^/]*/([^/]*)/([^/]*)\\]");
 
     @Inject
@@ -28,43 +50,107 @@ public class SecretRestartHandler {
     @ConfigProperty(name="secret.name")
     String secretName;
 
+    @ConfigProperty(name="secret.restart.drain-timeout")
+    Duration drainTimeout;
+
     @Inject
     KubernetesClient client;
 
+    @Inject
+    ResourceInformerFactory resourceInformerFactory;
+
+    @Inject
+    @Named(ExecutorServiceProvider.CONTROL_PLANE)
+    ExecutorService controlPlaneExecutor;
+
+    Runnable exit = Quarkus::asyncExit;
+
     private volatile String resourceVersion;
     /*
      * track the uid to detect delete/add (there unfortunately doesn't seem
      * to be a hard guarantee about resourceVersions across uids)
      */
     private volatile String uid;
+    /*
+     * the content that was last seen, null if the resourceVersion was found from the config
+     */
+    private volatile Map<String, String> data;
+
+    private final AtomicBoolean restarting = new AtomicBoolean();
+
+    @PostConstruct
+    void onStart() {
+        // find from the config if possible
+        // see https://github.com/quarkusio/quarkus/issues/15247
+        for (ConfigSource configSource : ConfigProvider.getConfig().getConfigSources()) {
+            Matcher matcher = SECRET_PATTERN.matcher(configSource.getName());
+            if (!matcher.matches()) {
+                continue;
+            }
+            uid = matcher.group(1);
+            resourceVersion = matcher.group(2);
+            break;
+        }
+
+        resourceInformerFactory.create(Secret.class,
+                client.secrets().inNamespace(client.getNamespace()).withField("metadata.name", secretName), this);
+    }
+
+    @Override
+    public void onAdd(Secret secret) {
+        checkSecret(secret);
+    }
 
-    @Scheduled(every = "60s", concurrentExecution = ConcurrentExecution.SKIP)
-    public void checkSecret() {
-        Secret secret = client.secrets().inNamespace(client.getNamespace()).withName(secretName).get();
-        if (secret == null) {
+    @Override
+    public void onUpdate(Secret oldSecret, Secret newSecret) {
+        checkSecret(newSecret);
+    }
+
+    @Override
+    public void onDelete(Secret secret, boolean deletedFinalStateUnknown) {
+        // nothing to do until it is recreated
+    }
+
+    void checkSecret(Secret secret) {
+        if (!secretName.equals(secret.getMetadata().getName())) {
             return;
         }
         if (resourceVersion == null) {
-            // find from the config if possible
-            // see https://github.com/quarkusio/quarkus/issues/15247
-            for (ConfigSource configSource : ConfigProvider.getConfig().getConfigSources()) {
-                Matcher matcher = SECRET_PATTERN.matcher(configSource.getName());
-                if (!matcher.matches()) {
-                    continue;
-                }
-                uid = matcher.group(1);
-                resourceVersion = matcher.group(2);
-                break;
-            }
-
-            if (resourceVersion == null) {
-                resourceVersion = secret.getMetadata().getResourceVersion();
-                uid = secret.getMetadata().getUid();
+            resourceVersion = secret.getMetadata().getResourceVersion();
+            uid = secret.getMetadata().getUid();
+            data = secret.getData();
+            return;
+        }
+        if (resourceVersion.equals(secret.getMetadata().getResourceVersion())
+                && uid.equals(secret.getMetadata().getUid())) {
+            if (data == null) {
+                data = secret.getData();
             }
-        } else if (!resourceVersion.equals(secret.getMetadata().getResourceVersion())
-                    || !uid.equals(secret.getMetadata().getUid())) {
+            return;
+        }
+        if (data != null && uid.equals(secret.getMetadata().getUid()) && Objects.equals(data, secret.getData())) {
+            log.debugf("%s metadata changed, a restart is not required", secretName);
+            resourceVersion = secret.getMetadata().getResourceVersion();
+            return;
+        }
+        if (restarting.compareAndSet(false, true)) {
             log.info(secretName + " changed, requires a restart to pickup new configuration");
-            Quarkus.asyncExit();
+            // don't block the informer thread while draining
+            CompletableFuture.runAsync(this::drainAndExit);
+        }
+    }
+
+    private void drainAndExit() {
+        try {
+            // the queue is fifo, so the barrier runs only after the calls ahead of it
+            controlPlaneExecutor.submit(() -> {}).get(drainTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warnf("Control plane calls did not complete within %s", drainTimeout);
+        } catch (ExecutionException | RejectedExecutionException e) {
+            log.warnf(e, "Could not wait for the control plane calls to complete");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
+        exit.run();
     }
 }
@@ -0,0 +1,111 @@
+package org.bf2.sync;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AdaptivePollIntervalTest {
+
+    static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test public void testDecayAndReset() {
+        AdaptivePollInterval interval = new AdaptivePollInterval("test", registry, Duration.ofSeconds(1), Duration.ofSeconds(15), 0);
+        assertTrue(interval.isDue(0));
+
+        // idle polls back off to the ceiling
+        long now = 0;
+        long[] expected = {2, 4, 8, 15, 15};
+        for (long seconds : expected) {
+            interval.completed(now, false);
+            assertEquals(seconds * SECOND, interval.getIntervalNanos());
+            assertFalse(interval.isDue(now + seconds * SECOND - 1));
+            now += seconds * SECOND;
+            assertTrue(interval.isDue(now));
+        }
+        assertEquals(15, registry.get("sync.poll.interval").tag("resource", "test").timeGauge().value(TimeUnit.SECONDS));
+
+        // a change goes back to the minimum
+        interval.completed(now, true);
+        assertEquals(SECOND, interval.getIntervalNanos());
+        assertTrue(interval.isDue(now + SECOND));
+    }
+
+    @Test public void testJitter() {
+        AdaptivePollInterval interval = new AdaptivePollInterval("test", registry, Duration.ofSeconds(1), Duration.ofSeconds(10), 0.2);
+        for (int i = 0; i < 5; i++) {
+            interval.completed(0, false);
+        }
+        assertEquals(10 * SECOND, interval.getIntervalNanos());
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        for (int i = 0; i < 1000; i++) {
+            interval.completed(0, false);
+            long next = interval.getNextPollNanos();
+            min = Math.min(min, next);
+            max = Math.max(max, next);
+        }
+        assertTrue(min >= 8 * SECOND);
+        assertTrue(max <= 12 * SECOND);
+        assertTrue(max > min);
+    }
+
+    @Test public void testRetryAfter() {
+        AdaptivePollInterval interval = new AdaptivePollInterval("test", registry, Duration.ofSeconds(1), Duration.ofSeconds(15), 0);
+
+        // without retry-after errors back off
+        interval.failed(0, null);
+        assertEquals(2 * SECOND, interval.getNextPollNanos());
+
+        // retry-after is honoured even beyond the ceiling
+        interval.failed(0, Duration.ofSeconds(30));
+        assertEquals(30 * SECOND, interval.getNextPollNanos());
+
+        WebApplicationException e = new WebApplicationException(Response.status(429).header(HttpHeaders.RETRY_AFTER, "120").build());
+        assertEquals(Optional.of(Duration.ofSeconds(120)), AdaptivePollInterval.retryAfter(e));
+
+        String date = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC).plusMinutes(10));
+        e = new WebApplicationException(Response.status(Response.Status.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, date).build());
+        Duration delay = AdaptivePollInterval.retryAfter(e).get();
+        assertTrue(delay.compareTo(Duration.ofMinutes(9)) > 0 && delay.compareTo(Duration.ofMinutes(10)) <= 0);
+
+        e = new WebApplicationException(Response.status(Response.Status.INTERNAL_SERVER_ERROR).header(HttpHeaders.RETRY_AFTER, "120").build());
+        assertFalse(AdaptivePollInterval.retryAfter(e).isPresent());
+        assertFalse(AdaptivePollInterval.retryAfter(new IllegalStateException()).isPresent());
+    }
+
+    @Test public void testPollSkipsUntilDue() {
+        AdaptivePollInterval interval = new AdaptivePollInterval("test", registry, Duration.ofMinutes(1), Duration.ofMinutes(5), 0);
+        AtomicInteger polls = new AtomicInteger();
+
+        interval.poll(() -> polls.incrementAndGet() > 0);
+        interval.poll(() -> polls.incrementAndGet() > 0);
+        assertEquals(1, polls.get());
+
+        AdaptivePollInterval failing = new AdaptivePollInterval("failing", registry, Duration.ofMinutes(1), Duration.ofMinutes(5), 0);
+        assertThrows(IllegalStateException.class, () -> failing.poll(() -> {
+            throw new IllegalStateException();
+        }));
+        // the failure still schedules the next poll
+        failing.poll(() -> polls.incrementAndGet() > 0);
+        assertEquals(1, polls.get());
+    }
+
+}
@@ -1,5 +1,8 @@
 package org.bf2.sync;
 
+import io.fabric8.kubernetes.client.utils.Serialization;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.quarkus.test.junit.QuarkusTest;
 import io.quarkus.test.junit.TestProfile;
 import io.quarkus.test.junit.mockito.InjectMock;
@@ -8,15 +11,25 @@ import org.bf2.common.ManagedKafkaAgentResourceClient;
 import org.bf2.operator.resources.v1alpha1.ManagedKafkaAgent;
 import org.bf2.operator.resources.v1alpha1.ManagedKafkaAgentStatusBuilder;
 import org.bf2.sync.controlplane.ControlPlaneRestClient;
+import org.bf2.sync.controlplane.MockControlPlane;
 import org.eclipse.microprofile.rest.client.inject.RestClient;
+import org.jboss.logging.Logger;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
 import org.mockito.Mockito;
+import org.mockito.stubbing.Answer;
 
 import javax.inject.Inject;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @WithKubernetesTestServer
 @QuarkusTest
@@ -38,6 +51,31 @@ public class AgentPollerTest {
     @Inject
     DirectLocalLookup lookup;
 
+    @Inject
+    MeterRegistry meterRegistry;
+
+    /**
+     * Similar to what the rest client returns - a new agent instance is read from each response
+     */
+    static Answer<Response> asClientResponse(Supplier<Response> supplier) {
+        return invocation -> {
+            Response response = supplier.get();
+            Response clientResponse = Mockito.mock(Response.class);
+            Mockito.when(clientResponse.getStatus()).thenReturn(response.getStatus());
+            Mockito.when(clientResponse.getHeaderString(HttpHeaders.ETAG)).thenReturn(response.getHeaderString(HttpHeaders.ETAG));
+            if (response.getEntity() != null) {
+                String json = Serialization.asJson(response.getEntity());
+                Mockito.when(clientResponse.readEntity(ManagedKafkaAgent.class))
+                        .thenAnswer(i -> Serialization.unmarshal(json, ManagedKafkaAgent.class));
+            }
+            return clientResponse;
+        };
+    }
+
+    double agentUpdates(String result) {
+        return meterRegistry.counter("sync.agent.updates", "result", result).count();
+    }
+
     @Test
     public void testAddDelete() {
         assertNull(lookup.getLocalManagedKafkaAgent());
@@ -45,7 +83,9 @@ public class AgentPollerTest {
         ManagedKafkaAgent managedKafkaAgent = ManagedKafkaAgentResourceClient.getDummyInstance();
 
         Mockito.reset(controlPlaneRestClient);
-        Mockito.when(controlPlaneRestClient.get(CLUSTER_ID)).thenReturn(managedKafkaAgent);
+        // a control plane without ETag support
+        Mockito.when(controlPlaneRestClient.getIfNoneMatch(Mockito.eq(CLUSTER_ID), ArgumentMatchers.any()))
+                .thenAnswer(asClientResponse(() -> Response.ok(managedKafkaAgent).build()));
 
         managedKafkaAgentSync.loop(); // pick up the agent from the control plane
 
@@ -64,6 +104,54 @@ public class AgentPollerTest {
 
         assertEquals("abc", local.getSpec().getObservability().getAccessToken());
         assertNotNull(local.getStatus());
+
+        // the same spec is skipped
+        double skipped = agentUpdates("skipped");
+        assertFalse(managedKafkaAgentSync.loop());
+        assertEquals(skipped + 1, agentUpdates("skipped"));
+    }
+
+    @Test
+    public void testConditionalFetch() {
+        client.delete();
+        try {
+            MockControlPlane controlPlane = new MockControlPlane();
+            controlPlane.log = Logger.getLogger(MockControlPlane.class);
+            SimpleMeterRegistry registry = new SimpleMeterRegistry();
+            controlPlane.meterRegistry = registry;
+            controlPlane.createAgent(ManagedKafkaAgentResourceClient.getDummyInstance());
+
+            Mockito.reset(controlPlaneRestClient);
+            Mockito.when(controlPlaneRestClient.getIfNoneMatch(Mockito.eq(CLUSTER_ID), ArgumentMatchers.any()))
+                    .thenAnswer(i -> asClientResponse(() -> controlPlane.getIfNoneMatch(i.getArgument(0), i.getArgument(1))).answer(i));
+
+            double applied = agentUpdates("applied");
+            double skipped = agentUpdates("skipped");
+
+            assertTrue(managedKafkaAgentSync.loop());
+            assertEquals(applied + 1, agentUpdates("applied"));
+
+            // nothing changed, so no entity is sent and the local agent is not compared
+            for (int i = 0; i < 10; i++) {
+                assertFalse(managedKafkaAgentSync.loop());
+            }
+            assertEquals(skipped + 10, agentUpdates("skipped"));
+            assertEquals(10, registry.counter("mock.control-plane.agent.requests", "modified", "false").count());
+
+            ManagedKafkaAgent changed = ManagedKafkaAgentResourceClient.getDummyInstance();
+            changed.getSpec().getObservability().setAccessToken("xyz");
+            controlPlane.createAgent(changed);
+            assertTrue(managedKafkaAgentSync.loop());
+            assertEquals(applied + 2, agentUpdates("applied"));
+            assertEquals("xyz", lookup.getLocalManagedKafkaAgent().getSpec().getObservability().getAccessToken());
+
+            // a local removal is still noticed without a remote change
+            client.delete();
+            assertTrue(managedKafkaAgentSync.loop());
+            assertNotNull(lookup.getLocalManagedKafkaAgent());
+        } finally {
+            client.delete();
+        }
     }
 
 }
@@ -0,0 +1,156 @@
+package org.bf2.sync;
+
+import io.fabric8.kubernetes.client.utils.Serialization;
+import org.bf2.operator.ManagedKafkaKeys.Annotations;
+import org.bf2.operator.resources.v1alpha1.ManagedKafka;
+import org.bf2.sync.controlplane.ControlPlane;
+import org.bf2.sync.informer.InformerManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class ChangeDetectionTest {
+
+    private static final int INSTANCES = 5000;
+
+    ManagedKafkaSync sync;
+    List<ManagedKafka> originals;
+    List<ManagedKafka> locals;
+    Map<ManagedKafka, byte[]> fingerprints;
+
+    @BeforeEach
+    public void beforeEach() {
+        fingerprints = new IdentityHashMap<>();
+        sync = new ManagedKafkaSync();
+        sync.controlPlane = new ControlPlane() {
+            @Override
+            public byte[] getDesiredFingerprint(ManagedKafka remoteManagedKafka) {
+                return fingerprints.get(remoteManagedKafka);
+            }
+        };
+        sync.secretManager = new SecretManager();
+        sync.secretManager.informerManager = Mockito.mock(InformerManager.class);
+
+        originals = new ArrayList<>();
+        locals = new ArrayList<>();
+        for (int i = 0; i < INSTANCES; i++) {
+            ManagedKafka remote = ManagedKafka.getDummyInstance(i);
+            originals.add(remote);
+            ManagedKafka local = sync.secretManager.removeSecretsFromManagedKafka(remote);
+            sync.secretManager.calculateMasterSecretDigest(local, sync.secretManager.buildSecret(remote));
+            local.getMetadata().setUid("uid-" + i);
+            local.getMetadata().setResourceVersion("1");
+            local.getMetadata().setGeneration(1L);
+            locals.add(local);
+        }
+    }
+
+    /**
+     * Each poll deserializes new remote instances
+     */
+    private List<ManagedKafka> poll() {
+        List<ManagedKafka> remotes = new ArrayList<>();
+        for (int i = 0; i < INSTANCES; i++) {
+            remotes.add(parsed(originals.get(i)));
+        }
+        return remotes;
+    }
+
+    /**
+     * Similar to the list reader - the fingerprint is taken once when the remote is parsed
+     */
+    private ManagedKafka parsed(ManagedKafka remote) {
+        String json = Serialization.asJson(remote);
+        ManagedKafka result = Serialization.unmarshal(json, ManagedKafka.class);
+        try {
+            fingerprints.put(result, MessageDigest.getInstance("SHA-1").digest(json.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        return result;
+    }
+
+    private long changedAllocations(List<ManagedKafka> remotes) {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long start = bean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < INSTANCES; i++) {
+            assertFalse(sync.changed(remotes.get(i), locals.get(i)));
+        }
+        return bean.getThreadAllocatedBytes(threadId) - start;
+    }
+
+    @Test
+    public void testUnchangedDoesNotCopy() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+
+        List<ManagedKafka> first = poll();
+        List<ManagedKafka> second = poll();
+
+        long full = changedAllocations(first);
+        long cached = changedAllocations(second);
+
+        // the full comparison copies each instance and computes a digest, the cached one
+        // should be nearly allocation free
+        assertTrue(cached * 20 < full, () -> String.format("cached %s bytes, full %s bytes", cached, full));
+    }
+
+    @Test
+    public void testChangesAfterCaching() {
+        List<ManagedKafka> remotes = poll();
+        for (int i = 0; i < INSTANCES; i++) {
+            assertFalse(sync.changed(remotes.get(i), locals.get(i)));
+        }
+
+        // remote spec change
+        ManagedKafka remote = Serialization.clone(remotes.get(0));
+        remote.getSpec().getVersions().setKafka("2.8.0");
+        assertTrue(sync.changed(parsed(remote), locals.get(0)));
+
+        // remote secret change
+        remote = Serialization.clone(remotes.get(1));
+        remote.getSpec().getOauth().setClientSecret("other");
+        assertTrue(sync.changed(parsed(remote), locals.get(1)));
+
+        // remote annotation change
+        remote = Serialization.clone(remotes.get(2));
+        remote.getMetadata().getAnnotations().put("x", "y");
+        assertTrue(sync.changed(parsed(remote), locals.get(2)));
+
+        // local change without a matching remote change
+        ManagedKafka local = Serialization.clone(locals.get(3));
+        local.getMetadata().setResourceVersion("2");
+        local.getMetadata().setGeneration(2L);
+        local.getSpec().getVersions().setKafka("2.8.0");
+        assertTrue(sync.changed(remotes.get(3), local));
+
+        // a local status update does not invalidate the cached comparison
+        local = Serialization.clone(locals.get(4));
+        local.getMetadata().setResourceVersion("2");
+        assertFalse(sync.changed(remotes.get(4), local));
+
+        // a local annotation edit does not bump the generation
+        local = Serialization.clone(locals.get(5));
+        local.getMetadata().getAnnotations().put(Annotations.MASTER_SECRET_DIGEST, "other");
+        assertTrue(sync.changed(remotes.get(5), local));
+
+        // nor does a local label edit
+        local = Serialization.clone(locals.get(6));
+        local.getMetadata().setLabels(Map.of("x", "y"));
+        assertTrue(sync.changed(remotes.get(6), local));
+    }
+
+}
@@ -5,6 +5,7 @@ import io.quarkus.test.Mock;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.inject.Produces;
+import javax.inject.Named;
 
 import java.util.concurrent.ExecutorService;
 
@@ -15,7 +16,14 @@ public class DirectExecutorServiceProvider {
     ExecutorService direct = MoreExecutors.newDirectExecutorService();
 
     @Produces
-    public ExecutorService executorService() {
+    @Named(ExecutorServiceProvider.RECONCILE)
+    public ExecutorService reconcileExecutorService() {
+        return direct;
+    }
+
+    @Produces
+    @Named(ExecutorServiceProvider.CONTROL_PLANE)
+    public ExecutorService controlPlaneExecutorService() {
         return direct;
     }
 
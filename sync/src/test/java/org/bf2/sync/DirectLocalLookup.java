@@ -1,5 +1,6 @@
 package org.bf2.sync;
 
+import io.fabric8.kubernetes.api.model.Namespace;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.quarkus.test.Mock;
 import org.bf2.common.ManagedKafkaResourceClient;
@@ -46,4 +47,9 @@ public class DirectLocalLookup implements LocalLookup {
         return items.get(0);
     }
 
+    @Override
+    public Namespace getLocalNamespace(String name) {
+        return kubeClient.namespaces().withName(name).get();
+    }
+
 }
@@ -0,0 +1,69 @@
+package org.bf2.sync;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ExecutorServiceProviderTest {
+
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    ExecutorServiceProvider provider;
+
+    @BeforeEach
+    public void beforeEach() {
+        provider = new ExecutorServiceProvider();
+        provider.log = Logger.getLogger(ExecutorServiceProvider.class);
+        provider.meterRegistry = registry;
+        provider.reconcileThreads = 2;
+        provider.reconcileQueueSize = 100;
+        provider.controlPlaneThreads = 2;
+        provider.controlPlaneQueueSize = 100;
+        provider.init();
+    }
+
+    @AfterEach
+    public void afterEach() {
+        provider.shutdown();
+    }
+
+    @Test public void testStalledControlPlaneDoesNotDelayCreation() throws InterruptedException {
+        CountDownLatch stalled = new CountDownLatch(1);
+        ExecutorService controlPlane = provider.controlPlaneExecutorService();
+
+        // fill the control plane pool and its queue with status calls that do not return
+        for (int i = 0; i < 110; i++) {
+            controlPlane.execute(() -> {
+                try {
+                    stalled.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        assertEquals(100, registry.get("executor.queued").tag("work", ExecutorServiceProvider.CONTROL_PLANE).gauge().value());
+        assertEquals(6, registry.get("executor.rejected").tag("work", ExecutorServiceProvider.CONTROL_PLANE).counter().count());
+
+        // local creation still proceeds promptly
+        KeyedWorkQueue workQueue = new KeyedWorkQueue("ManagedKafka", provider.reconcileExecutorService(), registry,
+                Duration.ofMillis(10), Duration.ofMillis(100), 0);
+        CountDownLatch created = new CountDownLatch(10);
+        for (int i = 0; i < 10; i++) {
+            workQueue.add("mk-" + i, created::countDown);
+        }
+        assertTrue(created.await(1, TimeUnit.SECONDS));
+        assertEquals(0, registry.get("executor.rejected").tag("work", ExecutorServiceProvider.RECONCILE).counter().count());
+
+        stalled.countDown();
+    }
+
+}
@@ -0,0 +1,178 @@
+package org.bf2.sync;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class KeyedWorkQueueTest {
+
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    ExecutorService executor = Executors.newFixedThreadPool(5);
+
+    @AfterEach
+    public void afterEach() {
+        executor.shutdownNow();
+    }
+
+    KeyedWorkQueue newQueue(int maxRetries) {
+        return new KeyedWorkQueue("test", executor, registry, Duration.ofMillis(10), Duration.ofMillis(100), maxRetries);
+    }
+
+    @Test public void testBurstIsCoalesced() throws InterruptedException {
+        KeyedWorkQueue queue = newQueue(0);
+
+        // block the workers, similar to a burst of triggers after a control plane outage
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(5);
+        for (int i = 0; i < 5; i++) {
+            queue.add("blocker" + i, () -> {
+                started.countDown();
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        int keys = 1000;
+        Map<String, AtomicInteger> runs = new ConcurrentHashMap<>();
+        Map<String, Integer> lastValue = new ConcurrentHashMap<>();
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < keys; i++) {
+                String key = "key" + i;
+                int value = round;
+                queue.add(key, () -> {
+                    runs.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+                    lastValue.put(key, value);
+                });
+            }
+        }
+        assertEquals(keys, queue.getDepth());
+
+        blocked.countDown();
+        waitForEmpty(queue);
+
+        assertEquals(keys, runs.size());
+        // each key should have been processed once with the latest item
+        assertTrue(runs.values().stream().allMatch(count -> count.get() == 1));
+        assertTrue(lastValue.values().stream().allMatch(value -> value == 9));
+        assertEquals(keys * 10 + 5, registry.counter("sync.workqueue.adds", "name", "test").count());
+        assertEquals(keys * 9, registry.counter("sync.workqueue.superseded", "name", "test").count());
+        assertEquals(keys + 5, registry.timer("sync.workqueue.latency", "name", "test").count());
+    }
+
+    @Test public void testNoConcurrentProcessingOfKey() throws InterruptedException {
+        KeyedWorkQueue queue = newQueue(0);
+        AtomicBoolean running = new AtomicBoolean();
+        AtomicBoolean concurrent = new AtomicBoolean();
+        AtomicInteger runs = new AtomicInteger();
+
+        for (int i = 0; i < 100; i++) {
+            queue.add("key", () -> {
+                if (!running.compareAndSet(false, true)) {
+                    concurrent.set(true);
+                }
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                runs.incrementAndGet();
+                running.set(false);
+            });
+        }
+        waitForEmpty(queue);
+
+        assertFalse(concurrent.get());
+        assertTrue(runs.get() < 100);
+    }
+
+    @Test public void testRetryWithBackoff() throws InterruptedException {
+        KeyedWorkQueue queue = newQueue(3);
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1);
+
+        queue.add("key", () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new IllegalStateException("failed");
+            }
+            done.countDown();
+        });
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(3, attempts.get());
+        assertEquals(2, registry.counter("sync.workqueue.retries", "name", "test").count());
+
+        assertEquals(Duration.ofMillis(10), queue.backoff(1));
+        assertEquals(Duration.ofMillis(40), queue.backoff(3));
+        assertEquals(Duration.ofMillis(100), queue.backoff(5));
+    }
+
+    @Test public void testRejectedDispatchIsRetried() throws InterruptedException {
+        // rejects the first few tasks, similar to a full pool queue
+        AtomicInteger rejections = new AtomicInteger(3);
+        Executor rejecting = task -> {
+            if (rejections.getAndDecrement() > 0) {
+                throw new RejectedExecutionException();
+            }
+            executor.execute(task);
+        };
+        KeyedWorkQueue queue = new KeyedWorkQueue("test", rejecting, registry, Duration.ofMillis(10), Duration.ofMillis(100), 0);
+
+        AtomicInteger runs = new AtomicInteger();
+        queue.add("key", runs::incrementAndGet);
+        // superseding the pending key must not lose it
+        queue.add("key", runs::incrementAndGet);
+        waitForEmpty(queue);
+
+        assertEquals(1, runs.get());
+        assertEquals(3, registry.counter("sync.workqueue.rejected", "name", "test").count());
+    }
+
+    @Test public void testDroppedKeyIsReported() throws InterruptedException {
+        Set<String> dropped = ConcurrentHashMap.newKeySet();
+        CountDownLatch done = new CountDownLatch(1);
+        KeyedWorkQueue queue = new KeyedWorkQueue("test", executor, registry, Duration.ofMillis(10), Duration.ofMillis(100), 1,
+                key -> {
+                    dropped.add(key);
+                    done.countDown();
+                });
+
+        queue.add("key", () -> {
+            throw new IllegalStateException();
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        assertEquals(Set.of("key"), dropped);
+        assertTrue(queue.isEmpty());
+        assertEquals(1, registry.counter("sync.workqueue.dropped", "name", "test").count());
+    }
+
+    private void waitForEmpty(KeyedWorkQueue queue) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!queue.isEmpty()) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+}
@@ -1,6 +1,8 @@
 package org.bf2.sync;
 
+import io.fabric8.kubernetes.api.model.ListMetaBuilder;
 import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.utils.Serialization;
 import io.quarkus.test.junit.QuarkusTest;
 import io.quarkus.test.junit.TestProfile;
 import io.quarkus.test.junit.mockito.InjectMock;
@@ -18,9 +20,15 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.mockito.stubbing.Answer;
 
 import javax.inject.Inject;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -70,7 +78,7 @@ public class PollerTest {
         ManagedKafka managedKafka = exampleManagedKafka();
         managedKafka.getMetadata().setLabels(Map.of(ManagedKafka.DEPLOYMENT_TYPE, ManagedKafka.RESERVED_DEPLOYMENT_TYPE));
 
-        Mockito.when(controlPlaneRestClient.getKafkaClusters(CLUSTER_ID)).thenReturn(new ManagedKafkaList(Collections.singletonList(managedKafka)));
+        Mockito.when(controlPlaneRestClient.streamKafkaClusters(CLUSTER_ID, null)).thenAnswer(asStream(new ManagedKafkaList(Collections.singletonList(managedKafka))));
         managedKafkaSync.syncKafkaClusters();
 
         List<ManagedKafka> items = lookup.getLocalManagedKafkas();
@@ -78,12 +86,52 @@ public class PollerTest {
         assertFalse(items.get(0).getSpec().isDeleted());
         assertTrue(items.get(0).isReserveDeployment());
 
-        Mockito.when(controlPlaneRestClient.getKafkaClusters(CLUSTER_ID)).thenReturn(new ManagedKafkaList(Collections.emptyList()));
+        Mockito.when(controlPlaneRestClient.streamKafkaClusters(CLUSTER_ID, null)).thenAnswer(asStream(new ManagedKafkaList(Collections.emptyList())));
         managedKafkaSync.syncKafkaClusters();
         items = lookup.getLocalManagedKafkas();
         assertTrue(items.isEmpty());
     }
 
+    @Test
+    public void testDeltaPoll() {
+        ManagedKafka managedKafka = exampleManagedKafka();
+        managedKafka.getMetadata().setLabels(Map.of(ManagedKafka.DEPLOYMENT_TYPE, ManagedKafka.RESERVED_DEPLOYMENT_TYPE));
+
+        // without a resourceVersion the first poll must be a full list
+        Mockito.when(controlPlaneRestClient.streamKafkaClusters(CLUSTER_ID, null)).thenAnswer(asStream(withResourceVersion(new ManagedKafkaList(Collections.singletonList(managedKafka)), "1")));
+        managedKafkaSync.syncKafkaClusters(false);
+        assertEquals(1, lookup.getLocalManagedKafkas().size());
+
+        // an empty delta means nothing changed, it must not be treated as a removal
+        Mockito.when(controlPlaneRestClient.streamKafkaClusters(CLUSTER_ID, "1")).thenAnswer(asStream(withResourceVersion(new ManagedKafkaList(), "2")));
+        managedKafkaSync.syncKafkaClusters(false);
+        Mockito.verify(controlPlaneRestClient).streamKafkaClusters(CLUSTER_ID, "1");
+        assertEquals(1, lookup.getLocalManagedKafkas().size());
+
+        // an expired resourceVersion should fall back to a full list, which processes the removal
+        Mockito.when(controlPlaneRestClient.streamKafkaClusters(CLUSTER_ID, "2")).thenThrow(new WebApplicationException(Response.Status.GONE));
+        Mockito.when(controlPlaneRestClient.streamKafkaClusters(CLUSTER_ID, null)).thenAnswer(asStream(withResourceVersion(new ManagedKafkaList(), "3")));
+        managedKafkaSync.syncKafkaClusters(false);
+        Mockito.verify(controlPlaneRestClient).streamKafkaClusters(CLUSTER_ID, "2");
+        assertTrue(lookup.getLocalManagedKafkas().isEmpty());
+
+        // reset the resourceVersion for the other tests
+        Mockito.when(controlPlaneRestClient.streamKafkaClusters(CLUSTER_ID, null)).thenAnswer(asStream(new ManagedKafkaList()));
+        managedKafkaSync.syncKafkaClusters();
+    }
+
+    /**
+     * Respond with the list serialized at the time of the call, as the rest client would
+     */
+    static Answer<InputStream> asStream(ManagedKafkaList list) {
+        return invocation -> new ByteArrayInputStream(Serialization.asJson(list).getBytes(StandardCharsets.UTF_8));
+    }
+
+    static ManagedKafkaList withResourceVersion(ManagedKafkaList list, String resourceVersion) {
+        list.setMetadata(new ListMetaBuilder().withResourceVersion(resourceVersion).build());
+        return list;
+    }
+
     @Test
     public void testAddDelete() {
         ManagedKafka managedKafka = exampleManagedKafka();
@@ -93,7 +141,7 @@ public class PollerTest {
 
         assertNull(controlPlane.getDesiredState(ControlPlane.managedKafkaKey(managedKafka)));
 
-        Mockito.when(controlPlaneRestClient.getKafkaClusters(CLUSTER_ID)).thenReturn(new ManagedKafkaList(Collections.singletonList(managedKafka)));
+        Mockito.when(controlPlaneRestClient.streamKafkaClusters(CLUSTER_ID, null)).thenAnswer(asStream(new ManagedKafkaList(Collections.singletonList(managedKafka))));
         managedKafkaSync.syncKafkaClusters();
 
         items = lookup.getLocalManagedKafkas();
@@ -118,7 +166,7 @@ public class PollerTest {
         ManagedKafka nextPlacement = exampleManagedKafka();
         nextPlacement.setPlacementId("xyz");
         nextPlacement.getSpec().getVersions().setStrimzi("?");
-        Mockito.when(controlPlaneRestClient.getKafkaClusters(CLUSTER_ID)).thenReturn(new ManagedKafkaList(Arrays.asList(managedKafka, nextPlacement)));
+        Mockito.when(controlPlaneRestClient.streamKafkaClusters(CLUSTER_ID, null)).thenAnswer(asStream(new ManagedKafkaList(Arrays.asList(managedKafka, nextPlacement))));
         managedKafkaSync.syncKafkaClusters();
         //should still be a single placement, and it should be the old one
         items = lookup.getLocalManagedKafkas();
@@ -127,7 +175,7 @@ public class PollerTest {
 
         // update the profile type
         managedKafka = new ManagedKafkaBuilder(managedKafka).editOrNewMetadata().addToLabels(ManagedKafka.PROFILE_TYPE, "anything").endMetadata().build();
-        Mockito.when(controlPlaneRestClient.getKafkaClusters(CLUSTER_ID)).thenReturn(new ManagedKafkaList(Arrays.asList(managedKafka)));
+        Mockito.when(controlPlaneRestClient.streamKafkaClusters(CLUSTER_ID, null)).thenAnswer(asStream(new ManagedKafkaList(Arrays.asList(managedKafka))));
         managedKafkaSync.syncKafkaClusters();
         items = lookup.getLocalManagedKafkas();
         // should still be one instance, but it's profile type has been updated
@@ -135,12 +183,12 @@ public class PollerTest {
         assertEquals("anything", items.get(0).getMetadata().getLabels().get(ManagedKafka.PROFILE_TYPE));
 
         // try to remove before marked as deleted, should not be successful
-        Mockito.when(controlPlaneRestClient.getKafkaClusters(CLUSTER_ID)).thenReturn(new ManagedKafkaList());
+        Mockito.when(controlPlaneRestClient.streamKafkaClusters(CLUSTER_ID, null)).thenAnswer(asStream(new ManagedKafkaList()));
         managedKafkaSync.syncKafkaClusters();
         items = lookup.getLocalManagedKafkas();
         assertEquals(1, items.size());
 
-        Mockito.when(controlPlaneRestClient.getKafkaClusters(CLUSTER_ID)).thenReturn(new ManagedKafkaList(Arrays.asList(managedKafka, nextPlacement)));
+        Mockito.when(controlPlaneRestClient.streamKafkaClusters(CLUSTER_ID, null)).thenAnswer(asStream(new ManagedKafkaList(Arrays.asList(managedKafka, nextPlacement))));
         managedKafka.getSpec().setDeleted(true);
         managedKafkaSync.syncKafkaClusters();
         items = lookup.getLocalManagedKafkas();
@@ -149,7 +197,7 @@ public class PollerTest {
         assertTrue(controlPlane.getDesiredState(ControlPlane.managedKafkaKey(managedKafka)).getSpec().isDeleted());
 
         // final removal
-        Mockito.when(controlPlaneRestClient.getKafkaClusters(CLUSTER_ID)).thenReturn(new ManagedKafkaList());
+        Mockito.when(controlPlaneRestClient.streamKafkaClusters(CLUSTER_ID, null)).thenAnswer(asStream(new ManagedKafkaList()));
         managedKafkaSync.syncKafkaClusters();
         items = lookup.getLocalManagedKafkas();
         assertEquals(0, items.size());
@@ -158,7 +206,7 @@ public class PollerTest {
         assertNull(controlPlane.getDesiredState(ControlPlane.managedKafkaKey(managedKafka)));
 
         // if it shows up again need to inform the control plane delete is still needed
-        Mockito.when(controlPlaneRestClient.getKafkaClusters(CLUSTER_ID)).thenReturn(new ManagedKafkaList(Collections.singletonList(managedKafka)));
+        Mockito.when(controlPlaneRestClient.streamKafkaClusters(CLUSTER_ID, null)).thenAnswer(asStream(new ManagedKafkaList(Collections.singletonList(managedKafka))));
         managedKafkaSync.syncKafkaClusters();
 
         // expect there to be a status about the deletion
@@ -0,0 +1,356 @@
+package org.bf2.sync;
+
+import io.fabric8.kubernetes.client.server.mock.KubernetesCrudDispatcher;
+import io.fabric8.kubernetes.client.server.mock.KubernetesMockServer;
+import io.fabric8.kubernetes.client.utils.Serialization;
+import io.fabric8.mockwebserver.Context;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.test.common.QuarkusTestResourceLifecycleManager;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.TestProfile;
+import io.quarkus.test.junit.mockito.InjectMock;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.bf2.common.ConditionUtils;
+import org.bf2.common.ManagedKafkaResourceClient;
+import org.bf2.operator.resources.v1alpha1.ManagedKafka;
+import org.bf2.operator.resources.v1alpha1.ManagedKafkaCondition;
+import org.bf2.operator.resources.v1alpha1.ManagedKafkaCondition.Reason;
+import org.bf2.operator.resources.v1alpha1.ManagedKafkaCondition.Status;
+import org.bf2.operator.resources.v1alpha1.ManagedKafkaCondition.Type;
+import org.bf2.operator.resources.v1alpha1.ManagedKafkaStatusBuilder;
+import org.bf2.sync.controlplane.ControlPlaneRestClient;
+import org.bf2.sync.controlplane.MockControlPlane;
+import org.eclipse.microprofile.rest.client.inject.RestClient;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import javax.inject.Inject;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives the sync against the {@link MockControlPlane} and a fabric8 mock server with an artificial
+ * response latency, then writes a json report of each poll cycle.
+ * <br>
+ * The defaults are small enough for the regular build.  For a real measurement use something like:
+ * <pre>
+ * mvn test -pl sync -Dtest=ScaleSimulationTest -Dscale.instances=5000 -Dscale.cycles=10 -Dscale.churn=0.05 -Dscale.latency-ms=20
+ * </pre>
+ * <ul>
+ * <li>scale.instances - the initial fleet size
+ * <li>scale.cycles - the number of poll cycles after the initial one
+ * <li>scale.churn - the fraction of the fleet created, deleted and given a new status in each cycle
+ * <li>scale.latency-ms - the delay added to each kubernetes api request
+ * <li>scale.report - where to write the report, target/scale-report.json by default
+ * </ul>
+ * As with the other sync tests the work runs on direct executors and the local lookups go to the
+ * api server, so the reads per cycle are higher than with informers.
+ */
+@QuarkusTest
+@TestProfile(ScaleSimulationTest.ScaleProfile.class)
+public class ScaleSimulationTest {
+
+    static final String CLUSTER_ID = "007";
+
+    static final int INSTANCES = Integer.getInteger("scale.instances", 100);
+    static final int CYCLES = Integer.getInteger("scale.cycles", 3);
+    static final double CHURN = Double.parseDouble(System.getProperty("scale.churn", "0.1"));
+    static final long LATENCY_MS = Long.getLong("scale.latency-ms", 0);
+    static final String REPORT = System.getProperty("scale.report", "target/scale-report.json");
+
+    public static class ScaleProfile extends MockSyncProfile {
+
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            Map<String, String> overrides = new HashMap<>(super.getConfigOverrides());
+            // per instance logging would dominate the measurement
+            overrides.put("quarkus.log.category.\"org.bf2\".level", "WARN");
+            return overrides;
+        }
+
+        @Override
+        public List<TestResourceEntry> testResources() {
+            return Collections.singletonList(new TestResourceEntry(LatencyKubernetesServer.class));
+        }
+
+    }
+
+    /**
+     * A crud mock server that delays and counts each request by method
+     */
+    public static class LatencyKubernetesServer implements QuarkusTestResourceLifecycleManager {
+
+        static final Map<String, AtomicLong> REQUESTS = new ConcurrentHashMap<>();
+
+        private KubernetesMockServer server;
+
+        static String requestType(RecordedRequest request) {
+            String path = request.getPath();
+            if (path != null && path.contains("watch=true")) {
+                return "WATCH";
+            }
+            return request.getMethod();
+        }
+
+        @Override
+        public Map<String, String> start() {
+            KubernetesCrudDispatcher crud = new KubernetesCrudDispatcher(Collections.emptyList());
+            server = new KubernetesMockServer(new Context(Serialization.jsonMapper()), new MockWebServer(), new HashMap<>(),
+                    new Dispatcher() {
+                        @Override
+                        public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                            REQUESTS.computeIfAbsent(requestType(request), k -> new AtomicLong()).incrementAndGet();
+                            if (LATENCY_MS > 0) {
+                                Thread.sleep(LATENCY_MS);
+                            }
+                            return crud.dispatch(request);
+                        }
+                    }, false);
+            server.init();
+
+            Map<String, String> config = new HashMap<>();
+            config.put("quarkus.kubernetes-client.master-url", server.url("/"));
+            config.put("quarkus.kubernetes-client.trust-certs", "true");
+            config.put("quarkus.kubernetes-client.namespace", "test");
+            return config;
+        }
+
+        @Override
+        public void stop() {
+            if (server != null) {
+                server.destroy();
+            }
+        }
+
+    }
+
+    @Inject
+    ManagedKafkaSync managedKafkaSync;
+
+    @InjectMock
+    @RestClient
+    ControlPlaneRestClient controlPlaneRestClient;
+
+    @Inject
+    ManagedKafkaResourceClient managedKafkaClient;
+
+    @Inject
+    DirectLocalLookup lookup;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    MockControlPlane remote;
+    Random random = new Random(INSTANCES);
+    int nextId;
+
+    static Map<String, Long> requests() {
+        Map<String, Long> result = new TreeMap<>();
+        LatencyKubernetesServer.REQUESTS.forEach((type, count) -> result.put(type, count.get()));
+        return result;
+    }
+
+    static Map<String, Long> difference(Map<String, Long> after, Map<String, Long> before) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        after.forEach((type, count) -> result.put(type, count - before.getOrDefault(type, 0L)));
+        result.put("total", result.values().stream().mapToLong(Long::longValue).sum());
+        return result;
+    }
+
+    /**
+     * The mean and max milliseconds recorded by a timer since the before snapshot
+     */
+    static Map<String, Object> timerDifference(Timer timer, long beforeCount, double beforeMillis) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        long count = timer.count() - beforeCount;
+        result.put("count", count);
+        result.put("meanMillis", count == 0 ? 0 : (timer.totalTime(TimeUnit.MILLISECONDS) - beforeMillis) / count);
+        result.put("maxMillis", timer.max(TimeUnit.MILLISECONDS));
+        return result;
+    }
+
+    double queueDepth() {
+        double depth = 0;
+        for (String name : List.of("sync.workqueue.depth", "executor.queued")) {
+            for (Gauge gauge : meterRegistry.find(name).gauges()) {
+                depth += gauge.value();
+            }
+        }
+        return depth;
+    }
+
+    static long usedHeap() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    void createRemotes(int count, List<String> live) {
+        for (int i = 0; i < count; i++) {
+            ManagedKafka mk = ManagedKafka.getDummyInstance(nextId++);
+            remote.createCluster(mk);
+            live.add(mk.getId());
+        }
+    }
+
+    /**
+     * Act as the operator - finish the deletes requested by the sync and change the status of some others
+     * @return the number of status changes
+     */
+    int updateLocalStatus(int changes) {
+        int updated = 0;
+        List<ManagedKafka> locals = new ArrayList<>(lookup.getLocalManagedKafkas());
+        Collections.shuffle(locals, random);
+        for (ManagedKafka local : locals) {
+            boolean deleted = local.getSpec().isDeleted();
+            if (deleted && local.getStatus() != null && local.getStatus().getConditions() != null) {
+                continue; // already reported as deleted
+            }
+            if (!deleted && updated >= changes) {
+                continue;
+            }
+            ManagedKafkaStatusBuilder status = new ManagedKafkaStatusBuilder().withUpdatedTimestamp(Instant.now().toString());
+            if (deleted) {
+                ManagedKafkaCondition ready = ConditionUtils.buildCondition(Type.Ready, Status.False);
+                ConditionUtils.updateConditionStatus(ready, Status.False, Reason.Deleted, null);
+                status.withConditions(ready);
+            }
+            local.setStatus(status.build());
+            managedKafkaClient.replaceStatus(local);
+            updated++;
+        }
+        return updated;
+    }
+
+    @Test
+    public void testScale() throws Exception {
+        remote = new MockControlPlane();
+        remote.log = Logger.getLogger(MockControlPlane.class);
+        remote.meterRegistry = meterRegistry;
+
+        Mockito.reset(controlPlaneRestClient);
+        Mockito.when(controlPlaneRestClient.streamKafkaClusters(ArgumentMatchers.eq(CLUSTER_ID), ArgumentMatchers.any()))
+                .thenAnswer(i -> new ByteArrayInputStream(Serialization.jsonMapper()
+                        .writeValueAsBytes(remote.getKafkaClusters(i.getArgument(0), i.getArgument(1)))));
+        Mockito.doAnswer(i -> {
+            remote.updateKafkaClustersStatus(i.getArgument(0), i.getArgument(1));
+            return null;
+        }).when(controlPlaneRestClient).updateKafkaClustersStatus(ArgumentMatchers.eq(CLUSTER_ID), ArgumentMatchers.any());
+
+        Timer acknowledged = meterRegistry.timer("sync.status.acknowledged");
+        Timer propagation = meterRegistry.timer("mock.control-plane.propagation", "resource", "ManagedKafka");
+        Timer applied = meterRegistry.timer("sync.change.applied");
+
+        List<String> live = new ArrayList<>();
+        createRemotes(INSTANCES, live);
+        int churn = (int) Math.ceil(INSTANCES * CHURN);
+
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        LongAccumulator maxQueueDepth = new LongAccumulator(Math::max, 0);
+        sampler.scheduleAtFixedRate(() -> maxQueueDepth.accumulate((long) queueDepth()), 0, 10, TimeUnit.MILLISECONDS);
+
+        List<Map<String, Object>> cycles = new ArrayList<>();
+        try {
+            for (int cycle = 0; cycle <= CYCLES; cycle++) {
+                if (cycle > 0) {
+                    createRemotes(churn, live);
+                    for (int i = 0; i < churn && !live.isEmpty(); i++) {
+                        remote.deleteCluster(live.remove(random.nextInt(live.size())));
+                    }
+                }
+
+                long propagationCount = propagation.count();
+                double propagationMillis = propagation.totalTime(TimeUnit.MILLISECONDS);
+                long appliedCount = applied.count();
+                double appliedMillis = applied.totalTime(TimeUnit.MILLISECONDS);
+                maxQueueDepth.reset();
+                Map<String, Long> requestsBefore = requests();
+
+                long start = System.nanoTime();
+                managedKafkaSync.syncKafkaClusters();
+                long pollNanos = System.nanoTime() - start;
+
+                Map<String, Long> pollRequests = difference(requests(), requestsBefore);
+                long pollQueueDepth = maxQueueDepth.get();
+
+                // status flows back to the control plane through the informer
+                long acknowledgedCount = acknowledged.count();
+                double acknowledgedMillis = acknowledged.totalTime(TimeUnit.MILLISECONDS);
+                int statusChanges = updateLocalStatus(cycle == 0 ? 0 : churn);
+                long deadline = System.currentTimeMillis() + 30000 + statusChanges * LATENCY_MS;
+                while (acknowledged.count() - acknowledgedCount < statusChanges && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(10);
+                }
+                // a partial run is not a valid measurement
+                assertEquals(statusChanges, acknowledged.count() - acknowledgedCount,
+                        "status acknowledgements for cycle " + cycle);
+
+                Map<String, Object> report = new LinkedHashMap<>();
+                report.put("cycle", cycle);
+                report.put("liveInstances", live.size());
+                report.put("pollMillis", TimeUnit.NANOSECONDS.toMillis(pollNanos));
+                report.put("apiCalls", pollRequests);
+                report.put("maxQueueDepth", pollQueueDepth);
+                report.put("usedHeapBytes", usedHeap());
+                report.put("statusChanges", statusChanges);
+                report.put("statusAcknowledged", timerDifference(acknowledged, acknowledgedCount, acknowledgedMillis));
+                report.put("controlPlanePropagation", timerDifference(propagation, propagationCount, propagationMillis));
+                report.put("changeApplied", timerDifference(applied, appliedCount, appliedMillis));
+                cycles.add(report);
+                Logger.getLogger(ScaleSimulationTest.class).infof("scale cycle %s", Serialization.asJson(report));
+            }
+        } finally {
+            sampler.shutdownNow();
+        }
+
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("instances", INSTANCES);
+        config.put("cycles", CYCLES);
+        config.put("churn", CHURN);
+        config.put("latencyMillis", LATENCY_MS);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("config", config);
+        report.put("cycles", cycles);
+
+        Path path = Paths.get(REPORT);
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        Serialization.jsonMapper().writerWithDefaultPrettyPrinter().writeValue(path.toFile(), report);
+
+        assertTrue(Files.size(path) > 0);
+        assertEquals(CYCLES + 1, cycles.size());
+        // every live remote has a local instance
+        assertEquals(live.size(), lookup.getLocalManagedKafkas().stream().filter(mk -> !mk.getSpec().isDeleted()).count());
+    }
+
+}
@@ -0,0 +1,205 @@
+package org.bf2.sync;
+
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.server.mock.KubernetesServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bf2.operator.resources.v1alpha1.ManagedKafka;
+import org.bf2.sync.controlplane.ControlPlane;
+import org.bf2.sync.controlplane.MockControlPlane;
+import org.bf2.sync.informer.InformerManager;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ShardManagerTest {
+
+    static final int INSTANCES = 5000;
+
+    KubernetesServer server = new KubernetesServer(false, true);
+    KubernetesClient client;
+
+    @BeforeEach
+    public void beforeEach() {
+        server.before();
+        client = server.getClient();
+    }
+
+    @AfterEach
+    public void afterEach() {
+        server.after();
+    }
+
+    ShardManager newShardManager(String identity, boolean enabled) {
+        ShardManager shardManager = new ShardManager();
+        shardManager.kubeClient = client;
+        shardManager.meterRegistry = new SimpleMeterRegistry();
+        shardManager.enabled = enabled;
+        shardManager.identity = identity;
+        shardManager.leaseDuration = Duration.ofSeconds(15);
+        shardManager.rebalanceDelay = Duration.ofMillis(200);
+        shardManager.virtualNodes = 100;
+        shardManager.onStart();
+        return shardManager;
+    }
+
+    static Map<String, String> owners(List<ShardManager> shards) {
+        Map<String, String> owners = new HashMap<>();
+        for (int i = 0; i < INSTANCES; i++) {
+            String id = String.valueOf(i);
+            for (ShardManager shard : shards) {
+                if (shard.owns(id)) {
+                    // never owned by two shards at once
+                    assertTrue(owners.put(id, shard.identity) == null);
+                }
+            }
+        }
+        return owners;
+    }
+
+    @Test
+    public void testRebalance() throws InterruptedException {
+        List<ShardManager> shards = List.of(newShardManager("a", true), newShardManager("b", true), newShardManager("c", true));
+        // the first renewals only see the prior leases
+        shards.forEach(ShardManager::renew);
+        shards.forEach(ShardManager::renew);
+        shards.forEach(s -> assertEquals(Set.of("a", "b", "c"), s.getMembers()));
+
+        // nothing is owned until the rebalance delay has passed
+        assertTrue(owners(shards).isEmpty());
+        Thread.sleep(300);
+
+        Map<String, String> owners = owners(shards);
+        assertEquals(INSTANCES, owners.size());
+        for (ShardManager shard : shards) {
+            long owned = owners.values().stream().filter(shard.identity::equals).count();
+            assertTrue(owned > INSTANCES / 5 && owned < INSTANCES / 2, shard.identity + " owns " + owned);
+        }
+
+        // c leaves
+        shards.get(2).onStop(null);
+        List<ShardManager> remaining = shards.subList(0, 2);
+        remaining.forEach(ShardManager::renew);
+        remaining.forEach(s -> assertEquals(Set.of("a", "b"), s.getMembers()));
+
+        // only what was owned by the remaining members before the change
+        owners(remaining).forEach((id, owner) -> assertEquals(owners.get(id), owner));
+        assertFalse(owners(remaining).containsValue("c"));
+        Thread.sleep(300);
+
+        Map<String, String> rebalanced = owners(remaining);
+        assertEquals(INSTANCES, rebalanced.size());
+        // consistent hashing only moves the ids of c
+        owners.forEach((id, owner) -> {
+            if (!owner.equals("c")) {
+                assertEquals(owner, rebalanced.get(id));
+            }
+        });
+        assertEquals(3, remaining.get(0).meterRegistry.counter("sync.shard.rebalances").count());
+    }
+
+    @Test
+    public void testExpiredOwnLeaseOwnsNothing() throws InterruptedException {
+        ShardManager shard = newShardManager("a", true);
+        shard.leaseDuration = Duration.ofMillis(500);
+        shard.renew();
+        Thread.sleep(300);
+        assertTrue(shard.owns("1"));
+
+        // the renewals have stopped succeeding, so the others will have taken over
+        Thread.sleep(300);
+        assertFalse(shard.owns("1"));
+
+        shard.renew();
+        assertTrue(shard.owns("1"));
+    }
+
+    @Test
+    public void testFullListRequiredAfterRebalance() throws InterruptedException {
+        ShardManager shard = newShardManager("a", true);
+        assertFalse(shard.isFullListRequired());
+        shard.renew();
+        long beforeDelay = System.nanoTime();
+        // not until the delay has passed
+        assertFalse(shard.isFullListRequired());
+        Thread.sleep(300);
+        assertTrue(shard.isFullListRequired());
+
+        // a list started during the delay may have missed the moved ids
+        shard.fullListCompleted(beforeDelay);
+        assertTrue(shard.isFullListRequired());
+        shard.fullListCompleted(System.nanoTime());
+        assertFalse(shard.isFullListRequired());
+
+        // unchanged membership
+        shard.renew();
+        assertFalse(shard.isFullListRequired());
+        assertFalse(newShardManager("all", false).isFullListRequired());
+    }
+
+    @Test
+    public void testShardPollTime() throws InterruptedException {
+        MockControlPlane controlPlane = new MockControlPlane();
+        controlPlane.log = Logger.getLogger(MockControlPlane.class);
+        ManagedKafkaSync sync = new ManagedKafkaSync();
+        sync.controlPlane = new ControlPlane();
+        sync.secretManager = new SecretManager();
+        sync.secretManager.informerManager = Mockito.mock(InformerManager.class);
+
+        Map<String, ManagedKafka> locals = new HashMap<>();
+        for (int i = 0; i < INSTANCES; i++) {
+            ManagedKafka remote = ManagedKafka.getDummyInstance(i);
+            controlPlane.createCluster(remote);
+            ManagedKafka local = sync.secretManager.removeSecretsFromManagedKafka(remote);
+            sync.secretManager.calculateMasterSecretDigest(local, sync.secretManager.buildSecret(remote));
+            locals.put(local.getId(), local);
+        }
+
+        List<ShardManager> shards = List.of(newShardManager("a", true), newShardManager("b", true), newShardManager("c", true));
+        shards.forEach(ShardManager::renew);
+        shards.forEach(ShardManager::renew);
+        Thread.sleep(300);
+
+        List<ShardManager> all = new ArrayList<>(shards);
+        all.add(newShardManager("all", false));
+
+        Map<String, Long> pollNanos = new HashMap<>();
+        Map<String, Integer> processed = new HashMap<>();
+
+        // similar to the remote processing of a poll - each shard only compares what it owns
+        for (int round = 0; round < 3; round++) {
+            for (ShardManager shard : all) {
+                long start = System.nanoTime();
+                int count = 0;
+                for (ManagedKafka remote : controlPlane.getKafkaClusters("007", null).getItems()) {
+                    if (shard.owns(remote.getId())) {
+                        assertFalse(sync.changed(remote, locals.get(remote.getId())));
+                        count++;
+                    }
+                }
+                pollNanos.merge(shard.identity, System.nanoTime() - start, Math::min);
+                processed.put(shard.identity, count);
+            }
+        }
+
+        pollNanos.forEach((identity, nanos) -> Logger.getLogger(ShardManagerTest.class).infof("shard %s processed %s of %s instances in %s ms",
+                identity, processed.get(identity), INSTANCES, TimeUnit.NANOSECONDS.toMillis(nanos)));
+        assertEquals(INSTANCES, processed.get("all"));
+        assertEquals(INSTANCES, processed.get("a") + processed.get("b") + processed.get("c"));
+        shards.forEach(s -> assertTrue(processed.get(s.identity) < INSTANCES / 2));
+    }
+
+}
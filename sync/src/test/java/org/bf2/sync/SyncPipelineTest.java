@@ -0,0 +1,131 @@
+package org.bf2.sync;
+
+import io.fabric8.kubernetes.client.utils.Serialization;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.TestProfile;
+import io.quarkus.test.junit.mockito.InjectMock;
+import io.quarkus.test.kubernetes.client.WithKubernetesTestServer;
+import org.bf2.common.ManagedKafkaResourceClient;
+import org.bf2.operator.resources.v1alpha1.ManagedKafka;
+import org.bf2.operator.resources.v1alpha1.ManagedKafkaBuilder;
+import org.bf2.operator.resources.v1alpha1.ManagedKafkaList;
+import org.bf2.operator.resources.v1alpha1.ManagedKafkaStatusBuilder;
+import org.bf2.sync.controlplane.ControlPlaneRestClient;
+import org.bf2.sync.controlplane.MockControlPlane;
+import org.eclipse.microprofile.rest.client.inject.RestClient;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import javax.inject.Inject;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@WithKubernetesTestServer
+@QuarkusTest
+@TestProfile(MockSyncProfile.class)
+public class SyncPipelineTest {
+
+    static final String CLUSTER_ID = "007";
+
+    @Inject
+    ManagedKafkaSync managedKafkaSync;
+
+    @InjectMock
+    @RestClient
+    ControlPlaneRestClient controlPlaneRestClient;
+
+    @Inject
+    ManagedKafkaResourceClient managedKafkaClient;
+
+    @Inject
+    DirectLocalLookup lookup;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    @AfterEach
+    public void afterEach() {
+        managedKafkaClient.list().forEach((mk)->managedKafkaClient.delete(mk.getMetadata().getNamespace(), mk.getMetadata().getName()));
+    }
+
+    long phase(String phase) {
+        return meterRegistry.timer("sync.phase", "phase", phase, "resource", "ManagedKafka").count();
+    }
+
+    long timer(String name) {
+        return meterRegistry.timer(name).count();
+    }
+
+    @Test
+    public void testPipelineMetrics() throws InterruptedException {
+        MockControlPlane remote = new MockControlPlane();
+        remote.log = Logger.getLogger(MockControlPlane.class);
+
+        Mockito.reset(controlPlaneRestClient);
+        Mockito.when(controlPlaneRestClient.streamKafkaClusters(ArgumentMatchers.eq(CLUSTER_ID), ArgumentMatchers.any()))
+                .thenAnswer(i -> new ByteArrayInputStream(Serialization.jsonMapper()
+                        .writeValueAsBytes(remote.getKafkaClusters(i.getArgument(0), i.getArgument(1)))));
+        Mockito.doAnswer(i -> {
+            remote.updateKafkaClustersStatus(i.getArgument(0), i.getArgument(1));
+            return null;
+        }).when(controlPlaneRestClient).updateKafkaClustersStatus(ArgumentMatchers.eq(CLUSTER_ID), ArgumentMatchers.any());
+
+        List<ManagedKafka> remotes = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ManagedKafka mk = ManagedKafka.getDummyInstance(i);
+            remote.createCluster(mk);
+            remotes.add(mk);
+        }
+
+        long fetch = phase("fetch");
+        long diff = phase("diff");
+        long create = phase("create");
+        long update = phase("update");
+        long applied = timer("sync.change.applied");
+
+        managedKafkaSync.syncKafkaClusters();
+        assertEquals(5, lookup.getLocalManagedKafkas().size());
+        assertEquals(fetch + 1, phase("fetch"));
+        assertEquals(create + 5, phase("create"));
+        assertEquals(applied + 5, timer("sync.change.applied"));
+
+        // a remote change is diffed, updated and applied
+        remote.createCluster(new ManagedKafkaBuilder(remotes.get(0)).editOrNewMetadata()
+                .addToLabels(ManagedKafka.PROFILE_TYPE, "anything").endMetadata().build());
+        managedKafkaSync.syncKafkaClusters();
+        assertEquals(diff + 5, phase("diff"));
+        assertEquals(update + 1, phase("update"));
+        assertEquals(applied + 6, timer("sync.change.applied"));
+
+        // a local status change is sent and acknowledged
+        long acknowledged = timer("sync.status.acknowledged");
+        ManagedKafka local = lookup.getLocalManagedKafka(remotes.get(1).getMetadata().getNamespace() + "/" + remotes.get(1).getMetadata().getName());
+        local.setStatus(new ManagedKafkaStatusBuilder().withUpdatedTimestamp("2022-01-01").build());
+        managedKafkaClient.replaceStatus(local);
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (timer("sync.status.acknowledged") == acknowledged) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(50);
+        }
+        assertNotNull(remote.getClusterStatus(remotes.get(1).getId()));
+        assertTrue(meterRegistry.timer("sync.phase", "phase", "status", "resource", "ManagedKafka").count() > 0);
+
+        // reset the resourceVersion for the other tests
+        Mockito.when(controlPlaneRestClient.streamKafkaClusters(CLUSTER_ID, null))
+                .thenAnswer(i -> new ByteArrayInputStream(Serialization.asJson(new ManagedKafkaList()).getBytes(StandardCharsets.UTF_8)));
+        managedKafkaSync.syncKafkaClusters();
+    }
+
+}
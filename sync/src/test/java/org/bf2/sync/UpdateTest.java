@@ -61,10 +61,17 @@ public class UpdateTest {
         // should not be sent
         Mockito.verifyNoInteractions(controlPlaneRestClient);
 
-        // send everything
+        // the resync should skip what has already been acknowledged
+        controlPlane.sendResync();
+        Mockito.verify(controlPlaneRestClient, Mockito.never()).updateKafkaClustersStatus(Mockito.any(), Mockito.any());
+
+        // a changed status should be sent on the resync
+        ManagedKafka local = managedKafkaClient.getByName(managedKafka.getMetadata().getNamespace(), managedKafka.getMetadata().getName());
+        local.getStatus().getConditions().get(0).setStatus("Ready");
+        managedKafkaClient.replaceStatus(local);
         controlPlane.sendResync();
         ArgumentCaptor<Map<String, ManagedKafkaStatus>> statusCaptor = getUpdates();
-        assertEquals("Installed", statusCaptor.getValue().get(PollerTest.ID).getConditions().get(0).getStatus());
+        assertEquals("Ready", statusCaptor.getValue().get(PollerTest.ID).getConditions().get(0).getStatus());
     }
 
     private ArgumentCaptor<Map<String, ManagedKafkaStatus>> getUpdates() {
@@ -0,0 +1,191 @@
+package org.bf2.sync.controlplane;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.utils.Serialization;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bf2.operator.resources.v1alpha1.ManagedKafka;
+import org.bf2.operator.resources.v1alpha1.ManagedKafkaAgent;
+import org.bf2.operator.resources.v1alpha1.ManagedKafkaStatusBuilder;
+import org.bf2.sync.ShardManager;
+import org.bf2.sync.controlplane.CircuitBreaker.State;
+import org.bf2.sync.informer.LocalLookup;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import javax.ws.rs.WebApplicationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CircuitBreakerTest {
+
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    FaultyControlPlane controlPlane = new FaultyControlPlane();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    public void afterEach() {
+        executor.shutdownNow();
+    }
+
+    CircuitBreaker newCircuitBreaker() {
+        return new CircuitBreaker(registry, 3, Duration.ofMillis(200), Duration.ofSeconds(1), 0);
+    }
+
+    double state(State state) {
+        return registry.get("sync.control-plane.circuit.state").tag("state", state.tag()).gauge().value();
+    }
+
+    void open(CircuitBreaker circuitBreaker) {
+        controlPlane.errorStatus = 503;
+        for (int i = 0; i < 3; i++) {
+            assertThrows(WebApplicationException.class, () -> circuitBreaker.call(() -> controlPlane.get("007")));
+        }
+        assertEquals(State.OPEN, circuitBreaker.getState());
+    }
+
+    @Test public void testOpenAndRecover() throws InterruptedException {
+        CircuitBreaker circuitBreaker = newCircuitBreaker();
+        assertEquals(1, state(State.CLOSED));
+
+        open(circuitBreaker);
+        assertEquals(1, state(State.OPEN));
+
+        // calls fail fast without reaching the control plane
+        CircuitBreakerOpenException e = assertThrows(CircuitBreakerOpenException.class, () -> circuitBreaker.call(() -> controlPlane.get("007")));
+        assertTrue(e.getRetryAfter().compareTo(Duration.ofMillis(200)) <= 0);
+        assertEquals(3, controlPlane.calls.get());
+        assertEquals(1, registry.counter("sync.control-plane.circuit.rejected").count());
+
+        // a failed probe opens again for longer
+        Thread.sleep(250);
+        assertThrows(WebApplicationException.class, () -> circuitBreaker.call(() -> controlPlane.get("007")));
+        assertEquals(State.OPEN, circuitBreaker.getState());
+        e = assertThrows(CircuitBreakerOpenException.class, () -> circuitBreaker.call(() -> controlPlane.get("007")));
+        assertTrue(e.getRetryAfter().compareTo(Duration.ofMillis(200)) > 0);
+
+        // a successful probe closes
+        controlPlane.errorStatus = 0;
+        Thread.sleep(450);
+        circuitBreaker.call(() -> controlPlane.get("007"));
+        assertEquals(State.CLOSED, circuitBreaker.getState());
+        assertEquals(1, state(State.CLOSED));
+    }
+
+    @Test public void testSingleProbe() throws Exception {
+        CircuitBreaker circuitBreaker = newCircuitBreaker();
+        open(circuitBreaker);
+        Thread.sleep(250);
+
+        // a slow, but successful, probe
+        controlPlane.errorStatus = 0;
+        controlPlane.latencyMillis = 500;
+        CompletableFuture<ManagedKafkaAgent> probe = CompletableFuture.supplyAsync(
+                () -> circuitBreaker.call(() -> controlPlane.get("007")), executor);
+        while (circuitBreaker.getState() != State.HALF_OPEN) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, state(State.HALF_OPEN));
+
+        // other calls are not made during the probe
+        assertThrows(CircuitBreakerOpenException.class, () -> circuitBreaker.call(() -> controlPlane.get("007")));
+        assertEquals(4, controlPlane.calls.get());
+
+        probe.get();
+        assertEquals(State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test public void testClientErrorsDoNotOpen() {
+        CircuitBreaker circuitBreaker = newCircuitBreaker();
+        controlPlane.errorStatus = 410;
+        for (int i = 0; i < 10; i++) {
+            assertThrows(WebApplicationException.class, () -> circuitBreaker.call(() -> controlPlane.get("007")));
+        }
+        assertEquals(State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test public void testSupersededStatusShedWhileOpen() throws InterruptedException {
+        CircuitBreaker circuitBreaker = newCircuitBreaker();
+        ManagedKafka mk = ManagedKafka.getDummyInstance(1);
+        controlPlane.delegate.createCluster(mk);
+        StatusUpdateBatcher batcher = new StatusUpdateBatcher(executor, registry, Duration.ZERO, 10,
+                status -> circuitBreaker.run(() -> controlPlane.updateKafkaClustersStatus("007", status)));
+
+        open(circuitBreaker);
+        controlPlane.errorStatus = 0;
+
+        batcher.add(mk.getId(), () -> new ManagedKafkaStatusBuilder().withUpdatedTimestamp("1").build());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (registry.counter("sync.control-plane.circuit.rejected").count() < 1 || batcher.getPending() != 1) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+
+        // the deferred update is replaced
+        batcher.add(mk.getId(), () -> new ManagedKafkaStatusBuilder().withUpdatedTimestamp("2").build());
+        assertEquals(1, registry.counter("sync.status.shed", "resource", "ManagedKafka").count());
+
+        // once the probe is allowed only the latest is sent
+        while (batcher.getPending() > 0 || controlPlane.delegate.getClusterStatus(mk.getId()) == null) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        assertEquals("2", controlPlane.delegate.getClusterStatus(mk.getId()).getUpdatedTimestamp());
+        assertEquals(4, controlPlane.calls.get());
+        assertEquals(State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test public void testLocalFailuresDoNotOpenCircuit() {
+        ControlPlane controlPlane = newControlPlane();
+        KubernetesClientException local = new KubernetesClientException("Could not connect", new IOException("Connection refused"));
+        for (int i = 0; i < 10; i++) {
+            assertThrows(KubernetesClientException.class, () -> controlPlane.getKafkaClusters(mk -> {
+                throw local;
+            }));
+        }
+        assertEquals(1, state(State.CLOSED));
+
+        AtomicInteger seen = new AtomicInteger();
+        controlPlane.getKafkaClusters(mk -> seen.incrementAndGet());
+        assertEquals(1, seen.get());
+    }
+
+    ControlPlane newControlPlane() {
+        this.controlPlane.delegate.createCluster(ManagedKafka.getDummyInstance(1));
+        ControlPlane controlPlane = new ControlPlane();
+        controlPlane.log = Logger.getLogger(ControlPlane.class);
+        controlPlane.id = "007";
+        controlPlane.controlPlaneClient = Mockito.mock(ControlPlaneRestClient.class);
+        Mockito.when(controlPlane.controlPlaneClient.streamKafkaClusters(ArgumentMatchers.any(), ArgumentMatchers.any()))
+                .thenAnswer(i -> new ByteArrayInputStream(Serialization.jsonMapper()
+                        .writeValueAsBytes(this.controlPlane.getKafkaClusters(i.getArgument(0), i.getArgument(1)))));
+        controlPlane.executorService = MoreExecutors.newDirectExecutorService();
+        controlPlane.localLookup = Mockito.mock(LocalLookup.class);
+        controlPlane.shardManager = new ShardManager();
+        controlPlane.meterRegistry = registry;
+        controlPlane.statusBatchWindow = Duration.ZERO;
+        controlPlane.statusBatchMaxSize = 500;
+        controlPlane.resyncMaxStaleness = Duration.ofMinutes(30);
+        controlPlane.circuitBreakerFailureThreshold = 3;
+        controlPlane.circuitBreakerDelay = Duration.ofMillis(200);
+        controlPlane.circuitBreakerMaxDelay = Duration.ofSeconds(1);
+        controlPlane.snapshotPath = Optional.empty();
+        controlPlane.onStart();
+        return controlPlane;
+    }
+
+}
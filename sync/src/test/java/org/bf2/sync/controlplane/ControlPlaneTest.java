@@ -6,7 +6,9 @@ import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class ControlPlaneTest {
@@ -32,4 +34,13 @@ public class ControlPlaneTest {
         assertTrue(ControlPlane.statusChanged(status, newStatus));
     }
 
+    @Test public void testStatusFingerprint() {
+        ManagedKafkaStatus status = new ManagedKafkaStatusBuilder().withUpdatedTimestamp("2020-01-01").build();
+        long fingerprint = ControlPlane.statusFingerprint(status);
+        assertEquals(fingerprint, ControlPlane.statusFingerprint(new ManagedKafkaStatusBuilder(status).build()));
+
+        status.setAdminServerURI("http://admin");
+        assertNotEquals(fingerprint, ControlPlane.statusFingerprint(status));
+    }
+
 }
@@ -0,0 +1,173 @@
+package org.bf2.sync.controlplane;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import io.fabric8.kubernetes.client.utils.Serialization;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bf2.operator.resources.v1alpha1.ManagedKafka;
+import org.bf2.operator.resources.v1alpha1.ManagedKafkaStatusBuilder;
+import org.bf2.sync.ShardManager;
+import org.bf2.sync.informer.LocalLookup;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class DesiredStateSnapshotTest {
+
+    static final int INSTANCES = 1000;
+
+    @TempDir
+    Path dir;
+
+    SimpleMeterRegistry remoteRegistry;
+    MockControlPlane remote;
+    List<ManagedKafka> locals;
+
+    @BeforeEach
+    public void beforeEach() {
+        remoteRegistry = new SimpleMeterRegistry();
+        remote = new MockControlPlane();
+        remote.log = Logger.getLogger(MockControlPlane.class);
+        remote.meterRegistry = remoteRegistry;
+
+        locals = new ArrayList<>();
+        for (int i = 0; i < INSTANCES; i++) {
+            ManagedKafka mk = ManagedKafka.getDummyInstance(i);
+            remote.createCluster(mk);
+            ManagedKafka local = Serialization.clone(mk);
+            local.setStatus(new ManagedKafkaStatusBuilder().withUpdatedTimestamp("2022-01-01").build());
+            locals.add(local);
+        }
+    }
+
+    ControlPlane newControlPlane(Optional<String> snapshotPath) {
+        ControlPlane controlPlane = new ControlPlane();
+        controlPlane.log = Logger.getLogger(ControlPlane.class);
+        controlPlane.id = "007";
+        controlPlane.controlPlaneClient = Mockito.mock(ControlPlaneRestClient.class);
+        Mockito.when(controlPlane.controlPlaneClient.streamKafkaClusters(ArgumentMatchers.any(), ArgumentMatchers.any()))
+                .thenAnswer(i -> new ByteArrayInputStream(Serialization.jsonMapper()
+                        .writeValueAsBytes(remote.getKafkaClusters(i.getArgument(0), i.getArgument(1)))));
+        Mockito.doAnswer(i -> {
+            remote.updateKafkaClustersStatus(i.getArgument(0), i.getArgument(1));
+            return null;
+        }).when(controlPlane.controlPlaneClient).updateKafkaClustersStatus(ArgumentMatchers.any(), ArgumentMatchers.any());
+        controlPlane.executorService = MoreExecutors.newDirectExecutorService();
+        controlPlane.localLookup = Mockito.mock(LocalLookup.class);
+        Mockito.when(controlPlane.localLookup.getLocalManagedKafkas()).thenReturn(locals);
+        controlPlane.shardManager = new ShardManager();
+        controlPlane.meterRegistry = new SimpleMeterRegistry();
+        controlPlane.statusBatchWindow = Duration.ZERO;
+        controlPlane.statusBatchMaxSize = 500;
+        controlPlane.resyncMaxStaleness = Duration.ofMinutes(30);
+        controlPlane.circuitBreakerFailureThreshold = 5;
+        controlPlane.circuitBreakerDelay = Duration.ofSeconds(5);
+        controlPlane.circuitBreakerMaxDelay = Duration.ofMinutes(2);
+        controlPlane.snapshotPath = snapshotPath;
+        controlPlane.onStart();
+        return controlPlane;
+    }
+
+    /**
+     * Similar to what the sync does after a start - poll and resync the status
+     * @return the number of ManagedKafkas seen by the poll
+     */
+    int toSteadyState(ControlPlane controlPlane) {
+        AtomicInteger seen = new AtomicInteger();
+        if (!controlPlane.getKafkaClusterChanges(mk -> seen.incrementAndGet())) {
+            controlPlane.getKafkaClusters(mk -> seen.incrementAndGet());
+        }
+        controlPlane.sendResync();
+        return seen.get();
+    }
+
+    double remoteItems(String name, String... tags) {
+        return remoteRegistry.summary(name, tags).totalAmount();
+    }
+
+    @Test
+    public void testWarmRestart() {
+        Path snapshot = dir.resolve("desired-state.json.gz");
+        ControlPlane controlPlane = newControlPlane(Optional.of(snapshot.toString()));
+        assertEquals(INSTANCES, toSteadyState(controlPlane));
+        assertEquals(INSTANCES, remoteItems("mock.control-plane.status.items"));
+        controlPlane.onStop();
+        assertTrue(Files.exists(snapshot));
+
+        // a change while the sync is down
+        remote.deleteCluster(locals.get(0).getId());
+
+        // cold restart
+        double statusItems = remoteItems("mock.control-plane.status.items");
+        long start = System.nanoTime();
+        assertEquals(INSTANCES, toSteadyState(newControlPlane(Optional.empty())));
+        long cold = System.nanoTime() - start;
+        double coldStatusItems = remoteItems("mock.control-plane.status.items") - statusItems;
+
+        // warm restart
+        statusItems = remoteItems("mock.control-plane.status.items");
+        double fullItems = remoteItems("mock.control-plane.kafkas.items", "type", "full");
+        start = System.nanoTime();
+        ControlPlane restarted = newControlPlane(Optional.of(snapshot.toString()));
+        assertEquals(INSTANCES, restarted.getDesiredStates().size());
+        assertEquals(1, toSteadyState(restarted));
+        long warm = System.nanoTime() - start;
+        double warmStatusItems = remoteItems("mock.control-plane.status.items") - statusItems;
+
+        Logger.getLogger(DesiredStateSnapshotTest.class).infof(
+                "Restart to steady state with %s instances: cold %s ms with %s list items and %s statuses sent, warm %s ms with 1 list item and %s statuses sent",
+                INSTANCES, TimeUnit.NANOSECONDS.toMillis(cold), INSTANCES, coldStatusItems,
+                TimeUnit.NANOSECONDS.toMillis(warm), warmStatusItems);
+
+        assertEquals(INSTANCES, coldStatusItems);
+        // only the true difference is seen, and the statuses were already acknowledged
+        assertEquals(0, warmStatusItems);
+        assertEquals(fullItems, remoteItems("mock.control-plane.kafkas.items", "type", "full"));
+        assertTrue(restarted.getDesiredState(ControlPlane.managedKafkaKey(locals.get(0))).getSpec().isDeleted());
+    }
+
+    @Test
+    public void testUnreadableSnapshot() throws Exception {
+        Path snapshot = dir.resolve("desired-state.json.gz");
+        Files.writeString(snapshot, "not a snapshot");
+
+        ControlPlane controlPlane = newControlPlane(Optional.of(snapshot.toString()));
+        assertTrue(controlPlane.getDesiredStates().isEmpty());
+        assertFalse(controlPlane.getKafkaClusterChanges(mk -> {}));
+        assertEquals(INSTANCES, toSteadyState(controlPlane));
+    }
+
+    @Test
+    public void testSnapshotOwnerOnly() throws Exception {
+        assumeTrue(dir.getFileSystem().supportedFileAttributeViews().contains("posix"));
+        Path snapshot = dir.resolve("desired-state.json.gz");
+        // a leftover from a crash with broader permissions
+        Files.writeString(dir.resolve("desired-state.json.gz.tmp"), "partial");
+        Files.setPosixFilePermissions(dir.resolve("desired-state.json.gz.tmp"), PosixFilePermissions.fromString("rw-r--r--"));
+
+        new DesiredStateSnapshot().write(snapshot);
+
+        assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(snapshot));
+        assertNotNull(DesiredStateSnapshot.read(snapshot));
+    }
+
+}
@@ -0,0 +1,69 @@
+package org.bf2.sync.controlplane;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bf2.operator.resources.v1alpha1.ManagedKafkaAgent;
+import org.bf2.operator.resources.v1alpha1.ManagedKafkaAgentStatus;
+import org.bf2.operator.resources.v1alpha1.ManagedKafkaList;
+import org.bf2.operator.resources.v1alpha1.ManagedKafkaStatus;
+import org.jboss.logging.Logger;
+
+import javax.ws.rs.WebApplicationException;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A local control plane stub that injects latency and error responses in front of the {@link MockControlPlane}
+ */
+public class FaultyControlPlane implements ControlPlaneApi {
+
+    final MockControlPlane delegate = new MockControlPlane();
+    final AtomicInteger calls = new AtomicInteger();
+
+    volatile long latencyMillis;
+    volatile int errorStatus;
+
+    public FaultyControlPlane() {
+        delegate.log = Logger.getLogger(MockControlPlane.class);
+        delegate.meterRegistry = new SimpleMeterRegistry();
+    }
+
+    private void inject() {
+        calls.incrementAndGet();
+        if (latencyMillis > 0) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (errorStatus > 0) {
+            throw new WebApplicationException(errorStatus);
+        }
+    }
+
+    @Override
+    public ManagedKafkaAgent get(String id) {
+        inject();
+        return delegate.get(id);
+    }
+
+    @Override
+    public void updateStatus(String id, ManagedKafkaAgentStatus status) {
+        inject();
+        delegate.updateStatus(id, status);
+    }
+
+    @Override
+    public ManagedKafkaList getKafkaClusters(String id, String resourceVersion) {
+        inject();
+        return delegate.getKafkaClusters(id, resourceVersion);
+    }
+
+    @Override
+    public void updateKafkaClustersStatus(String id, Map<String, ManagedKafkaStatus> status) {
+        inject();
+        delegate.updateKafkaClustersStatus(id, status);
+    }
+
+}
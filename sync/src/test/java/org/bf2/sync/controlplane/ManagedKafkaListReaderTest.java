@@ -0,0 +1,131 @@
+package org.bf2.sync.controlplane;
+
+import io.fabric8.kubernetes.api.model.ListMeta;
+import io.fabric8.kubernetes.client.utils.Serialization;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bf2.operator.resources.v1alpha1.ManagedKafka;
+import org.bf2.operator.resources.v1alpha1.ManagedKafkaList;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ManagedKafkaListReaderTest {
+
+    static final int INSTANCES = 5000;
+
+    static byte[] payload;
+    static String resourceVersion;
+
+    ManagedKafkaListReader reader = new ManagedKafkaListReader(Serialization.jsonMapper());
+
+    /**
+     * Counts the bytes that have been consumed from the underlying stream
+     */
+    static class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int result = super.read();
+            if (result >= 0) {
+                count++;
+            }
+            return result;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int result = super.read(b, off, len);
+            if (result > 0) {
+                count += result;
+            }
+            return result;
+        }
+    }
+
+    @BeforeAll
+    public static void beforeAll() {
+        MockControlPlane controlPlane = new MockControlPlane();
+        controlPlane.log = Logger.getLogger(MockControlPlane.class);
+        controlPlane.meterRegistry = new SimpleMeterRegistry();
+        for (int i = 0; i < INSTANCES; i++) {
+            controlPlane.createCluster(ManagedKafka.getDummyInstance(i));
+        }
+        ManagedKafkaList list = controlPlane.getKafkaClusters("007", null);
+        resourceVersion = list.getMetadata().getResourceVersion();
+        payload = Serialization.asJson(list).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test public void testItemsAreReadIncrementally() throws IOException {
+        CountingInputStream stream = new CountingInputStream(new ByteArrayInputStream(payload));
+        List<Long> consumedAtItem = new ArrayList<>();
+        AtomicInteger count = new AtomicInteger();
+
+        ListMeta metadata = reader.read(stream, mk -> {
+            if (count.getAndIncrement() % 1000 == 0) {
+                consumedAtItem.add(stream.count);
+            }
+        });
+
+        assertEquals(INSTANCES, count.get());
+        assertEquals(resourceVersion, metadata.getResourceVersion());
+        // only a small part of the payload should have been read when the first item is handed off
+        assertTrue(consumedAtItem.get(0) < payload.length / 100, () -> consumedAtItem.get(0) + " of " + payload.length);
+        for (int i = 1; i < consumedAtItem.size(); i++) {
+            assertTrue(consumedAtItem.get(i) > consumedAtItem.get(i - 1));
+        }
+    }
+
+    @Test public void testStreamingVsMaterialized() throws IOException {
+        // a simple comparison of the previous approach - not an assertion as timings vary by environment
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            ManagedKafkaList list = Serialization.jsonMapper().readValue(payload, ManagedKafkaList.class);
+            long materialized = System.nanoTime() - start;
+            assertEquals(INSTANCES, list.getItems().size());
+
+            AtomicInteger count = new AtomicInteger();
+            start = System.nanoTime();
+            reader.read(new ByteArrayInputStream(payload), mk -> count.incrementAndGet());
+            long streamed = System.nanoTime() - start;
+            assertEquals(INSTANCES, count.get());
+
+            Logger.getLogger(ManagedKafkaListReaderTest.class).infof("%s bytes, %s items: materialized %sms, streamed %sms",
+                    payload.length, INSTANCES, materialized / 1000000, streamed / 1000000);
+        }
+    }
+
+    @Test public void testFieldOrderAndUnknownFields() throws IOException {
+        String json = "{\"kind\":\"ManagedKafkaList\",\"extra\":{\"items\":[{}]},\"items\":[" + Serialization.asJson(ManagedKafka.getDummyInstance(1))
+                + ",null],\"metadata\":{\"resourceVersion\":\"5\"}}";
+        List<ManagedKafka> items = new ArrayList<>();
+
+        ListMeta metadata = reader.read(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), items::add);
+
+        assertEquals(1, items.size());
+        assertEquals("mk-1", items.get(0).getMetadata().getName());
+        assertEquals("5", metadata.getResourceVersion());
+
+        metadata = reader.read(new ByteArrayInputStream("{\"items\":null}".getBytes(StandardCharsets.UTF_8)), items::add);
+        assertNull(metadata);
+        assertEquals(1, items.size());
+    }
+
+}
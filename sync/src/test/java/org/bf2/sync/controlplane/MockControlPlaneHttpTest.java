@@ -0,0 +1,77 @@
+package org.bf2.sync.controlplane;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.TestProfile;
+import io.quarkus.test.kubernetes.client.WithKubernetesTestServer;
+import org.bf2.common.ManagedKafkaAgentResourceClient;
+import org.bf2.operator.resources.v1alpha1.ManagedKafkaAgent;
+import org.bf2.sync.MockSyncProfile;
+import org.eclipse.microprofile.rest.client.inject.RestClient;
+import org.junit.jupiter.api.Test;
+
+import javax.inject.Inject;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Uses the {@link MockControlPlane} served by the test application as the control plane
+ */
+@WithKubernetesTestServer
+@QuarkusTest
+@TestProfile(MockControlPlaneHttpTest.HttpProfile.class)
+public class MockControlPlaneHttpTest {
+
+    static final String CLUSTER_ID = "007";
+
+    public static class HttpProfile extends MockSyncProfile {
+
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            Map<String, String> overrides = new HashMap<>(super.getConfigOverrides());
+            overrides.put("control-plane.url", "http://localhost:${quarkus.http.test-port:8081}");
+            return overrides;
+        }
+
+    }
+
+    @Inject
+    MockControlPlane mockControlPlane;
+
+    @Inject
+    @RestClient
+    ControlPlaneRestClient controlPlaneClient;
+
+    @Test
+    public void testIfNoneMatch() {
+        String entityTag;
+        try (Response response = controlPlaneClient.getIfNoneMatch(CLUSTER_ID, null)) {
+            assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+            assertNotNull(response.readEntity(ManagedKafkaAgent.class));
+            entityTag = response.getHeaderString(HttpHeaders.ETAG);
+            assertNotNull(entityTag);
+        }
+
+        // unchanged
+        try (Response response = controlPlaneClient.getIfNoneMatch(CLUSTER_ID, entityTag)) {
+            assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(), response.getStatus());
+            assertEquals(entityTag, response.getHeaderString(HttpHeaders.ETAG));
+        }
+
+        // the unconditional get is still served
+        assertNotNull(controlPlaneClient.get(CLUSTER_ID));
+
+        mockControlPlane.createAgent(ManagedKafkaAgentResourceClient.getDummyInstance());
+        try (Response response = controlPlaneClient.getIfNoneMatch(CLUSTER_ID, entityTag)) {
+            assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+            assertNotEquals(entityTag, response.getHeaderString(HttpHeaders.ETAG));
+        }
+    }
+
+}
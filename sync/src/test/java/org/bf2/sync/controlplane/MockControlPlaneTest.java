@@ -0,0 +1,75 @@
+package org.bf2.sync.controlplane;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bf2.operator.resources.v1alpha1.ManagedKafka;
+import org.bf2.operator.resources.v1alpha1.ManagedKafkaList;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.Test;
+
+import javax.ws.rs.WebApplicationException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MockControlPlaneTest {
+
+    static final int INSTANCES = 1000;
+
+    @Test public void testResourceVersionDeltas() {
+        MockControlPlane controlPlane = new MockControlPlane();
+        controlPlane.log = Logger.getLogger(MockControlPlane.class);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        controlPlane.meterRegistry = registry;
+
+        for (int i = 0; i < INSTANCES; i++) {
+            controlPlane.createCluster(ManagedKafka.getDummyInstance(i));
+        }
+
+        ManagedKafkaList full = controlPlane.getKafkaClusters("007", null);
+        assertEquals(INSTANCES, full.getItems().size());
+        String resourceVersion = full.getMetadata().getResourceVersion();
+
+        // nothing changed
+        ManagedKafkaList delta = controlPlane.getKafkaClusters("007", resourceVersion);
+        assertEquals(0, delta.getItems().size());
+        assertEquals(resourceVersion, delta.getMetadata().getResourceVersion());
+
+        controlPlane.deleteCluster(full.getItems().get(0).getId());
+        delta = controlPlane.getKafkaClusters("007", resourceVersion);
+        assertEquals(1, delta.getItems().size());
+        assertTrue(delta.getItems().get(0).getSpec().isDeleted());
+
+        // the delta payload should be a small fraction of the full list
+        double fullBytes = registry.summary("mock.control-plane.kafkas.bytes", "type", "full").totalAmount();
+        double deltaBytes = registry.summary("mock.control-plane.kafkas.bytes", "type", "delta").totalAmount();
+        assertTrue(deltaBytes * 100 < fullBytes);
+        assertEquals(2, registry.counter("mock.control-plane.kafkas.requests", "type", "delta").count());
+
+        String latest = delta.getMetadata().getResourceVersion();
+        controlPlane.expireResourceVersions();
+        WebApplicationException e = assertThrows(WebApplicationException.class, () -> controlPlane.getKafkaClusters("007", latest));
+        assertEquals(410, e.getResponse().getStatus());
+    }
+
+    @Test public void testPropagationDelay() {
+        MockControlPlane controlPlane = new MockControlPlane();
+        controlPlane.log = Logger.getLogger(MockControlPlane.class);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        controlPlane.meterRegistry = registry;
+
+        for (int i = 0; i < 10; i++) {
+            controlPlane.createCluster(ManagedKafka.getDummyInstance(i));
+        }
+        controlPlane.getKafkaClusters("007", null);
+        // only the first poll after a change is measured
+        controlPlane.getKafkaClusters("007", null);
+        assertEquals(10, registry.timer("mock.control-plane.propagation", "resource", "ManagedKafka").count());
+
+        controlPlane.createAgent(controlPlane.get("007"));
+        controlPlane.get("007");
+        controlPlane.get("007");
+        assertEquals(1, registry.timer("mock.control-plane.propagation", "resource", "ManagedKafkaAgent").count());
+    }
+
+}
@@ -0,0 +1,155 @@
+package org.bf2.sync.controlplane;
+
+import io.fabric8.kubernetes.client.utils.Serialization;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.TestProfile;
+import io.quarkus.test.kubernetes.client.WithKubernetesTestServer;
+import org.bf2.operator.resources.v1alpha1.ManagedKafka;
+import org.bf2.operator.resources.v1alpha1.ManagedKafkaList;
+import org.bf2.operator.resources.v1alpha1.ManagedKafkaStatus;
+import org.bf2.operator.resources.v1alpha1.ManagedKafkaStatusBuilder;
+import org.bf2.sync.MockSyncProfile;
+import org.eclipse.microprofile.rest.client.inject.RestClient;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import javax.inject.Inject;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Uses the {@link MockControlPlane} served by the test application as the control plane
+ */
+@WithKubernetesTestServer
+@QuarkusTest
+@TestProfile(PayloadCompressionTest.CompressionProfile.class)
+public class PayloadCompressionTest {
+
+    static final int INSTANCES = 1000;
+    static final String CLUSTER_ID = "007";
+
+    public static class CompressionProfile extends MockSyncProfile {
+
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            Map<String, String> overrides = new HashMap<>(super.getConfigOverrides());
+            overrides.put("control-plane.url", "http://localhost:${quarkus.http.test-port:8081}");
+            overrides.put("control-plane.compression.request", "true");
+            overrides.put("control-plane.compression.request-min-size", "1024");
+            overrides.put("quarkus.http.enable-compression", "true");
+            overrides.put("quarkus.http.enable-decompression", "true");
+            return overrides;
+        }
+
+    }
+
+    @Inject
+    MockControlPlane mockControlPlane;
+
+    @Inject
+    @RestClient
+    ControlPlaneRestClient controlPlaneClient;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    double wireBytes(String direction, String encoding) {
+        return meterRegistry.counter("sync.control-plane.bytes", "direction", direction, "encoding", encoding).count();
+    }
+
+    double payloadBytes(String direction) {
+        return meterRegistry.counter("sync.control-plane.payload.bytes", "direction", direction).count();
+    }
+
+    @Test
+    public void testCompressedPayloads() throws IOException {
+        for (int i = 0; i < INSTANCES; i++) {
+            mockControlPlane.createCluster(ManagedKafka.getDummyInstance(i));
+        }
+
+        // the list response is gzipped
+        double wire = wireBytes("received", PayloadCompression.GZIP);
+        double payload = payloadBytes("received");
+        ManagedKafkaList list;
+        try (InputStream stream = controlPlaneClient.streamKafkaClusters(CLUSTER_ID, null)) {
+            list = Serialization.jsonMapper().readValue(stream, ManagedKafkaList.class);
+        }
+        assertEquals(INSTANCES, list.getItems().size());
+        double listWire = wireBytes("received", PayloadCompression.GZIP) - wire;
+        double listPayload = payloadBytes("received") - payload;
+        assertTrue(listWire > 0);
+        assertTrue(listWire < listPayload / 4, listWire + " compressed of " + listPayload);
+
+        // the status map request is gzipped
+        Map<String, ManagedKafkaStatus> statusMap = new HashMap<>();
+        for (ManagedKafka mk : list.getItems()) {
+            statusMap.put(mk.getId(), new ManagedKafkaStatusBuilder().withUpdatedTimestamp("2022-01-01T00:00:00Z").build());
+        }
+        wire = wireBytes("sent", PayloadCompression.GZIP);
+        payload = payloadBytes("sent");
+        controlPlaneClient.updateKafkaClustersStatus(CLUSTER_ID, statusMap);
+        double statusWire = wireBytes("sent", PayloadCompression.GZIP) - wire;
+        double statusPayload = payloadBytes("sent") - payload;
+        assertTrue(statusWire > 0);
+        assertTrue(statusWire < statusPayload / 4, statusWire + " compressed of " + statusPayload);
+        list.getItems().forEach(mk -> assertNotNull(mockControlPlane.getClusterStatus(mk.getId())));
+
+        // a small status is sent as is
+        wire = wireBytes("sent", PayloadCompression.IDENTITY);
+        String id = list.getItems().get(0).getId();
+        controlPlaneClient.updateKafkaClustersStatus(CLUSTER_ID, Map.of(id, statusMap.get(id)));
+        assertTrue(wireBytes("sent", PayloadCompression.IDENTITY) > wire);
+
+        Logger.getLogger(PayloadCompressionTest.class).infof(
+                "With %s instances the list was %s bytes compressed from %s, the status map was %s bytes compressed from %s",
+                INSTANCES, listWire, listPayload, statusWire, statusPayload);
+    }
+
+    @Test
+    public void testUncompressedRequestNotBuffered() throws IOException {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PayloadCompression compression = new PayloadCompression();
+        compression.meterRegistry = registry;
+        compression.requestMinSize = 1024;
+        compression.onStart();
+
+        ByteArrayOutputStream wire = new ByteArrayOutputStream();
+        AtomicReference<OutputStream> stream = new AtomicReference<>(wire);
+        WriterInterceptorContext context = Mockito.mock(WriterInterceptorContext.class);
+        Mockito.when(context.getOutputStream()).thenAnswer(i -> stream.get());
+        Mockito.doAnswer(i -> {
+            stream.set(i.getArgument(0));
+            return null;
+        }).when(context).setOutputStream(ArgumentMatchers.any());
+        byte[] body = new byte[4096];
+        Mockito.doAnswer(i -> {
+            stream.get().write(body);
+            // written straight through
+            assertEquals(body.length, wire.size());
+            return null;
+        }).when(context).proceed();
+
+        compression.aroundWriteTo(context);
+
+        assertSame(wire, stream.get());
+        assertEquals(body.length, registry.counter("sync.control-plane.bytes", "direction", "sent", "encoding", PayloadCompression.IDENTITY).count());
+        assertEquals(body.length, registry.counter("sync.control-plane.payload.bytes", "direction", "sent").count());
+    }
+
+}
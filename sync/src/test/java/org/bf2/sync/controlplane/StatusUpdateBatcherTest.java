@@ -0,0 +1,163 @@
+package org.bf2.sync.controlplane;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bf2.operator.resources.v1alpha1.ManagedKafka;
+import org.bf2.operator.resources.v1alpha1.ManagedKafkaStatus;
+import org.bf2.operator.resources.v1alpha1.ManagedKafkaStatusBuilder;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StatusUpdateBatcherTest {
+
+    SimpleMeterRegistry registry;
+    MockControlPlane controlPlane;
+    List<Integer> sent;
+
+    @BeforeEach
+    public void beforeEach() {
+        registry = new SimpleMeterRegistry();
+        controlPlane = new MockControlPlane();
+        controlPlane.log = Logger.getLogger(MockControlPlane.class);
+        controlPlane.meterRegistry = registry;
+        sent = new ArrayList<>();
+    }
+
+    StatusUpdateBatcher newBatcher(ExecutorService executor, Duration window, int maxBatchSize) {
+        return new StatusUpdateBatcher(executor, registry, window, maxBatchSize, status -> {
+            synchronized (sent) {
+                sent.add(status.size());
+            }
+            controlPlane.updateKafkaClustersStatus("007", status);
+        });
+    }
+
+    @Test public void testLatestStatusWins() throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        StatusUpdateBatcher batcher = newBatcher(executor, Duration.ofMillis(500), 500);
+
+        List<ManagedKafka> kafkas = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            ManagedKafka mk = ManagedKafka.getDummyInstance(i);
+            controlPlane.createCluster(mk);
+            kafkas.add(mk);
+        }
+
+        // simulate a fleet wide event with many status changes per instance
+        for (int round = 0; round < 10; round++) {
+            String timestamp = String.valueOf(round);
+            for (ManagedKafka mk : kafkas) {
+                ManagedKafkaStatus status = new ManagedKafkaStatusBuilder().withUpdatedTimestamp(timestamp).build();
+                batcher.add(mk.getId(), () -> status);
+            }
+        }
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (batcher.getPending() > 0 || registry.counter("mock.control-plane.status.requests").count() == 0) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(1, registry.counter("mock.control-plane.status.requests").count());
+        assertEquals(100, registry.summary("mock.control-plane.status.items").totalAmount());
+        assertEquals(900, registry.counter("sync.status.coalesced").count());
+        for (ManagedKafka mk : kafkas) {
+            assertEquals("9", controlPlane.getClusterStatus(mk.getId()).getUpdatedTimestamp());
+        }
+    }
+
+    @Test public void testMaxBatchSize() {
+        StatusUpdateBatcher batcher = newBatcher(MoreExecutors.newDirectExecutorService(), Duration.ofMinutes(1), 10);
+
+        ManagedKafkaStatus status = new ManagedKafkaStatus();
+        for (int i = 0; i < 25; i++) {
+            batcher.add(String.valueOf(i), () -> status);
+        }
+        // full batches are sent immediately
+        assertEquals(List.of(10, 10), sent);
+        assertEquals(5, batcher.getPending());
+
+        batcher.flush();
+        assertEquals(List.of(10, 10, 5), sent);
+        assertEquals(3, registry.summary("sync.status.batch.size").count());
+    }
+
+    @Test public void testNullStatusNotSent() {
+        StatusUpdateBatcher batcher = newBatcher(MoreExecutors.newDirectExecutorService(), Duration.ZERO, 10);
+
+        batcher.add("1", () -> null);
+        assertTrue(sent.isEmpty());
+
+        batcher.addAll(Map.of("1", () -> null, "2", ManagedKafkaStatus::new));
+        assertEquals(List.of(1), sent);
+    }
+
+    @Test public void testFailedBatchRequeued() {
+        List<Map<String, ManagedKafkaStatus>> sentStatus = new ArrayList<>();
+        AtomicBoolean fail = new AtomicBoolean(true);
+        StatusUpdateBatcher batcher = new StatusUpdateBatcher(MoreExecutors.newDirectExecutorService(), registry, Duration.ZERO, 10, status -> {
+            if (fail.getAndSet(false)) {
+                throw new IllegalStateException("not available");
+            }
+            sentStatus.add(status);
+        });
+
+        ManagedKafkaStatus old = new ManagedKafkaStatusBuilder().withUpdatedTimestamp("1").build();
+        assertThrows(IllegalStateException.class, () -> batcher.addAll(Map.of("1", () -> old, "2", () -> old)));
+        assertEquals(2, batcher.getPending());
+
+        // the next update sends what was put back, but the newer status wins
+        ManagedKafkaStatus newer = new ManagedKafkaStatusBuilder().withUpdatedTimestamp("2").build();
+        batcher.add("1", () -> newer);
+        assertEquals(List.of(Map.of("1", newer, "2", old)), sentStatus);
+        assertEquals(0, batcher.getPending());
+    }
+
+    @Test public void testFlushDoesNotWait() throws Exception {
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        StatusUpdateBatcher batcher = new StatusUpdateBatcher(MoreExecutors.newDirectExecutorService(), registry, Duration.ofMinutes(1), 10, status -> {
+            synchronized (sent) {
+                sent.add(status.size());
+            }
+            sending.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        batcher.add("1", ManagedKafkaStatus::new);
+        CompletableFuture<Void> inProgress = CompletableFuture.runAsync(batcher::flush);
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+
+        // returns without sending, the flush in progress picks it up
+        batcher.add("2", ManagedKafkaStatus::new);
+        CompletableFuture.runAsync(batcher::flush).get(1, TimeUnit.SECONDS);
+
+        release.countDown();
+        inProgress.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(1, 1), sent);
+        assertEquals(0, batcher.getPending());
+    }
+
+}
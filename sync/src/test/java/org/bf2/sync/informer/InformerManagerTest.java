@@ -0,0 +1,94 @@
+package org.bf2.sync.informer;
+
+import io.fabric8.kubernetes.api.model.NamespaceBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.server.mock.KubernetesServer;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.TestProfile;
+import io.quarkus.test.kubernetes.client.KubernetesTestServer;
+import io.quarkus.test.kubernetes.client.WithKubernetesTestServer;
+import org.bf2.common.OperandUtils;
+import org.bf2.operator.resources.v1alpha1.ManagedKafka;
+import org.bf2.sync.MockSyncProfile;
+import org.junit.jupiter.api.Test;
+
+import javax.inject.Inject;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@WithKubernetesTestServer
+@QuarkusTest
+@TestProfile(MockSyncProfile.class)
+public class InformerManagerTest {
+
+    @KubernetesTestServer
+    KubernetesServer server;
+
+    @Inject
+    KubernetesClient client;
+
+    @Inject
+    InformerManager informerManager;
+
+    @Test
+    public void testNamespaceLookupWithoutGets() throws InterruptedException {
+        client.namespaces().create(new NamespaceBuilder()
+                .withNewMetadata()
+                    .withName("mk-namespace")
+                    .withLabels(OperandUtils.getDefaultLabels())
+                .endMetadata()
+                .build());
+        client.namespaces().create(new NamespaceBuilder()
+                .withNewMetadata()
+                    .withName("other-namespace")
+                .endMetadata()
+                .build());
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (informerManager.getLocalNamespace("mk-namespace") == null) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(50);
+        }
+
+        // steady state lookups should be served from the informer cache
+        int requests = server.getKubernetesMockServer().getRequestCount();
+        for (int i = 0; i < 1000; i++) {
+            assertNotNull(informerManager.getLocalNamespace("mk-namespace"));
+        }
+        assertEquals(requests, server.getKubernetesMockServer().getRequestCount());
+
+        // only fleetshard managed namespaces are cached
+        assertNull(informerManager.getLocalNamespace("other-namespace"));
+    }
+
+    @Test
+    public void testExistingNamespaceLabeled() throws InterruptedException {
+        // created before the default labels were applied
+        client.namespaces().create(new NamespaceBuilder()
+                .withNewMetadata()
+                    .withName("mk-1")
+                .endMetadata()
+                .build());
+        ManagedKafka mk = ManagedKafka.getDummyInstance(1);
+        client.resources(ManagedKafka.class).inNamespace("mk-1").create(mk);
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (informerManager.getLocalManagedKafkas().isEmpty()) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(50);
+        }
+        assertNull(informerManager.getLocalNamespace("mk-1"));
+
+        informerManager.labelNamespaces();
+        while (informerManager.getLocalNamespace("mk-1") == null) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(50);
+        }
+        assertEquals(OperandUtils.FLEETSHARD_OPERATOR_NAME,
+                informerManager.getLocalNamespace("mk-1").getMetadata().getLabels().get(OperandUtils.MANAGED_BY_LABEL));
+    }
+
+}
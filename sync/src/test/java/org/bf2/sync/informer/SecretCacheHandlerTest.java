@@ -0,0 +1,141 @@
+package org.bf2.sync.informer;
+
+import io.fabric8.kubernetes.api.model.FieldsV1;
+import io.fabric8.kubernetes.api.model.ManagedFieldsEntry;
+import io.fabric8.kubernetes.api.model.ManagedFieldsEntryBuilder;
+import io.fabric8.kubernetes.api.model.Secret;
+import io.fabric8.kubernetes.api.model.SecretBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.server.mock.KubernetesServer;
+import io.fabric8.kubernetes.client.utils.Serialization;
+import org.bf2.common.OperandUtils;
+import org.bf2.common.ResourceInformer;
+import org.bf2.common.ResourceInformerFactory;
+import org.bf2.common.ResourcePruners;
+import org.bf2.sync.SecretManager;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SecretCacheHandlerTest {
+
+    static final int SECRETS = 2000;
+
+    KubernetesServer server = new KubernetesServer(false, true);
+    KubernetesClient client;
+
+    @BeforeEach
+    public void beforeEach() {
+        server.before();
+        client = server.getClient();
+    }
+
+    @AfterEach
+    public void afterEach() {
+        server.after();
+    }
+
+    static String encode(String value) {
+        return Base64.getEncoder().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    Secret secret(int i) {
+        Map<String, String> data = Map.of("oauth.ssoClientId", encode("client-" + i),
+                "oauth.ssoClientSecret", encode("secret-" + i),
+                "canary.sasl.password", encode("password-" + i));
+        Secret secret = new SecretBuilder()
+                .withNewMetadata()
+                    .withNamespace("mk-" + i)
+                    .withName("mk-" + i + "-master-secret")
+                    .withLabels(OperandUtils.getMasterSecretLabel())
+                    // similar to what is typically found on a real server
+                    .addToManagedFields(new ManagedFieldsEntryBuilder()
+                            .withManager("kas-fleetshard-sync")
+                            .withOperation("Update")
+                            .withApiVersion("v1")
+                            .withFieldsType("FieldsV1")
+                            .withFieldsV1(new FieldsV1(Map.of("f:data", Map.of(".", Map.of(), "f:oauth.ssoClientId", Map.of(),
+                                    "f:oauth.ssoClientSecret", Map.of(), "f:canary.sasl.password", Map.of()),
+                                    "f:metadata", Map.of("f:labels", Map.of(".", Map.of(), "f:app.kubernetes.io/component", Map.of()),
+                                            "f:ownerReferences", Map.of(".", Map.of(), "k:{\"uid\":\"" + i + "\"}", Map.of())),
+                                    "f:type", Map.of())))
+                            .build())
+                .endMetadata()
+                .withType("Opaque")
+                .withData(data)
+                .build();
+        secret.getMetadata().setAnnotations(Map.of(ResourcePruners.LAST_APPLIED_CONFIGURATION, Serialization.asJson(secret)));
+        return secret;
+    }
+
+    static long footprint(List<Secret> secrets) {
+        return secrets.stream().mapToLong(s -> Serialization.asJson(s).length()).sum();
+    }
+
+    @Test
+    public void testPrunedFootprint() throws InterruptedException {
+        for (int i = 0; i < SECRETS; i++) {
+            client.secrets().inNamespace("mk-" + i).create(secret(i));
+        }
+
+        ResourceInformerFactory factory = new ResourceInformerFactory();
+        ResourceInformer<Secret> full = factory.create(Secret.class,
+                client.secrets().inAnyNamespace().withLabels(OperandUtils.getMasterSecretLabel()), null);
+        Map<String, String> digests = new ConcurrentHashMap<>();
+        ResourceInformer<Secret> pruned = factory.create(Secret.class,
+                client.secrets().inAnyNamespace().withLabels(OperandUtils.getMasterSecretLabel()), new SecretCacheHandler(digests));
+
+        long deadline = System.currentTimeMillis() + 30000;
+        while (full.getList().size() < SECRETS || digests.size() < SECRETS) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(50);
+        }
+
+        long fullFootprint = footprint(full.getList());
+        long prunedFootprint = footprint(pruned.getList());
+        Logger.getLogger(SecretCacheHandlerTest.class).infof("%s secrets: full cache %s bytes, pruned cache %s bytes",
+                SECRETS, fullFootprint, prunedFootprint);
+        assertTrue(prunedFootprint * 2 < fullFootprint);
+
+        Secret secret = pruned.getByKey("mk-1/mk-1-master-secret");
+        assertTrue(secret.getMetadata().getManagedFields() == null || secret.getMetadata().getManagedFields().isEmpty());
+        assertNull(secret.getMetadata().getAnnotations().get(ResourcePruners.LAST_APPLIED_CONFIGURATION));
+        assertEquals(3, secret.getData().size());
+        assertEquals(SecretManager.digest(secret(1)), digests.get("mk-1/mk-1-master-secret"));
+
+        client.secrets().inNamespace("mk-1").withName("mk-1-master-secret").delete();
+        deadline = System.currentTimeMillis() + 30000;
+        while (digests.containsKey("mk-1/mk-1-master-secret")) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(50);
+        }
+    }
+
+    @Test
+    public void testPruneReplacesMetadata() {
+        Secret cached = secret(1);
+        List<ManagedFieldsEntry> managedFields = cached.getMetadata().getManagedFields();
+        Map<String, String> annotations = cached.getMetadata().getAnnotations();
+
+        SecretCacheHandler.prune(cached);
+
+        // a concurrent copy of the cached instance may still hold the originals, which are unmodified
+        assertEquals(1, managedFields.size());
+        assertTrue(annotations.containsKey(ResourcePruners.LAST_APPLIED_CONFIGURATION));
+        assertNull(cached.getMetadata().getManagedFields());
+        assertFalse(cached.getMetadata().getAnnotations().containsKey(ResourcePruners.LAST_APPLIED_CONFIGURATION));
+    }
+
+}
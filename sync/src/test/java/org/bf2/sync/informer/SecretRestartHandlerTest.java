@@ -0,0 +1,106 @@
+package org.bf2.sync.informer;
+
+import io.fabric8.kubernetes.api.model.Secret;
+import io.fabric8.kubernetes.api.model.SecretBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.server.mock.KubernetesServer;
+import org.bf2.common.ResourceInformerFactory;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SecretRestartHandlerTest {
+
+    static final String SECRET_NAME = "sync-config";
+
+    KubernetesServer server = new KubernetesServer(false, true);
+    KubernetesClient client;
+    ExecutorService controlPlaneExecutor = Executors.newSingleThreadExecutor();
+    CountDownLatch exited = new CountDownLatch(1);
+    SecretRestartHandler handler;
+
+    @BeforeEach
+    public void beforeEach() {
+        server.before();
+        client = server.getClient();
+
+        handler = new SecretRestartHandler();
+        handler.log = Logger.getLogger(SecretRestartHandler.class);
+        handler.secretName = SECRET_NAME;
+        handler.drainTimeout = Duration.ofSeconds(5);
+        handler.client = client;
+        handler.resourceInformerFactory = new ResourceInformerFactory();
+        handler.controlPlaneExecutor = controlPlaneExecutor;
+        handler.exit = exited::countDown;
+    }
+
+    @AfterEach
+    public void afterEach() {
+        controlPlaneExecutor.shutdownNow();
+        server.after();
+    }
+
+    Secret secret(String value) {
+        return new SecretBuilder()
+                .withNewMetadata()
+                    .withName(SECRET_NAME)
+                    .withNamespace(client.getNamespace())
+                .endMetadata()
+                .withData(Map.of("key", value))
+                .build();
+    }
+
+    @Test
+    public void testChangeDetectedFromWatch() throws InterruptedException {
+        client.secrets().inNamespace(client.getNamespace()).create(secret("dmFsdWU="));
+        handler.onStart();
+
+        // steady state should not make any further requests
+        Thread.sleep(1000);
+        int requests = server.getMockServer().getRequestCount();
+        Thread.sleep(1500);
+        assertEquals(requests, server.getMockServer().getRequestCount());
+
+        // metadata only changes should not restart
+        client.secrets().inNamespace(client.getNamespace()).withName(SECRET_NAME)
+                .edit(s -> new SecretBuilder(s).editMetadata().addToLabels("x", "y").endMetadata().build());
+        assertFalse(exited.await(500, TimeUnit.MILLISECONDS));
+
+        // in-flight control plane calls should complete before exiting
+        CountDownLatch inFlight = new CountDownLatch(1);
+        controlPlaneExecutor.execute(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.countDown();
+        });
+
+        long start = System.nanoTime();
+        client.secrets().inNamespace(client.getNamespace()).withName(SECRET_NAME)
+                .edit(s -> new SecretBuilder(s).withData(Map.of("key", "b3RoZXI=")).build());
+        assertTrue(exited.await(1, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        assertEquals(0, inFlight.getCount());
+
+        // the shared pool still accepts work
+        assertFalse(controlPlaneExecutor.isShutdown());
+        CountDownLatch accepted = new CountDownLatch(1);
+        controlPlaneExecutor.execute(accepted::countDown);
+        assertTrue(accepted.await(1, TimeUnit.SECONDS));
+    }
+
+}